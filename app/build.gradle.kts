@@ -1,6 +1,8 @@
 plugins {
     id("java")
     id("application")
+    // JMH ベンチマーク（src/jmh/java、./gradlew jmh で実行）
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 application {
@@ -30,6 +32,13 @@ dependencies {
     testRuntimeOnly("org.junit.platform:junit-platform-launcher:1.10.3")
 }
 
+// ✅ JMH 設定（-Pjmh.includes=OperatorDispatch のように対象を絞れる）
+jmh {
+    jmhVersion.set("1.37")
+    project.findProperty("jmh.includes")?.let { includes.add(it.toString()) }
+    project.findProperty("jmh.profilers")?.let { profilers.add(it.toString()) }
+}
+
 // Java実行時のJVM引数（Java 25 のプレビュー機能許可）
 tasks.withType<JavaExec>().configureEach {
     jvmArgs("--enable-preview")
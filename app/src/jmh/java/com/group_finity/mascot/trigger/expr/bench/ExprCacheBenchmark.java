@@ -0,0 +1,119 @@
+package com.group_finity.mascot.trigger.expr.bench;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.group_finity.mascot.trigger.expr.cache.EvaluationResult;
+import com.group_finity.mascot.trigger.expr.cache.ExprCacheKey;
+import com.group_finity.mascot.trigger.expr.cache.ExprCacheManager;
+
+/**
+ * ExprCacheBenchmark
+ * 評価結果キャッシュを複数スレッドから読み書きしたときのスループット。
+ * 以前の実装（synchronizedMap + アクセス順 LinkedHashMap）を "synchronizedLru" として並べて比較する。
+ * スレッド数ごとのメソッド（t1/t4/t8）の結果を比べるとスケーリングが分かる。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ExprCacheBenchmark {
+
+    private static final int KEYS = 2048;
+
+    @Param({"concurrent", "synchronizedLru"})
+    public String impl;
+
+    private Cache cache;
+    private ExprCacheKey[] keys;
+    private EvaluationResult result;
+
+    @Setup
+    public void setUp() {
+        cache = impl.equals("concurrent") ? new Concurrent(new ExprCacheManager(KEYS)) : new SynchronizedLru(KEYS);
+        keys = new ExprCacheKey[KEYS];
+        result = new EvaluationResult(Boolean.TRUE, Map.of(), 0L, 0L, com.group_finity.mascot.trigger.expr.type.Mode.STRICT);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = new ExprCacheKey("(x" + i + " > " + i + ")", com.group_finity.mascot.trigger.expr.type.Mode.STRICT);
+            cache.put(keys[i], result);
+        }
+    }
+
+    private Object read() {
+        return cache.get(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    /** 読み 90% / 書き 10% */
+    private Object mixed() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        ExprCacheKey key = keys[rnd.nextInt(KEYS)];
+        if (rnd.nextInt(10) == 0) {
+            cache.put(key, result);
+            return key;
+        }
+        return cache.get(key);
+    }
+
+    @Benchmark @Threads(1)
+    public Object readT1() { return read(); }
+
+    @Benchmark @Threads(4)
+    public Object readT4() { return read(); }
+
+    @Benchmark @Threads(8)
+    public Object readT8() { return read(); }
+
+    @Benchmark @Threads(1)
+    public Object mixedT1() { return mixed(); }
+
+    @Benchmark @Threads(4)
+    public Object mixedT4() { return mixed(); }
+
+    @Benchmark @Threads(8)
+    public Object mixedT8() { return mixed(); }
+
+    private interface Cache {
+        Optional<EvaluationResult> get(ExprCacheKey key);
+        void put(ExprCacheKey key, EvaluationResult result);
+    }
+
+    private record Concurrent(ExprCacheManager manager) implements Cache {
+        public Optional<EvaluationResult> get(ExprCacheKey key) { return manager.get(key); }
+        public void put(ExprCacheKey key, EvaluationResult result) { manager.put(key, result); }
+    }
+
+    private static final class SynchronizedLru implements Cache {
+        private final Map<ExprCacheKey, EvaluationResult> map;
+
+        SynchronizedLru(int capacity) {
+            map = Collections.synchronizedMap(new LinkedHashMap<>(capacity, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ExprCacheKey, EvaluationResult> eldest) {
+                    return size() > capacity;
+                }
+            });
+        }
+
+        public Optional<EvaluationResult> get(ExprCacheKey key) { return Optional.ofNullable(map.get(key)); }
+        public void put(ExprCacheKey key, EvaluationResult result) { map.put(key, result); }
+    }
+}
@@ -0,0 +1,85 @@
+package com.group_finity.mascot.trigger.expr.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.node.BinaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.UnaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+
+/**
+ * NumericEvaluationBenchmark
+ * 数値だけの条件式を、静的型による箱詰めなしの経路と Object 経路で比較する。
+ *
+ * 割り当て量（gc.alloc.rate.norm）は gc プロファイラで確認する:
+ *   ./gradlew jmh -Pjmh.includes=NumericEvaluation -Pjmh.profilers=gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class NumericEvaluationBenchmark {
+
+    private static final String EXPR = "(posX - velX * dt) * 1.5 > limit - 20 && (posY - velY * dt) * (posY - velY * dt) < 90000";
+
+    private EvaluationContext ctx;
+    private ExpressionNode typed;
+    private ExpressionNode boxed;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("posX", 312.5);
+        vars.put("posY", 120.25);
+        vars.put("velX", 3.75);
+        vars.put("velY", -1.5);
+        vars.put("dt", 0.016);
+        vars.put("limit", 400.5);
+        ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), com.group_finity.mascot.trigger.expr.type.Mode.STRICT);
+
+        typed = ExpressionParser.parse(EXPR);
+        boxed = untyped(typed);
+    }
+
+    @Benchmark
+    public boolean typedPath() {
+        return typed.evalBoolean(ctx);
+    }
+
+    @Benchmark
+    public Object objectPath() {
+        return boxed.evaluate(ctx);
+    }
+
+    /** 子ノードの静的型を隠し、すべての演算が Object を返す木に組み直す */
+    private static ExpressionNode untyped(ExpressionNode node) {
+        if (node instanceof BinaryExpressionNode bin) {
+            return BinaryExpressionNode.of(opaque(untyped(bin.getLeft())), bin.getOperator(), opaque(untyped(bin.getRight())));
+        }
+        if (node instanceof UnaryExpressionNode un) {
+            return new UnaryExpressionNode(un.getUnaryOperator(), opaque(untyped(un.getOperand())));
+        }
+        return node;
+    }
+
+    private static ExpressionNode opaque(ExpressionNode node) {
+        return node::evaluate;
+    }
+}
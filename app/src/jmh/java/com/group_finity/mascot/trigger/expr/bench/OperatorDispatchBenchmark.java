@@ -0,0 +1,117 @@
+package com.group_finity.mascot.trigger.expr.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.node.BinaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.LiteralNode;
+import com.group_finity.mascot.trigger.expr.node.Operators;
+import com.group_finity.mascot.trigger.expr.node.VariableNode;
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+
+/**
+ * OperatorDispatchBenchmark
+ * 演算子を評価ごとに文字列 switch で解決する旧方式と、パース時に特殊化したノードを比較する。
+ *
+ * 命令数の比較は perfnorm プロファイラを使う:
+ *   ./gradlew jmh -Pjmh.includes=OperatorDispatch -Pjmh.profilers=perfnorm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class OperatorDispatchBenchmark {
+
+    private static final String EXPR = "time > 1000 && state === \"falling\" || speed * 2 >= 5 && count % 3 != 0";
+
+    private EvaluationContext ctx;
+    private ExpressionNode specialized;
+    private ExpressionNode stringSwitch;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("time", 1500L);
+        vars.put("state", "falling");
+        vars.put("speed", 2.5);
+        vars.put("count", 7L);
+        ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), com.group_finity.mascot.trigger.expr.type.Mode.STRICT);
+
+        specialized = ExpressionParser.parse(EXPR);
+        stringSwitch = toStringSwitch(specialized);
+    }
+
+    @Benchmark
+    public Object specializedNodes() {
+        return specialized.evaluate(ctx);
+    }
+
+    @Benchmark
+    public Object stringSwitchNodes() {
+        return stringSwitch.evaluate(ctx);
+    }
+
+    /** 特殊化済みの木を旧方式（文字列 switch）のノードに組み直す */
+    private static ExpressionNode toStringSwitch(ExpressionNode node) {
+        if (node instanceof BinaryExpressionNode bin) {
+            return new StringSwitchNode(toStringSwitch(bin.getLeft()), bin.getOperator(), toStringSwitch(bin.getRight()));
+        }
+        if (node instanceof LiteralNode || node instanceof VariableNode) return node;
+        throw new IllegalArgumentException("Unsupported node: " + node);
+    }
+
+    /** 変更前の BinaryExpressionNode と同じ評価方法 */
+    private static final class StringSwitchNode implements ExpressionNode {
+        private final ExpressionNode left;
+        private final ExpressionNode right;
+        private final String operator;
+
+        StringSwitchNode(ExpressionNode left, String operator, ExpressionNode right) {
+            this.left = left;
+            this.right = right;
+            this.operator = operator;
+        }
+
+        @Override
+        public Object evaluate(EvaluationContext ctx) {
+            Object l = left.evaluate(ctx);
+            Object r = right.evaluate(ctx);
+
+            return switch (operator) {
+                case "+" -> Operators.add(l, r);
+                case "-" -> Operators.sub(l, r);
+                case "*" -> Operators.mul(l, r);
+                case "/" -> Operators.div(l, r);
+                case "%" -> Operators.mod(l, r);
+                case "===" -> Operators.strictEquals(l, r);
+                case "!==" -> !Operators.strictEquals(l, r);
+                case "==" -> Operators.eq(l, r);
+                case "!=" -> !Operators.eq(l, r);
+                case "<" -> Operators.cmp(l, r) < 0;
+                case "<=" -> Operators.cmp(l, r) <= 0;
+                case ">" -> Operators.cmp(l, r) > 0;
+                case ">=" -> Operators.cmp(l, r) >= 0;
+                case "&&" -> Operators.toBool(l) && Operators.toBool(r);
+                case "||" -> Operators.toBool(l) || Operators.toBool(r);
+                default -> throw new RuntimeException("Unknown operator: " + operator);
+            };
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.group_finity.mascot.trigger.expr.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.parser.Lexer;
+
+/**
+ * ParserThroughputBenchmark
+ * 典型的なトリガー条件式の字句解析のみ／構文解析全体のスループットを測る。
+ * -Pjmh.profilers=gc で1回あたりの割り当て量も確認できる。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParserThroughputBenchmark {
+
+    @Param({
+        "hp > 50 && mood == 'happy'",
+        "(x + y * 2) % 7 >= limit || !(flag === true) && name !== \"idle\"",
+        "a1 + a2 + a3 + a4 + a5 + a6 + a7 + a8 <= 100.5 && ~mask != 0"
+    })
+    public String expression;
+
+    @Benchmark
+    public void lex(Blackhole bh) {
+        Lexer lexer = new Lexer(expression);
+        while (lexer.type() != Lexer.TokenType.EOF) {
+            bh.consume(lexer.end());
+            lexer.advance();
+        }
+    }
+
+    @Benchmark
+    public Object parse() {
+        return ExpressionParser.parse(expression);
+    }
+}
@@ -0,0 +1,63 @@
+package com.group_finity.mascot.trigger.expr.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.SymbolTable;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+
+/**
+ * VariableLookupBenchmark
+ * 40 個の変数を名前（Map 参照）とスロット（配列参照）で読み比べる。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class VariableLookupBenchmark {
+
+    private static final int VARIABLES = 40;
+
+    private EvaluationContext ctx;
+    private String[] names;
+    private int[] slots;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> vars = new LinkedHashMap<>();
+        names = new String[VARIABLES];
+        slots = new int[VARIABLES];
+        for (int i = 0; i < VARIABLES; i++) {
+            names[i] = "var" + i;
+            slots[i] = SymbolTable.slotOf(names[i]);
+            vars.put(names[i], (long) i);
+        }
+        ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), com.group_finity.mascot.trigger.expr.type.Mode.STRICT);
+    }
+
+    @Benchmark
+    public void byName(Blackhole bh) {
+        for (String name : names) bh.consume(ctx.getVariable(name));
+    }
+
+    @Benchmark
+    public void bySlot(Blackhole bh) {
+        for (int slot : slots) bh.consume(ctx.getVariable(slot));
+    }
+}
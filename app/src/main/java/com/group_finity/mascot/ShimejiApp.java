@@ -89,7 +89,7 @@ public final class ShimejiApp {
     /** テストループ: 擬似的にイベントを発生させる */
     private void runTestLoop() {
         for (int t = 0; t < 5; t++) {
-            context.getVariablesSnapshot().put("time", t);
+            context.applyDelta(Map.of("time", t));
             System.out.printf("[Main] Step %d → Context: %s%n", t, context.getVariablesSnapshot());
             dispatcher.pollAndDispatch();
             sleep(200);
@@ -4,12 +4,16 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.group_finity.mascot.log.Diagnostics;
+
 /**
  * 非同期イベント実行用のワーカークラス。
  * EventQueue（PriorityBlockingQueue）からEventTaskを取り出し実行する。
  */
 public class EventWorker implements Runnable {
 
+    private static final Diagnostics DIAG = Diagnostics.of("event.worker");
+
     private final BlockingQueue<EventTask> queue;
     private final AtomicBoolean running = new AtomicBoolean(true);
     private final Thread thread;
@@ -34,15 +38,13 @@ public class EventWorker implements Runnable {
                 try {
                     task.run();
                 } catch (Throwable t) {
-                    System.err.printf("[%s] Error executing task %s: %s%n",
-                            name, task, t.getMessage());
-                    t.printStackTrace();
+                    DIAG.error("[{}] Error executing task {}", name, task, t);
                 }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } finally {
-            System.out.printf("[%s] Worker terminated safely.%n", name);
+            DIAG.debug("[{}] Worker terminated safely.", name);
         }
     }
 
@@ -7,6 +7,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import com.group_finity.mascot.log.Diagnostics;
 import com.group_finity.mascot.log.EventLog;
 import com.group_finity.mascot.log.EventLogRecord;
 
@@ -16,6 +17,8 @@ import com.group_finity.mascot.log.EventLogRecord;
  */
 public class EventWorkerPool {
 
+    private static final Diagnostics DIAG = Diagnostics.of("event.pool");
+
     private final PriorityBlockingQueue<EventTask> internalQueue; // nullならexternal
     private final BlockingQueue<EventTask> queue;
     private final List<EventWorker> workers = new ArrayList<>();
@@ -30,7 +33,7 @@ public class EventWorkerPool {
         startWorkers();
         EventLog.record("EventWorkerPool", "Startup", true, 0L,
                 EventLogRecord.Level.INFO, Map.of("workers", poolSize));
-        System.out.printf("[EventWorkerPool] Started with %d workers.%n", poolSize);
+        DIAG.info("Started with {} workers.", poolSize);
     }
 
     /** 外部キュー利用（テスト・互換用） */
@@ -41,7 +44,7 @@ public class EventWorkerPool {
         startWorkers();
         EventLog.record("EventWorkerPool", "Startup", true, 0L,
                 EventLogRecord.Level.INFO, Map.of("workers", poolSize, "mode", "external"));
-        System.out.printf("[EventWorkerPool] Started with %d workers (external queue).%n", poolSize);
+        DIAG.info("Started with {} workers (external queue).", poolSize);
     }
 
     private void startWorkers() {
@@ -66,7 +69,7 @@ public class EventWorkerPool {
         }
         EventLog.record("EventWorkerPool", "Shutdown", true, 0L,
                 EventLogRecord.Level.INFO, Map.of("workers", poolSize));
-        System.out.println("[EventWorkerPool] Shutdown requested.");
+        DIAG.info("Shutdown requested.");
     }
 
     /** 停止待機 */
@@ -78,7 +81,7 @@ public class EventWorkerPool {
         if (ok) {
             EventLog.record("EventWorkerPool", "Termination", true, 0L,
                     EventLogRecord.Level.INFO, Map.of("workers", poolSize));
-            System.out.println("[EventWorkerPool] All workers terminated safely.");
+            DIAG.info("All workers terminated safely.");
         }
         return ok;
     }
@@ -0,0 +1,243 @@
+package com.group_finity.mascot.log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.MessageFormatter;
+import org.slf4j.spi.SLF4JServiceProvider;
+
+/**
+ * Diagnostics
+ *
+ * コンポーネント単位でレベルを切り替えられる診断出力。
+ * 無効なレベルの呼び出しは volatile の int 比較1回で戻り、メッセージの組み立ても引数配列の確保もしない。
+ *
+ * - コンポーネント名はドット区切り（"trigger.dispatcher" など）。setLevel("trigger", ...) は配下すべてに効く
+ * - 既定レベルは INFO（起動・停止などは出るが、評価ごとの出力は DEBUG / TRACE なので出ない）
+ * - 起動時の設定はシステムプロパティ mascot.diag（例: "trigger=debug,event.worker=warn"）
+ * - メッセージは slf4j 形式（{} プレースホルダ）。slf4j のプロバイダがあればそちらへ、なければコンソールへ出す
+ * - 評価ごとの呼び出しは isDebugEnabled() で囲むか、引数が3つまでのオーバーロードを使う（可変長配列を作らない）
+ */
+public final class Diagnostics {
+
+    public enum Level { OFF, ERROR, WARN, INFO, DEBUG, TRACE }
+
+    public static final String PROPERTY = "mascot.diag";
+
+    private static final Level DEFAULT_LEVEL = Level.INFO;
+    private static final Map<String, Diagnostics> CHANNELS = new ConcurrentHashMap<>();
+    // コンポーネント名の接頭辞 -> レベル（"" は全体）
+    private static final Map<String, Level> CONFIGURED = new ConcurrentHashMap<>();
+    // 起動時に mascot.diag で指定された分（restoreLevel で戻す先）
+    private static final Map<String, Level> STARTUP = parse(System.getProperty(PROPERTY));
+
+    static {
+        STARTUP.forEach(Diagnostics::setLevel);
+    }
+
+    private final String component;
+    private volatile int threshold;
+    private volatile Logger logger; // 最初の出力時に決める（null ならコンソール）
+    private volatile boolean resolved;
+
+    private Diagnostics(String component) {
+        this.component = component;
+        this.threshold = resolve(component).ordinal();
+    }
+
+    /** コンポーネントの診断チャネル（名前ごとに1つ） */
+    public static Diagnostics of(String component) {
+        return CHANNELS.computeIfAbsent(component, Diagnostics::new);
+    }
+
+    // ===== レベル設定 =====
+
+    /** 接頭辞が一致するコンポーネント（作成済み・今後作るもの両方）のレベルを変える。"" は全体 */
+    public static synchronized void setLevel(String componentPrefix, Level level) {
+        CONFIGURED.put(componentPrefix, level);
+        for (Diagnostics d : CHANNELS.values()) d.threshold = resolve(d.component).ordinal();
+    }
+
+    /**
+     * 接頭辞のレベルを起動時の設定（mascot.diag）に戻す。起動時に指定がなければ setLevel で付けた設定を外し、
+     * 上位の接頭辞（なければ既定レベル）に従わせる
+     */
+    public static synchronized void restoreLevel(String componentPrefix) {
+        Level startup = STARTUP.get(componentPrefix);
+        if (startup != null) CONFIGURED.put(componentPrefix, startup);
+        else CONFIGURED.remove(componentPrefix);
+        for (Diagnostics d : CHANNELS.values()) d.threshold = resolve(d.component).ordinal();
+    }
+
+    /** setLevel で設定した内容をすべて消し、既定レベルに戻す */
+    public static synchronized void resetLevels() {
+        CONFIGURED.clear();
+        for (Diagnostics d : CHANNELS.values()) d.threshold = DEFAULT_LEVEL.ordinal();
+    }
+
+    /** "trigger=debug,event.worker=warn" 形式の設定を取り込む（不正な項目は無視する） */
+    public static void configure(String spec) {
+        parse(spec).forEach(Diagnostics::setLevel);
+    }
+
+    private static Map<String, Level> parse(String spec) {
+        Map<String, Level> levels = new LinkedHashMap<>();
+        if (spec == null || spec.isBlank()) return levels;
+        for (String item : spec.split(",")) {
+            int eq = item.indexOf('=');
+            String name = (eq < 0 ? "" : item.substring(0, eq)).trim();
+            String level = (eq < 0 ? item : item.substring(eq + 1)).trim().toUpperCase();
+            try {
+                levels.put(name, Level.valueOf(level));
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        return levels;
+    }
+
+    /** 最も長く一致する接頭辞のレベル */
+    private static Level resolve(String component) {
+        String name = component;
+        while (true) {
+            Level level = CONFIGURED.get(name);
+            if (level != null) return level;
+            if (name.isEmpty()) return DEFAULT_LEVEL;
+            int dot = name.lastIndexOf('.');
+            name = dot < 0 ? "" : name.substring(0, dot);
+        }
+    }
+
+    public Level getLevel() {
+        return Level.values()[threshold];
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    // ===== 判定 =====
+
+    public boolean isEnabled(Level level) {
+        return level != Level.OFF && level.ordinal() <= threshold;
+    }
+
+    public boolean isDebugEnabled() { return Level.DEBUG.ordinal() <= threshold; }
+    public boolean isTraceEnabled() { return Level.TRACE.ordinal() <= threshold; }
+
+    // ===== 出力 =====
+
+    public void error(String message, Throwable t) {
+        if (Level.ERROR.ordinal() <= threshold) emit(Level.ERROR, message, t);
+    }
+
+    public void error(String format, Object arg) {
+        if (Level.ERROR.ordinal() <= threshold) emit(Level.ERROR, format(format, arg), null);
+    }
+
+    public void error(String format, Object arg1, Object arg2) {
+        if (Level.ERROR.ordinal() <= threshold) emit(Level.ERROR, format(format, arg1, arg2), null);
+    }
+
+    /** 例外付き（メッセージは出力する場合だけ組み立てる） */
+    public void error(String format, Object arg, Throwable t) {
+        if (Level.ERROR.ordinal() <= threshold) emit(Level.ERROR, format(format, arg), t);
+    }
+
+    public void error(String format, Object arg1, Object arg2, Throwable t) {
+        if (Level.ERROR.ordinal() <= threshold) emit(Level.ERROR, format(format, arg1, arg2), t);
+    }
+
+    public void warn(String format, Object arg) {
+        if (Level.WARN.ordinal() <= threshold) emit(Level.WARN, format(format, arg), null);
+    }
+
+    public void warn(String format, Object arg1, Object arg2, Object arg3) {
+        if (Level.WARN.ordinal() <= threshold) emit(Level.WARN, format(format, arg1, arg2, arg3), null);
+    }
+
+    /** 引数が4つ以上の場合（呼び出し側で配列を作るので、頻度の低い出力だけに使う） */
+    public void warn(String format, Object... args) {
+        if (Level.WARN.ordinal() <= threshold) emit(Level.WARN, format(format, args), null);
+    }
+
+    public void warn(String message) {
+        if (Level.WARN.ordinal() <= threshold) emit(Level.WARN, message, null);
+    }
+
+    public void info(String message) {
+        if (Level.INFO.ordinal() <= threshold) emit(Level.INFO, message, null);
+    }
+
+    public void info(String format, Object arg) {
+        if (Level.INFO.ordinal() <= threshold) emit(Level.INFO, format(format, arg), null);
+    }
+
+    public void debug(String message) {
+        if (Level.DEBUG.ordinal() <= threshold) emit(Level.DEBUG, message, null);
+    }
+
+    public void debug(String format, Object arg) {
+        if (Level.DEBUG.ordinal() <= threshold) emit(Level.DEBUG, format(format, arg), null);
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (Level.DEBUG.ordinal() <= threshold) emit(Level.DEBUG, format(format, arg1, arg2), null);
+    }
+
+    public void debug(String format, Object arg1, Object arg2, Object arg3) {
+        if (Level.DEBUG.ordinal() <= threshold) emit(Level.DEBUG, format(format, arg1, arg2, arg3), null);
+    }
+
+    /** メッセージの組み立て自体が重い場合（マップのダンプなど） */
+    public void debug(Supplier<String> message) {
+        if (Level.DEBUG.ordinal() <= threshold) emit(Level.DEBUG, message.get(), null);
+    }
+
+    public void trace(String format, Object arg) {
+        if (Level.TRACE.ordinal() <= threshold) emit(Level.TRACE, format(format, arg), null);
+    }
+
+    public void trace(String format, Object arg1, Object arg2) {
+        if (Level.TRACE.ordinal() <= threshold) emit(Level.TRACE, format(format, arg1, arg2), null);
+    }
+
+    /** 例外は引数として受け取らないので、{} に渡した Throwable も文字列にする（arrayFormat のように取り除かない） */
+    private static String format(String format, Object... args) {
+        return MessageFormatter.basicArrayFormat(format, args);
+    }
+
+    private void emit(Level level, String message, Throwable t) {
+        Logger l = logger();
+        if (l == null) {
+            var out = level.ordinal() <= Level.WARN.ordinal() ? System.err : System.out;
+            out.println("[" + component + "] " + message);
+            if (t != null) t.printStackTrace(out);
+            return;
+        }
+        switch (level) {
+            case ERROR -> l.error(message, t);
+            case WARN -> l.warn(message, t);
+            case INFO -> l.info(message, t);
+            case DEBUG -> l.debug(message, t);
+            default -> l.trace(message, t);
+        }
+    }
+
+    private Logger logger() {
+        if (!resolved) {
+            logger = Slf4j.AVAILABLE ? LoggerFactory.getLogger("mascot." + component) : null;
+            resolved = true;
+        }
+        return logger;
+    }
+
+    /** slf4j のプロバイダの有無（初めて出力する時に一度だけ調べる。プロバイダがないと slf4j は何も出さない） */
+    private static final class Slf4j {
+        static final boolean AVAILABLE = ServiceLoader.load(SLF4JServiceProvider.class).findFirst().isPresent();
+    }
+}
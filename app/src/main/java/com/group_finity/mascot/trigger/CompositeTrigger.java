@@ -2,16 +2,19 @@ package com.group_finity.mascot.trigger;
 
 import java.util.List;
 
+import com.group_finity.mascot.log.Diagnostics;
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
 
 /**
  * CompositeTrigger — 複数の TriggerCondition をまとめて評価。
- * （修正版: デバッグログ追加）
+ * 途中経過は Diagnostics の "trigger.composite" に DEBUG で出す（既定では出ない）。
  */
 public class CompositeTrigger extends Trigger {
 
     public enum Mode { ALL, ANY }
 
+    private static final Diagnostics DIAG = Diagnostics.of("trigger.composite");
+
     private final List<TriggerCondition> conditions;
     private final Mode mode;
 
@@ -23,43 +26,42 @@ public class CompositeTrigger extends Trigger {
     @Override
     public boolean check(EvaluationContext ctx) {
         if (conditions == null || conditions.isEmpty()) {
-            System.err.println("[CompositeTrigger] No conditions to evaluate");
+            DIAG.warn("No conditions to evaluate");
             return false;
         }
 
-        System.out.printf("[CompositeTrigger] Checking %d conditions with mode=%s, context=%s%n",
-            conditions.size(), mode, ctx.getVariablesSnapshot());
+        if (DIAG.isDebugEnabled()) {
+            DIAG.debug("Checking {} conditions with mode={}, context={}", conditions.size(), mode, ctx.getVariablesSnapshot());
+        }
 
         boolean result = switch (mode) {
             case ALL -> {
                 for (TriggerCondition c : conditions) {
                     boolean condResult = c.evaluate(ctx);
-                    System.out.printf("[CompositeTrigger.ALL] Condition '%s' = %s%n", 
-                        c.getExpression(), condResult);
+                    DIAG.debug("ALL: condition '{}' = {}", c.getExpression(), condResult);
                     if (!condResult) {
-                        System.out.println("[CompositeTrigger.ALL] Failed early, returning false");
+                        DIAG.debug("ALL: failed early, returning false");
                         yield false;
                     }
                 }
-                System.out.println("[CompositeTrigger.ALL] All conditions passed!");
+                DIAG.debug("ALL: all {} conditions passed", conditions.size());
                 yield true;
             }
             case ANY -> {
                 for (TriggerCondition c : conditions) {
                     boolean condResult = c.evaluate(ctx);
-                    System.out.printf("[CompositeTrigger.ANY] Condition '%s' = %s%n", 
-                        c.getExpression(), condResult);
+                    DIAG.debug("ANY: condition '{}' = {}", c.getExpression(), condResult);
                     if (condResult) {
-                        System.out.println("[CompositeTrigger.ANY] Found matching condition, returning true");
+                        DIAG.debug("ANY: found matching condition, returning true");
                         yield true;
                     }
                 }
-                System.out.println("[CompositeTrigger.ANY] No conditions matched, returning false");
+                DIAG.debug("ANY: none of {} conditions matched", conditions.size());
                 yield false;
             }
         };
 
-        System.out.printf("[CompositeTrigger] Final result: %s%n", result);
+        DIAG.debug("Final result: {}", result);
         return result;
     }
 
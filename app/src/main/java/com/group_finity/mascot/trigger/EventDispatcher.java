@@ -7,15 +7,23 @@ import java.util.concurrent.BlockingQueue;
 
 import com.group_finity.mascot.event.EventTask;
 import com.group_finity.mascot.event.EventWorkerPool;
+import com.group_finity.mascot.log.Diagnostics;
+import com.group_finity.mascot.trigger.expr.cache.CacheStatsTracker;
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.TickMemo;
 
 /**
  * EventDispatcher (D-4d 修正版)
  * - Trigger評価結果をEventQueueに直接enqueue
  * - 既存のEventLogコンストラクタに適合
+ * - 1回の pollAndDispatch を1ティックとし、トリガー間で共通する部分式の評価結果を共有する
+ * - EventLog とワーカーに渡す変数表はスナップショット（変数表が SlotVariables ならチャンク共有で O(1)）
+ * - 診断出力は Diagnostics の "trigger.dispatcher"（トリガーごとの発火/スキップは DEBUG）
  */
 public class EventDispatcher {
 
+    private static final Diagnostics DIAG = Diagnostics.of("trigger.dispatcher");
+
     private final List<Trigger> triggers = new ArrayList<>();
     private final EvaluationContext context;
     private final EventQueue eventQueue;
@@ -45,7 +53,7 @@ public class EventDispatcher {
         if (action == null) return;
         EventTask task = new EventTask(action, priority);
         pool.submit(task);
-        System.out.printf("[EventDispatcher] Direct dispatch: %d (priority=%s)%n", task.getId(), task.getPriority());
+        DIAG.debug("Direct dispatch: {} (priority={})", task.getId(), task.getPriority());
     }
 
     /** Trigger登録 */
@@ -56,10 +64,20 @@ public class EventDispatcher {
     /** pollAndDispatch: 成功トリガーを非同期で実行 + EventLogへ出力 */
     public void pollAndDispatch() {
         if (context == null || eventQueue == null) {
-            System.err.println("[EventDispatcher] pollAndDispatch skipped (context or eventQueue is null)");
+            DIAG.warn("pollAndDispatch skipped (context or eventQueue is null)");
             return;
         }
 
+        context.beginTick();
+        try {
+            dispatchAll();
+        } finally {
+            TickMemo memo = context.endTick();
+            if (memo != null) CacheStatsTracker.INSTANCE.recordMemo(memo.hits(), memo.misses());
+        }
+    }
+
+    private void dispatchAll() {
         for (Trigger trigger : triggers) {
             long start = System.nanoTime();
             boolean success = false;
@@ -67,8 +85,7 @@ public class EventDispatcher {
             try {
                 success = trigger.check(context);
             } catch (Exception e) {
-                System.err.println("[EventDispatcher] Trigger check error: " + e.getMessage());
-                e.printStackTrace();
+                DIAG.error("Trigger check error: {}", e.getMessage(), e);
             }
             
             long elapsed = System.nanoTime() - start;
@@ -92,8 +109,7 @@ public class EventDispatcher {
                     try {
                         trigger.execute(snapshotCtx);
                     } catch (Exception e) {
-                        System.err.println("[EventDispatcher] Task execution error: " + e.getMessage());
-                        e.printStackTrace();
+                        DIAG.error("Task execution error: {}", e.getMessage(), e);
                         
                         // 実行エラーも記録
                         EventLog errorLog = new EventLog(
@@ -107,9 +123,9 @@ public class EventDispatcher {
                 }, EventTask.Priority.MEDIUM);
 
                 pool.submit(task);
-                System.out.printf("[EventDispatcher] Trigger fired and submitted: %s%n", trigger);
+                DIAG.debug("Trigger fired and submitted: {}", trigger);
             } else {
-                System.out.printf("[EventDispatcher] Trigger skipped: %s%n", trigger);
+                DIAG.debug("Trigger skipped: {}", trigger);
             }
         }
     }
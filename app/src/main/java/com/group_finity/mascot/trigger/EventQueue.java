@@ -4,15 +4,19 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import com.group_finity.mascot.event.EventTask;
+import com.group_finity.mascot.log.Diagnostics;
 
 /**
  * D-3c互換版 EventQueue
  * 
  * - EventLog専用APIは従来通り型安全
  * - 非同期EventTask用APIはObject扱いで併存
+ * - 登録のたびの出力は Diagnostics の "trigger.queue" に TRACE で出す
  */
 public class EventQueue {
 
+    private static final Diagnostics DIAG = Diagnostics.of("trigger.queue");
+
     // 内部キューはObject汎用だが、外部APIで型制御
     private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
 
@@ -20,7 +24,7 @@ public class EventQueue {
     public void enqueue(EventLog log) {
         if (log != null) {
             queue.offer(log);
-            System.out.println("[EventQueue] Enqueued: " + log);
+            DIAG.trace("Enqueued EventLog: {}", log);
         }
     }
 
@@ -28,7 +32,7 @@ public class EventQueue {
     public void offer(EventTask task) {
         if (task != null) {
             queue.offer(task);
-            System.out.println("[EventQueue] Offered EventTask: " + task);
+            DIAG.trace("Offered EventTask: {}", task);
         }
     }
 
@@ -1,57 +1,122 @@
 package com.group_finity.mascot.trigger;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 import com.group_finity.mascot.trigger.expr.ExpressionEngine;
+import com.group_finity.mascot.trigger.expr.cache.CachePolicy;
+import com.group_finity.mascot.trigger.expr.cache.CacheScope;
 import com.group_finity.mascot.trigger.expr.cache.CacheStatsTracker;
 import com.group_finity.mascot.trigger.expr.cache.EvaluationResult;
 import com.group_finity.mascot.trigger.expr.cache.ExprCacheKey;
 import com.group_finity.mascot.trigger.expr.cache.ExprCacheManager;
+import com.group_finity.mascot.trigger.expr.cache.FailureCache;
+import com.group_finity.mascot.trigger.expr.cache.WarmStartSnapshot;
+import com.group_finity.mascot.trigger.expr.compile.TieredExpression;
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.SlotVariables;
+import com.group_finity.mascot.trigger.expr.eval.VersionStamp;
 import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.StructuralHash;
 import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.parser.TypeInference;
 import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
 import com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver;
 import com.group_finity.mascot.trigger.expr.type.Mode;
 import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
 
 /**
  * D-5 修正版:
  * - 取得は AST+Mode のキーのみ（依存はキーに含めない）
- * - HIT 判定は EvaluationResult 内の依存と「現在の依存値」の比較で行う
- * - clearAccessLog() は再評価する時だけ呼ぶ
+ * - HIT 判定は EvaluationResult.isCurrent で行う（変数表が SlotVariables ならバージョン比較、
+ *   そうでなければ EvaluationResult 内の依存と「現在の依存値」の比較）
+ * - setValue / updateVariables で書き込まれた変数に依存する結果は、ExprCacheManager の逆引き索引で即座に無効化する。
+ *   通知は自分の変数表（SlotVariables）に登録した区画にだけ届き、無効化もその表から計算した結果に限る
+ *   （他のマスコットの区画や結果には触れない。通常の Map の変数表では参照時の値比較に任せる）
+ * - 結果キャッシュは CacheScope ごとに分かれる（既定は全体共有。マスコットごと・グループごとに分けられる）
+ * - 解析・評価に失敗した式は FailureCache に記録し、読んだ変数が書き換わるまで再評価しない（報告も間引く）
+ * - saveWarmStart / loadWarmStart で解析済みの式と評価結果をファイルに残し、再起動後に使い回せる
+ * - 再評価は newEvaluation() で作った評価ごとのコンテキストで行い、依存はそこから取る
+ *   （同じコンテキストを複数のスレッドで評価しても依存の記録が混ざらない）
  * - EvaluationContext は外部変数マップを参照共有（コンストラクタ呼び出し側の責務）
  */
 public class TriggerCondition {
 
-    private static final Map<String, ExpressionNode> AST_CACHE = new ConcurrentHashMap<>();
-    private static final ExprCacheManager cacheManager = new ExprCacheManager();
+    private static final Map<String, TieredExpression> AST_CACHE = new ConcurrentHashMap<>();
+    // 解析・評価に失敗した式（AST キャッシュと同じく全体で共有）
+    private static final FailureCache FAILURES = new FailureCache();
+    // 評価回数がこの値に達した式をバイトコードへコンパイルする（0以下で無効）
+    private static volatile int compileThreshold;
+    // 変数の宣言型（空なら型推論しない）
+    private static volatile VariableSchema schema = VariableSchema.EMPTY;
 
     private final String expression;
     private final ExpressionEngine engine;
     private EvaluationContext context; // 参照共有される想定
+    private volatile CacheScope cacheScope;
+    // 統計カウンタ（評価ごとに Map を引かないよう生成時に解決しておく）
+    private final CacheStatsTracker.Counters stats;
+    private volatile CacheStatsTracker.Counters scopeStats;
 
     public TriggerCondition(String expression, Map<String, Object> variables) {
+        this(expression, variables, CacheScope.global());
+    }
+
+    /** 結果キャッシュの区画を指定して生成する（同じ式を別の変数表で評価するマスコット同士が結果を上書きし合わないように） */
+    public TriggerCondition(String expression, Map<String, Object> variables, CacheScope scope) {
+        if (scope == null) throw new IllegalArgumentException("scope is null");
         this.expression = expression;
+        this.cacheScope = scope;
+        this.stats = CacheStatsTracker.INSTANCE.counters(expression);
+        this.scopeStats = CacheStatsTracker.INSTANCE.scopeCounters(scope);
         this.engine = new ExpressionEngine();
-        if (variables == null) variables = new HashMap<>();
+        if (variables == null) variables = new SlotVariables(schema); // 宣言型の変数は基本型の列で持つ
         // ★ EvaluationContext 側が参照共有コンストラクタを持つ前提（下の修正②参照）
         this.context = new EvaluationContext(variables, new DefaultTypeCoercion(), Mode.STRICT, true);
+        attachScope(scope, context);
+    }
+
+    /** 変数表への書き込みで、その表から計算した区画の結果が無効化されるようにする */
+    private static void attachScope(CacheScope scope, EvaluationContext ctx) {
+        if (ctx.getVariables() instanceof SlotVariables table) scope.attach(table);
+    }
+
+    /** attachScope の取り消し（差し替え前の区画が変数表から参照され続けないように） */
+    private static void detachScope(CacheScope scope, EvaluationContext ctx) {
+        if (ctx.getVariables() instanceof SlotVariables table) scope.detach(table);
     }
 
     public EvaluationContext getContext() { return context; }
     public void setVariable(String name, Object value) {
         if (context != null && context.getVariables() != null) {
-            context.getVariables().put(name, value);
+            context.setValue(name, value);
         }
     }
+    /** 複数の変数をまとめて書き込む（1フレーム分の更新。EvaluationContext.applyDelta） */
+    public Set<String> updateVariables(Map<String, ?> delta) {
+        return context != null ? context.applyDelta(delta) : Set.of();
+    }
     public String getExpression() { return expression; }
+    public CacheScope getCacheScope() { return cacheScope; }
+    public void setCacheScope(CacheScope scope) {
+        if (scope == null) throw new IllegalArgumentException("scope is null");
+        CacheScope previous = this.cacheScope;
+        if (previous == scope) return;
+        this.cacheScope = scope;
+        this.scopeStats = CacheStatsTracker.INSTANCE.scopeCounters(scope);
+        if (context != null) {
+            detachScope(previous, context);
+            attachScope(scope, context);
+        }
+    }
 
     public boolean evaluate() {
         return evaluate(this.context);
@@ -59,65 +124,70 @@ public class TriggerCondition {
 
     public boolean evaluate(EvaluationContext externalCtx) {
         if (externalCtx == null && this.context == null) {
-            this.context = new EvaluationContext(new HashMap<>(), new DefaultTypeCoercion(), Mode.STRICT, true);
+            this.context = new EvaluationContext(schema, new DefaultTypeCoercion(), Mode.STRICT);
+            attachScope(cacheScope, context);
         }
         EvaluationContext ctx = (externalCtx != null) ? externalCtx : this.context;
         if (ctx == null) return false;
 
         // 1) AST 構築（失敗時は false リテラルでフォールバック）
-        ExpressionNode ast = AST_CACHE.computeIfAbsent(expression, key -> {
+        TieredExpression tiered = AST_CACHE.computeIfAbsent(expression, key -> {
+            ExpressionNode parsed;
             try {
-                ExpressionNode parsed = new ExpressionParser(key).parse();
-                return (parsed != null) ? parsed : new com.group_finity.mascot.trigger.expr.node.LiteralNode(false);
+                parsed = new ExpressionParser(key).parse();
+                if (parsed == null) parsed = new com.group_finity.mascot.trigger.expr.node.LiteralNode(false);
+                else if (!schema.isEmpty()) parsed = new TypeInference(schema, DefaultTypeResolver.INSTANCE).apply(parsed);
             } catch (Exception e) {
-                System.err.println("[TriggerCondition] Parse error: " + key);
-                e.printStackTrace();
-                return new com.group_finity.mascot.trigger.expr.node.LiteralNode(false);
+                FAILURES.recordParseFailure(key, e);
+                parsed = new com.group_finity.mascot.trigger.expr.node.LiteralNode(false);
             }
+            return new TieredExpression(parsed, compileThreshold);
         });
+        ExpressionNode ast = tiered.getNode();
 
         // 2) AST+Mode のキーで取得（依存はキーに含めない）
         ExprCacheKey astKey = ExprCacheKey.ofAst(ast, ctx.getMode());
-        Optional<EvaluationResult> cached = cacheManager.get(astKey);
-
-        // 3) 依存比較で HIT 判定（clearAccessLog はここでは呼ばない）
-        if (cached.isPresent()) {
-            Map<String, Object> currentDeps;
-            if (ctx.getMode() == Mode.STRICT) {
-            	// new: no copy; equals() compares entries, not identity
-            	currentDeps = ctx.getVariables();
-            	
-            } else {
-                // LOOSE: 前回依存していたキーのみ抽出
-                Set<String> keys = cached.get().getDependencies().keySet();
-                currentDeps = keys.stream()
-                        .collect(Collectors.toMap(k -> k, k -> ctx.getVariables().get(k),
-                                (a, b) -> a, LinkedHashMap::new));
-            }
-            if (!cached.get().isOutdated(currentDeps)) {
-                CacheStatsTracker.INSTANCE.recordHit(expression);
-                return TypeResolver.toBoolean(cached.get().getValue());
-            }
+        // ヒットの経路は一部だけ時間を測る（ミスは必ず測る。標本でなければ参照の後から）
+        long lookupStart = CacheStatsTracker.sampleLookup() ? System.nanoTime() : 0L;
+        CacheScope scope = cacheScope;
+        CacheStatsTracker.Counters scopeCounters = scopeStats;
+        ExprCacheManager results = scope.cache(); // setCacheCapacity で差し替わっても get/put は同じインスタンスに対して行う
+        Optional<EvaluationResult> cached = results.get(astKey);
+
+        // 3) 鮮度判定で HIT（STRICT は変数表全体、LOOSE は依存変数の書き込み有無）
+        if (cached.isPresent() && cached.get().isCurrent(ctx)) {
+            boolean hit = TypeResolver.toBoolean(cached.get().getValue());
+            if (lookupStart != 0L) CacheStatsTracker.INSTANCE.recordHit(stats, scopeCounters, System.nanoTime() - lookupStart);
+            else CacheStatsTracker.INSTANCE.recordHit(stats, scopeCounters);
+            return hit;
+        }
+        if (lookupStart == 0L) lookupStart = System.nanoTime();
+
+        // 4) 前回と同じ入力で評価に失敗していれば再評価しない
+        if (FAILURES.evaluationFailure(expression, ctx) != null) {
+            CacheStatsTracker.INSTANCE.recordMiss(stats, scopeCounters, System.nanoTime() - lookupStart);
+            return false;
         }
-        CacheStatsTracker.INSTANCE.recordMiss(expression);
 
-        // 4) 再評価（この時だけアクセスログをクリア）
-        ctx.clearAccessLog();
+        // 5) 再評価（依存は評価ごとのコンテキストに記録する）
+        EvaluationContext eval = ctx.newEvaluation();
         long start = System.nanoTime();
         Object result;
         try {
-            result = ast.evaluate(ctx, new DefaultTypeResolver(), new DefaultTypeCoercion());
+            result = tiered.evaluate(eval, DefaultTypeResolver.INSTANCE, DefaultTypeCoercion.INSTANCE);
         } catch (Exception e) {
-            System.err.println("[TriggerCondition] Evaluation failed: " + expression);
-            e.printStackTrace();
+            FAILURES.recordEvaluationFailure(expression, e, eval);
             result = false;
         }
         long end = System.nanoTime();
 
-        // 5) 依存スナップショットを保存（put は AST キーに上書き）
-        Map<String, Object> deps = ctx.snapshotDependencies();
-        EvaluationResult evalResult = new EvaluationResult(result, deps, end, end - start, ctx.getMode());
-        cacheManager.put(astKey, evalResult);
+        // 6) 依存の記録を保存（put は AST キーに上書き）。SlotVariables ならバージョンだけを持ち、値はコピーしない
+        VersionStamp stamp = eval.stampDependencies();
+        EvaluationResult evalResult = (stamp != null)
+            ? new EvaluationResult(result, stamp, end, end - start, ctx.getMode())
+            : new EvaluationResult(result, eval.snapshotDependencies(), end, end - start, ctx.getMode());
+        results.put(astKey, evalResult);
+        CacheStatsTracker.INSTANCE.recordMiss(stats, scopeCounters, System.nanoTime() - lookupStart);
 
         return TypeResolver.toBoolean(result);
     }
@@ -125,8 +195,99 @@ public class TriggerCondition {
     @Override
     public String toString() { return "TriggerCondition[" + expression + "]"; }
     
+    /** 全体共有の区画を空にする（グループ・個別の区画はそのまま） */
     public static void clearGlobalCache() {
-        cacheManager.clear();
+        CacheScope.global().clear();
+    }
+
+    /**
+     * 全体共有の区画の容量を変更する（既定は ExprCacheManager.DEFAULT_CAPACITY）。キャッシュは空になる。
+     * 以後に作られるグループ区画もこの容量になる。
+     */
+    public static void setCacheCapacity(int capacity) {
+        CacheScope global = CacheScope.global();
+        global.reconfigure(capacity, global.cache().policy());
+    }
+
+    public static int getCacheCapacity() {
+        return CacheScope.global().cache().capacity();
+    }
+
+    /**
+     * 全体共有の区画の保持方針を変更する（既定は CachePolicy.ADMIT_ALL = すべて保持）。キャッシュは空になる。
+     * CachePolicy.costAware(...) を指定すると、評価が安い式や依存がすぐ変わる式はキャッシュを通さない。
+     * 以後に作られるグループ・個別の区画もこの方針になる。
+     */
+    public static void setCachePolicy(CachePolicy policy) {
+        CacheScope global = CacheScope.global();
+        global.reconfigure(global.cache().capacity(), policy);
+    }
+
+    public static CachePolicy getCachePolicy() {
+        return CacheScope.global().cache().policy();
+    }
+
+    /** 解析・評価に失敗した式の記録（診断用。clear() すると次の評価で再試行される） */
+    public static FailureCache getFailureCache() {
+        return FAILURES;
+    }
+
+    /** 評価回数がこの値に達した式をコンパイルする（0以下で無効）。AST キャッシュは作り直す。 */
+    public static void setCompileThreshold(int threshold) {
+        compileThreshold = threshold;
+        AST_CACHE.clear();
+        FAILURES.clear();
+    }
+
+    /** 変数の宣言型を設定する。AST キャッシュは作り直す。 */
+    public static void setVariableSchema(VariableSchema variableSchema) {
+        schema = (variableSchema != null) ? variableSchema : VariableSchema.EMPTY;
+        AST_CACHE.clear();
+        FAILURES.clear();
+    }
+
+    // ===== ウォームスタート =====
+
+    /**
+     * 解析済みの式（コンパイル済みかどうかも含む）と、全体・グループ区画の評価結果をファイルに保存する（終了時に呼ぶ）。
+     *
+     * @return 書き込んだレコード数
+     */
+    public static int saveWarmStart(Path file) throws IOException {
+        List<WarmStartSnapshot.Expression> expressions = new ArrayList<>();
+        AST_CACHE.forEach((source, tiered) ->
+            expressions.add(new WarmStartSnapshot.Expression(source, tiered.getNode(), tiered.isCompiled())));
+        return WarmStartSnapshot.write(file, schemaFingerprint(), expressions, CacheScope.all());
+    }
+
+    /**
+     * saveWarmStart で保存したファイルを読み込み、AST キャッシュと評価結果キャッシュに戻す（起動時に呼ぶ）。
+     * 変数の宣言型（setVariableSchema）が保存時と違う場合は何も戻さない。
+     * 評価結果は依存変数の値が保存時と同じ間だけ使われる（EvaluationResult.isCurrent の値比較）。
+     *
+     * @return 戻した式と評価結果の数
+     */
+    public static int loadWarmStart(Path file) throws IOException {
+        WarmStartSnapshot snapshot = WarmStartSnapshot.read(file, schemaFingerprint());
+        int restored = 0;
+        int threshold = compileThreshold;
+        for (WarmStartSnapshot.Expression e : snapshot.getExpressions()) {
+            TieredExpression tiered = new TieredExpression(e.getNode(), threshold);
+            if (AST_CACHE.putIfAbsent(e.getSource(), tiered) != null) continue;
+            if (e.isCompiled()) tiered.precompile();
+            restored++;
+        }
+        return restored + snapshot.restoreResults();
+    }
+
+    /** AST の形を決める設定（変数の宣言型）の指紋。名前順に畳むので Map の並びに依存しない */
+    private static long schemaFingerprint() {
+        VariableSchema s = schema;
+        List<String> names = new ArrayList<>(s.names());
+        Collections.sort(names);
+        long h = StructuralHash.of("schema");
+        for (String name : names) h = StructuralHash.combine(h, StructuralHash.of(name), StructuralHash.of(s.typeOf(name)));
+        return h;
     }
 
 }
@@ -6,6 +6,8 @@ import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.group_finity.mascot.log.Diagnostics;
+import com.group_finity.mascot.trigger.expr.cache.FailureCache;
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
 import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
 
@@ -15,6 +17,7 @@ import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
  * 目的：
  * - ExpressionParser の具体的な API がどの形で来ても動くようにする（parse のシグネチャ違い等）。
  * - 同一式文字列は AST をキャッシュして再利用する。
+ * - 解析・評価に失敗した式は FailureCache に記録し、入力が変わるまで再試行しない（報告も間引く）。
  *
  * 実行時に次の順で呼び出しを試みます（見つかった方法を使う）：
  *  1) ExpressionParser.static parse(String, TypeResolver) などの静的メソッド
@@ -28,12 +31,15 @@ import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
  */
 public class ExprEvaluator {
 
+    private static final Diagnostics DIAG = Diagnostics.of("trigger.expr.evaluator");
+
     private static final String PARSER_CLASS = "com.group_finity.mascot.trigger.expr.parser.ExpressionParser";
     private static final String TYPE_RESOLVER_CLASS = "com.group_finity.mascot.trigger.expr.type.TypeResolver";
     private static final String DEFAULT_TYPE_RESOLVER_CLASS = "com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver";
     private static final String EXPRESSION_NODE_CLASS = "com.group_finity.mascot.trigger.expr.node.ExpressionNode";
 
     private final Map<String, ExpressionNode> cache = new ConcurrentHashMap<>();
+    private final FailureCache failures = new FailureCache();
 
     // Reflection resolved handles (may be null if not found)
     private final Class<?> parserClass;
@@ -160,16 +166,29 @@ public class ExprEvaluator {
     /**
      * Evaluate an expression in the given context.
      * Returns the evaluation result, or Boolean.FALSE on error / inability to parse.
+     * The expression runs in context.newEvaluation(), so the same context may be passed from several threads.
      */
     public Object evaluate(String expression, EvaluationContext context) {
         if (expression == null || expression.isEmpty()) return Boolean.FALSE;
 
+        ExpressionNode node = cache.get(expression);
+        if (node == null) {
+            if (failures.parseFailure(expression) != null) return Boolean.FALSE;
+            node = cache.computeIfAbsent(expression, this::createNode);
+            if (node == null) {
+                // createNode は例外を握りつぶして null を返すので、ここで失敗として記録する
+                failures.recordParseFailure(expression,
+                    new IllegalArgumentException("Failed to parse expression into node"));
+                return Boolean.FALSE;
+            }
+        }
+        if (failures.evaluationFailure(expression, context) != null) return Boolean.FALSE;
+        // 読んだ変数は評価ごとのコンテキストに記録する（失敗の入力に、同じコンテキストで先に評価した別の式の変数を含めない）
+        EvaluationContext eval = (context != null) ? context.newEvaluation() : null;
         try {
-            ExpressionNode node = cache.computeIfAbsent(expression, expr -> createNode(expr));
-            if (node == null) return Boolean.FALSE;
-            return node.evaluate(context);
+            return node.evaluate(eval);
         } catch (Exception e) {
-            System.err.println("[ExprEvaluator] evaluate error for \"" + expression + "\": " + e.getMessage());
+            failures.recordEvaluationFailure(expression, e, eval);
             return Boolean.FALSE;
         }
     }
@@ -180,7 +199,7 @@ public class ExprEvaluator {
     private ExpressionNode createNode(String expression) {
         // if parser class not found, nothing we can do
         if (parserClass == null) {
-            System.err.println("[ExprEvaluator] Parser class not found: " + PARSER_CLASS);
+            DIAG.error("Parser class not found: {}", PARSER_CLASS);
             return null;
         }
 
@@ -254,10 +273,9 @@ public class ExprEvaluator {
                 } catch (Throwable ignored) { /* fall through */ }
             }
         } catch (Throwable t) {
-            System.err.println("[ExprEvaluator] createNode unexpected error: " + t.getMessage());
+            DIAG.error("createNode unexpected error: {}", t.getMessage());
         }
 
-        System.err.println("[ExprEvaluator] Failed to parse expression into node: " + expression);
         return null;
     }
 
@@ -342,6 +360,11 @@ public class ExprEvaluator {
 
     public void clearCache() {
         cache.clear();
+        failures.clear();
+    }
+
+    public FailureCache getFailureCache() {
+        return failures;
     }
 
     public ExpressionNode getCachedNode(String expression) {
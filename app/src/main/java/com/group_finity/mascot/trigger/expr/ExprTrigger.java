@@ -1,11 +1,14 @@
 package com.group_finity.mascot.trigger.expr;
 
+import com.group_finity.mascot.log.Diagnostics;
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
 import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
 import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
 
 public final class ExprTrigger {
 
+    private static final Diagnostics DIAG = Diagnostics.of("trigger.expr.trigger");
+
     private final ExpressionNode expression;
 
     public ExprTrigger(String exprText) {
@@ -19,8 +22,7 @@ public final class ExprTrigger {
             if (result instanceof Number n) return n.doubleValue() != 0.0;
             return result != null;
         } catch (Exception e) {
-            System.err.println("[ExprTrigger] Evaluation error: " + e.getMessage());
-            e.printStackTrace();
+            DIAG.error("Evaluation error: {}", e.getMessage(), e);
             return false;
         }
     }
@@ -3,22 +3,32 @@ package com.group_finity.mascot.trigger.expr;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.group_finity.mascot.trigger.expr.cache.FailureCache;
+import com.group_finity.mascot.trigger.expr.compile.TieredExpression;
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
 import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
 import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.parser.TypeInference;
 import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
 import com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver;
 import com.group_finity.mascot.trigger.expr.type.Mode;
 import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
 import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
 
 public final class ExpressionEngine {
 
     private TypeResolver typeResolver;
     private TypeCoercion typeCoercion;
     private Mode mode;
+    // 評価回数がこの値に達した式をバイトコードへコンパイルする（0以下で無効）
+    private volatile int compileThreshold;
+    // 変数の宣言型（空なら型推論しない）
+    private volatile VariableSchema schema = VariableSchema.EMPTY;
 
-    private final Map<String, ExpressionNode> cache = new ConcurrentHashMap<>();
+    private final Map<String, TieredExpression> cache = new ConcurrentHashMap<>();
+    // 解析・評価に失敗した式（入力が変わるまで再試行しない。報告も間引く）
+    private final FailureCache failures = new FailureCache();
 
     public ExpressionEngine() {
         // デフォルト構成（明示的に指定されなければDefault）
@@ -38,25 +48,69 @@ public final class ExpressionEngine {
     public void setTypeCoercion(TypeCoercion coercion) { this.typeCoercion = coercion; }
     public void setMode(Mode mode) { this.mode = mode; }
 
+    /** コンパイル閾値を変更する。既存のキャッシュは新しい閾値で作り直す。 */
+    public void setCompileThreshold(int threshold) {
+        this.compileThreshold = threshold;
+        clearCache();
+    }
+
+    /** 変数の宣言型を設定する。既存のキャッシュは新しいスキーマで作り直す。 */
+    public void setVariableSchema(VariableSchema schema) {
+        this.schema = (schema != null) ? schema : VariableSchema.EMPTY;
+        clearCache();
+    }
+
     public TypeResolver getTypeResolver() { return typeResolver; }
     public TypeCoercion getTypeCoercion() { return typeCoercion; }
     public Mode getMode() { return mode; }
+    public int getCompileThreshold() { return compileThreshold; }
+    public VariableSchema getVariableSchema() { return schema; }
 
+    /**
+     * 式を評価する。解析・評価に失敗した場合は false。
+     * 失敗は FailureCache に記録し、解析失敗は clearCache まで、評価失敗はこの式が読んだ変数が書き換わるまで再試行しない。
+     * 評価は context.newEvaluation() の子で行うので、同じ context を複数スレッドから渡してよい。
+     */
     public Object evaluate(String expression, EvaluationContext context) {
         if (expression == null || expression.isEmpty()) return Boolean.FALSE;
+        TieredExpression tiered = cache.get(expression);
+        if (tiered == null) {
+            if (failures.parseFailure(expression) != null) return Boolean.FALSE;
+            try {
+                tiered = cache.computeIfAbsent(expression, this::parse);
+            } catch (RuntimeException e) {
+                failures.recordParseFailure(expression, e);
+                return Boolean.FALSE;
+            }
+        }
+        if (failures.evaluationFailure(expression, context) != null) return Boolean.FALSE;
+        // 読んだ変数は評価ごとのコンテキストに記録する（失敗の入力に、同じコンテキストで先に評価した別の式の変数を含めない）
+        EvaluationContext eval = (context != null) ? context.newEvaluation() : null;
         try {
-            ExpressionNode node = cache.computeIfAbsent(expression, expr -> {
-                ExpressionParser parser = new ExpressionParser(expr);
-                return parser.parse();
-            });
-            if (node == null) return Boolean.FALSE;
-            return node.evaluate(context, typeResolver, typeCoercion);
-        } catch (Exception e) {
-            System.err.println("[ExpressionEngine] evaluate error for \"" + expression + "\": " + e.getMessage());
+            return tiered.evaluate(eval, typeResolver, typeCoercion);
+        } catch (RuntimeException e) {
+            failures.recordEvaluationFailure(expression, e, eval);
             return Boolean.FALSE;
         }
     }
 
-    public void clearCache() { cache.clear(); }
-    public ExpressionNode getCachedNode(String expression) { return cache.get(expression); }
+    private TieredExpression parse(String expression) {
+        ExpressionNode parsed = new ExpressionParser(expression).parse();
+        if (parsed == null) throw new IllegalStateException("Parser returned no node");
+        if (!schema.isEmpty()) parsed = new TypeInference(schema, typeResolver).apply(parsed);
+        return new TieredExpression(parsed, compileThreshold);
+    }
+
+    /** AST キャッシュと失敗の記録を消す（失敗した式も次の評価で再試行される） */
+    public void clearCache() {
+        cache.clear();
+        failures.clear();
+    }
+
+    public FailureCache getFailureCache() { return failures; }
+
+    public ExpressionNode getCachedNode(String expression) {
+        TieredExpression tiered = cache.get(expression);
+        return tiered != null ? tiered.getNode() : null;
+    }
 }
@@ -0,0 +1,83 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+/**
+ * Decides which results ExprCacheManager keeps and how long they survive eviction.
+ *
+ * A result is worth caching when recomputing it costs more than looking it up, and when it is
+ * read again more often than its dependencies change. The policy weighs three per-key statistics
+ * the cache maintains:
+ * - cost: moving average of EvaluationResult.getEvalDurationNanos()
+ * - hits: reads that could be answered from the cache
+ * - changes: recomputations that replaced a previous result (invalidated or outdated)
+ *
+ * Keys that fail the test stay in the cache as bypassed entries without a result, so their
+ * statistics keep accumulating and they are admitted again once they become worth it.
+ * ADMIT_ALL keeps every result and evicts with plain CLOCK.
+ */
+public final class CachePolicy {
+
+    /** Caches every result (the behaviour before cost-aware admission). */
+    public static final CachePolicy ADMIT_ALL = new CachePolicy(0L, 0, 0.0);
+
+    /** Upper bound of the CLOCK credits an expensive entry can earn. */
+    static final int MAX_CREDITS = 3;
+
+    private final long minCostNanos;
+    private final int volatilityWindow;
+    private final double minHitsPerChange;
+
+    private CachePolicy(long minCostNanos, int volatilityWindow, double minHitsPerChange) {
+        this.minCostNanos = minCostNanos;
+        this.volatilityWindow = volatilityWindow;
+        this.minHitsPerChange = minHitsPerChange;
+    }
+
+    /**
+     * @param minCostNanos     results whose average evaluation time is below this are not cached
+     * @param volatilityWindow number of observations (hits + changes) before volatility is judged; 0 disables it
+     * @param minHitsPerChange keys read fewer times than this per recomputation are considered volatile
+     */
+    public static CachePolicy costAware(long minCostNanos, int volatilityWindow, double minHitsPerChange) {
+        if (minCostNanos < 0) throw new IllegalArgumentException("minCostNanos must not be negative: " + minCostNanos);
+        if (volatilityWindow < 0) throw new IllegalArgumentException("volatilityWindow must not be negative: " + volatilityWindow);
+        if (minHitsPerChange < 0) throw new IllegalArgumentException("minHitsPerChange must not be negative: " + minHitsPerChange);
+        return new CachePolicy(minCostNanos, volatilityWindow, minHitsPerChange);
+    }
+
+    /** Whether a key with these statistics should hold its result in the cache. */
+    public boolean admit(long avgCostNanos, int hits, int changes) {
+        if (avgCostNanos < minCostNanos) return false;
+        if (volatilityWindow == 0 || hits + changes < volatilityWindow) return true;
+        return hits >= minHitsPerChange * changes;
+    }
+
+    /**
+     * CLOCK credits granted on a hit: 1 for plain second chance, more for entries that cost several
+     * times the admission threshold, so that they survive more sweeps of the hand.
+     */
+    int credits(long avgCostNanos) {
+        if (minCostNanos == 0) return 1;
+        int credits = 1;
+        long bar = minCostNanos << 2;
+        while (credits < MAX_CREDITS && bar > 0 && avgCostNanos >= bar) {
+            credits++;
+            bar <<= 2;
+        }
+        return credits;
+    }
+
+    /** Observation count after which statistics are halved, so the policy follows recent behaviour. */
+    int decayAt() {
+        return volatilityWindow == 0 ? 1 << 16 : volatilityWindow * 4;
+    }
+
+    public long getMinCostNanos() { return minCostNanos; }
+    public int getVolatilityWindow() { return volatilityWindow; }
+    public double getMinHitsPerChange() { return minHitsPerChange; }
+
+    @Override
+    public String toString() {
+        return "CachePolicy[minCost=" + minCostNanos + "ns, window=" + volatilityWindow
+            + ", minHitsPerChange=" + minHitsPerChange + "]";
+    }
+}
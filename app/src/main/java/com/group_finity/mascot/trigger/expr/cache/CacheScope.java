@@ -0,0 +1,186 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.group_finity.mascot.trigger.expr.eval.SlotVariables;
+import com.group_finity.mascot.trigger.expr.eval.VariableChangeListener;
+
+/**
+ * A partition of the expression result cache with its own bounded ExprCacheManager.
+ *
+ * Keys are only AST + Mode, so conditions evaluated against different variable tables overwrite each
+ * other's results when they share one cache. Scopes separate them:
+ * - GLOBAL: the single shared cache (the default for every TriggerCondition)
+ * - GROUP: shared by all holders of the same name, e.g. mascots of one kind that see the same variables
+ * - PRIVATE: owned by one holder, e.g. one mascot's context; collected together with its owner
+ *
+ * A scope only invalidates results for the variable tables it serves: attach(table) registers a change
+ * listener on that table which marks this scope's entries computed from it. Writes to one mascot's
+ * table therefore never touch other scopes, nor other tables' results within the same scope.
+ * Attachments are counted per table, so several holders sharing a scope and a table can each attach and
+ * detach; the listener goes away with the last detach, releasing the table's reference to the scope.
+ *
+ * Each scope is bounded by its own entry capacity and byte budget (see ExprCacheManager), so one busy scope
+ * cannot push out another's results. Statistics are recorded per scope instance in CacheStatsTracker.
+ */
+public final class CacheScope {
+
+    public enum Kind { GLOBAL, GROUP, PRIVATE }
+
+    /** Capacity of private scopes created without an explicit capacity. */
+    public static final int DEFAULT_PRIVATE_CAPACITY = 128;
+
+    private static final String GROUP_PREFIX = "group:";
+
+    private static final CacheScope GLOBAL = new CacheScope(Kind.GLOBAL, "global", new ExprCacheManager());
+    private static final ConcurrentHashMap<String, CacheScope> GROUPS = new ConcurrentHashMap<>();
+    // private scopes are reachable only through their owners; guarded by itself
+    private static final Set<CacheScope> PRIVATES = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final Kind kind;
+    private final String name;
+    private volatile ExprCacheManager cache;
+    // table id -> number of attach calls not yet matched by detach; guarded by itself
+    private final Map<Long, Integer> attachments = new HashMap<>();
+
+    private CacheScope(Kind kind, String name, ExprCacheManager cache) {
+        this.kind = kind;
+        this.name = name;
+        this.cache = cache;
+    }
+
+    public static CacheScope global() {
+        return GLOBAL;
+    }
+
+    /** The group scope with this name, created with the global scope's capacity and policy on first use. */
+    public static CacheScope group(String name) {
+        if (name == null || name.isEmpty()) throw new IllegalArgumentException("group name is empty");
+        return GROUPS.computeIfAbsent(name, n -> {
+            ExprCacheManager g = GLOBAL.cache;
+            return new CacheScope(Kind.GROUP, GROUP_PREFIX + n, new ExprCacheManager(g.capacity(), g.policy(), g.maxBytes()));
+        });
+    }
+
+    /** The global or group scope with this name (as returned by name()); null for private scopes. */
+    static CacheScope byName(String name) {
+        if (name.equals(GLOBAL.name)) return GLOBAL;
+        if (name.startsWith(GROUP_PREFIX)) return group(name.substring(GROUP_PREFIX.length()));
+        return null;
+    }
+
+    /** A new scope not shared with anyone, using the global scope's policy. */
+    public static CacheScope newPrivate(String name) {
+        return newPrivate(name, DEFAULT_PRIVATE_CAPACITY);
+    }
+
+    public static CacheScope newPrivate(String name, int capacity) {
+        return newPrivate(name, capacity, capacity * ExprCacheManager.DEFAULT_BYTES_PER_ENTRY);
+    }
+
+    /** A new private scope bounded by both entry count and estimated bytes. */
+    public static CacheScope newPrivate(String name, int capacity, long maxBytes) {
+        CacheScope scope = new CacheScope(Kind.PRIVATE, "private:" + name,
+            new ExprCacheManager(capacity, GLOBAL.cache.policy(), maxBytes));
+        synchronized (PRIVATES) {
+            PRIVATES.add(scope);
+        }
+        return scope;
+    }
+
+    /** Every live scope (global, groups and private scopes still referenced by their owners). */
+    public static List<CacheScope> all() {
+        List<CacheScope> scopes = new ArrayList<>();
+        scopes.add(GLOBAL);
+        scopes.addAll(GROUPS.values());
+        synchronized (PRIVATES) {
+            scopes.addAll(PRIVATES);
+        }
+        return scopes;
+    }
+
+    public static void clearAll() {
+        for (CacheScope scope : all()) scope.cache.clear();
+    }
+
+    /** Entries held by each live scope, keyed by scope name. */
+    public static Map<String, Integer> sizes() {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (CacheScope scope : all()) sizes.merge(scope.name, scope.cache.size(), Integer::sum);
+        return sizes;
+    }
+
+    /** The cache of this scope. Read it once per lookup so that get and put hit the same instance. */
+    public ExprCacheManager cache() {
+        return cache;
+    }
+
+    /**
+     * Makes writes to the table (through EvaluationContext.setValue / update / applyDelta) invalidate this
+     * scope's results computed from it. Each call must be matched by one detach(table).
+     */
+    public void attach(SlotVariables table) {
+        synchronized (attachments) {
+            if (attachments.merge(table.id(), 1, Integer::sum) == 1) {
+                table.addChangeListener(new Invalidation(this, table.id()));
+            }
+        }
+    }
+
+    /** Undoes one attach(table); writes to the table stop invalidating this scope once every attach is undone. */
+    public void detach(SlotVariables table) {
+        synchronized (attachments) {
+            Integer n = attachments.get(table.id());
+            if (n == null) return;
+            if (n > 1) {
+                attachments.put(table.id(), n - 1);
+                return;
+            }
+            attachments.remove(table.id());
+            table.removeChangeListener(new Invalidation(this, table.id()));
+        }
+    }
+
+    /** Listener registered on a served table; equal per (scope, table) so a table gets at most one per scope. */
+    private record Invalidation(CacheScope scope, long source) implements VariableChangeListener {
+        @Override
+        public void variableChanged(String name) {
+            scope.cache.invalidate(source, name);
+        }
+
+        @Override
+        public void variablesChanged(Set<String> names) {
+            ExprCacheManager cache = scope.cache;
+            for (String name : names) cache.invalidate(source, name);
+        }
+    }
+
+    /** Replaces this scope's cache with an empty one of the given capacity and policy (default byte budget). */
+    public void reconfigure(int capacity, CachePolicy policy) {
+        cache = new ExprCacheManager(capacity, policy);
+    }
+
+    public void reconfigure(int capacity, CachePolicy policy, long maxBytes) {
+        cache = new ExprCacheManager(capacity, policy, maxBytes);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public Kind kind() { return kind; }
+    public String name() { return name; }
+
+    @Override
+    public String toString() {
+        return "CacheScope[" + name + ", " + cache.size() + "/" + cache.capacity() + "]";
+    }
+}
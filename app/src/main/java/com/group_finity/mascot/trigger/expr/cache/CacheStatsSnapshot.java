@@ -0,0 +1,80 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of CacheStatsTracker's counters and latency histograms at one point in time.
+ * Counters are read one by one while recording continues, so totals may differ slightly from the
+ * sum of the per-trigger values.
+ */
+public final class CacheStatsSnapshot {
+
+    private final long timestampMillis;
+    private final long hits;
+    private final long misses;
+    private final long memoHits;
+    private final long memoMisses;
+    private final Map<String, Long> triggerHits;
+    private final Map<String, Long> triggerMisses;
+    private final Map<String, Long> scopeHits;
+    private final Map<String, Long> scopeMisses;
+    private final LatencyHistogram.Snapshot hitLatency;
+    private final LatencyHistogram.Snapshot missLatency;
+
+    CacheStatsSnapshot(long timestampMillis,
+                       long hits, long misses,
+                       long memoHits, long memoMisses,
+                       Map<String, CacheStatsTracker.Counters> perTrigger,
+                       Map<String, CacheStatsTracker.Counters> perScope,
+                       LatencyHistogram.Snapshot hitLatency,
+                       LatencyHistogram.Snapshot missLatency) {
+        this.timestampMillis = timestampMillis;
+        this.hits = hits;
+        this.misses = misses;
+        this.memoHits = memoHits;
+        this.memoMisses = memoMisses;
+        this.triggerHits = hitsOf(perTrigger);
+        this.triggerMisses = missesOf(perTrigger);
+        this.scopeHits = hitsOf(perScope);
+        this.scopeMisses = missesOf(perScope);
+        this.hitLatency = hitLatency;
+        this.missLatency = missLatency;
+    }
+
+    static Map<String, Long> hitsOf(Map<String, CacheStatsTracker.Counters> counters) {
+        Map<String, Long> copy = new LinkedHashMap<>();
+        counters.forEach((id, c) -> copy.put(id, c.hits()));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    static Map<String, Long> missesOf(Map<String, CacheStatsTracker.Counters> counters) {
+        Map<String, Long> copy = new LinkedHashMap<>();
+        counters.forEach((id, c) -> copy.put(id, c.misses()));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    public long getTimestampMillis() { return timestampMillis; }
+    public long getHitCount() { return hits; }
+    public long getMissCount() { return misses; }
+    public long getMemoHitCount() { return memoHits; }
+    public long getMemoMissCount() { return memoMisses; }
+    public Map<String, Long> getPerTriggerHits() { return triggerHits; }
+    public Map<String, Long> getPerTriggerMisses() { return triggerMisses; }
+    public Map<String, Long> getPerScopeHits() { return scopeHits; }
+    public Map<String, Long> getPerScopeMisses() { return scopeMisses; }
+    public LatencyHistogram.Snapshot getHitLatency() { return hitLatency; }
+    public LatencyHistogram.Snapshot getMissLatency() { return missLatency; }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[CacheStats hits=%d misses=%d rate=%.1f%% hitLatency=%s missLatency=%s]",
+            hits, misses, getHitRate() * 100, hitLatency, missLatency);
+    }
+}
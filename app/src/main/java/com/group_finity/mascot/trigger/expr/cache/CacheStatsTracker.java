@@ -1,50 +1,218 @@
 package com.group_finity.mascot.trigger.expr.cache;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
- * Records cache hit/miss statistics globally and per trigger.
+ * Records cache hit/miss statistics globally, per trigger and per cache scope.
+ * Also aggregates the per-tick subexpression memo (TickMemo) hits and misses.
+ *
+ * All counters are LongAdders. Callers on the hot path resolve a Counters handle once
+ * (counters(triggerId), scopeCounters(scope)) and record through it, so no map lookup or string
+ * hashing happens per evaluation. Scope counters belong to the scope instance (two private scopes with
+ * the same name count separately) and are held weakly, so they go away with collected private scopes;
+ * reports key them by scope name, summing scopes that share a name. Latencies of the hit and miss paths
+ * go into LatencyHistograms: every miss is timed, but hits only when sampleLookup() says so
+ * (one lookup in HIT_LATENCY_SAMPLE_INTERVAL on average), so the hit histogram is a sample and its count is not
+ * the hit count.
+ * snapshot() reads everything without blocking recorders; startPeriodicSnapshots exports it on a timer.
  */
 public final class CacheStatsTracker {
 
     public static final CacheStatsTracker INSTANCE = new CacheStatsTracker();
     public CacheStatsTracker() {}
 
-    private final AtomicLong hitCount  = new AtomicLong();
-    private final AtomicLong missCount = new AtomicLong();
+    /** On average one lookup in this many is timed on the hit path. */
+    public static final int HIT_LATENCY_SAMPLE_INTERVAL = 64;
 
-    private final ConcurrentHashMap<String, AtomicLong> perTriggerHits  = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, AtomicLong> perTriggerMisses = new ConcurrentHashMap<>();
+    private final LongAdder hitCount  = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder memoHitCount  = new LongAdder();
+    private final LongAdder memoMissCount = new LongAdder();
+
+    private final LatencyHistogram hitLatency  = new LatencyHistogram();
+    private final LatencyHistogram missLatency = new LatencyHistogram();
+
+    // handles stay valid across reset(): it zeroes them instead of dropping them
+    private final ConcurrentHashMap<String, Counters> perTrigger = new ConcurrentHashMap<>();
+    // keyed by scope identity (CacheScope does not override equals); weak so private scopes can be collected
+    private final Map<CacheScope, Counters> perScope = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** Hit/miss counters of one trigger or scope. */
+    public static final class Counters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public long hits()   { return hits.sum(); }
+        public long misses() { return misses.sum(); }
+
+        void reset() {
+            hits.reset();
+            misses.reset();
+        }
+    }
+
+    /** The counters of a trigger; resolve once and pass to recordHit/recordMiss. */
+    public Counters counters(String triggerId) {
+        return perTrigger.computeIfAbsent(triggerId, id -> new Counters());
+    }
+
+    /** The counters of a scope instance; resolve once and pass to recordHit/recordMiss. */
+    public Counters scopeCounters(CacheScope scope) {
+        return perScope.computeIfAbsent(scope, s -> new Counters());
+    }
+
+    /** Scope counters summed by scope name (a fresh copy; recording continues on the originals). */
+    private Map<String, Counters> scopesByName() {
+        Map<String, Counters> byName = new LinkedHashMap<>();
+        synchronized (perScope) {
+            perScope.forEach((scope, c) -> {
+                Counters sum = byName.computeIfAbsent(scope.name(), n -> new Counters());
+                sum.hits.add(c.hits());
+                sum.misses.add(c.misses());
+            });
+        }
+        return byName;
+    }
+
+    /**
+     * Whether the caller should time this lookup, with probability 1/HIT_LATENCY_SAMPLE_INTERVAL.
+     * Uses the thread's own random generator, so deciding writes no shared state.
+     */
+    public static boolean sampleLookup() {
+        return ThreadLocalRandom.current().nextInt(HIT_LATENCY_SAMPLE_INTERVAL) == 0;
+    }
+
+    /** Counts a hit that was not timed (see sampleLookup). */
+    public void recordHit(Counters trigger, Counters scope) {
+        hitCount.increment();
+        trigger.hits.increment();
+        if (scope != null) scope.hits.increment();
+    }
+
+    public void recordHit(Counters trigger, Counters scope, long latencyNanos) {
+        recordHit(trigger, scope);
+        hitLatency.record(latencyNanos);
+    }
+
+    public void recordMiss(Counters trigger, Counters scope, long latencyNanos) {
+        missCount.increment();
+        trigger.misses.increment();
+        if (scope != null) scope.misses.increment();
+        missLatency.record(latencyNanos);
+    }
 
     public void recordHit(String triggerId) {
-        hitCount.incrementAndGet();
-        perTriggerHits.computeIfAbsent(triggerId, id -> new AtomicLong()).incrementAndGet();
+        hitCount.increment();
+        counters(triggerId).hits.increment();
     }
 
     public void recordMiss(String triggerId) {
-        missCount.incrementAndGet();
-        perTriggerMisses.computeIfAbsent(triggerId, id -> new AtomicLong()).incrementAndGet();
+        missCount.increment();
+        counters(triggerId).misses.increment();
+    }
+
+    public void recordHit(CacheScope scope, String triggerId) {
+        recordHit(triggerId);
+        scopeCounters(scope).hits.increment();
+    }
+
+    public void recordMiss(CacheScope scope, String triggerId) {
+        recordMiss(triggerId);
+        scopeCounters(scope).misses.increment();
     }
 
-    public long getHitCount()  { return hitCount.get(); }
-    public long getMissCount() { return missCount.get(); }
+    /** Adds the memo counters of one finished tick. */
+    public void recordMemo(long hits, long misses) {
+        if (hits != 0) memoHitCount.add(hits);
+        if (misses != 0) memoMissCount.add(misses);
+    }
+
+    public long getMemoHitCount()  { return memoHitCount.sum(); }
+    public long getMemoMissCount() { return memoMissCount.sum(); }
+
+    public long getHitCount()  { return hitCount.sum(); }
+    public long getMissCount() { return missCount.sum(); }
 
     public double getGlobalHitRate() {
-        long total = hitCount.get() + missCount.get();
-        return total == 0 ? 0.0 : (double) hitCount.get() / total;
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
     }
 
-    public Map<String, AtomicLong> getPerTriggerHits()  { return perTriggerHits; }
-    public Map<String, AtomicLong> getPerTriggerMisses() { return perTriggerMisses; }
+    public Map<String, Long> getPerTriggerHits()   { return CacheStatsSnapshot.hitsOf(perTrigger); }
+    public Map<String, Long> getPerTriggerMisses() { return CacheStatsSnapshot.missesOf(perTrigger); }
 
-    public void reset() {
-        hitCount.set(0);
-        missCount.set(0);
-        perTriggerHits.clear();
-        perTriggerMisses.clear();
-        com.group_finity.mascot.trigger.TriggerCondition.clearGlobalCache();
+    public Map<String, Long> getPerScopeHits()   { return CacheStatsSnapshot.hitsOf(scopesByName()); }
+    public Map<String, Long> getPerScopeMisses() { return CacheStatsSnapshot.missesOf(scopesByName()); }
 
+    /** Number of scope instances with counters (collected private scopes are dropped). */
+    public int trackedScopeCount() {
+        return perScope.size();
+    }
+
+    public double getScopeHitRate(String scopeName) {
+        Counters c = scopesByName().get(scopeName);
+        if (c == null) return 0.0;
+        long hits = c.hits();
+        long total = hits + c.misses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public LatencyHistogram getHitLatency()  { return hitLatency; }
+    public LatencyHistogram getMissLatency() { return missLatency; }
+
+    /** Consistent-enough copy of every counter; does not block recording threads. */
+    public CacheStatsSnapshot snapshot() {
+        return new CacheStatsSnapshot(
+            System.currentTimeMillis(),
+            hitCount.sum(), missCount.sum(),
+            memoHitCount.sum(), memoMissCount.sum(),
+            perTrigger, scopesByName(),
+            hitLatency.snapshot(), missLatency.snapshot());
+    }
+
+    /**
+     * Hands a snapshot to the sink every period on a daemon thread until the returned handle is closed.
+     * Exceptions thrown by the sink are swallowed so that one failed export does not stop the schedule.
+     */
+    public AutoCloseable startPeriodicSnapshots(Duration period, Consumer<CacheStatsSnapshot> sink) {
+        long millis = period.toMillis();
+        if (millis <= 0) throw new IllegalArgumentException("period must be positive: " + period);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CacheStats-Snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(() -> {
+            try { sink.accept(snapshot()); }
+            catch (Exception ignored) {}
+        }, millis, millis, TimeUnit.MILLISECONDS);
+        return timer::shutdownNow;
+    }
+
+    public void reset() {
+        hitCount.reset();
+        missCount.reset();
+        memoHitCount.reset();
+        memoMissCount.reset();
+        hitLatency.reset();
+        missLatency.reset();
+        perTrigger.values().forEach(Counters::reset);
+        synchronized (perScope) {
+            perScope.values().forEach(Counters::reset);
+        }
+        CacheScope.clearAll();
     }
 }
@@ -4,55 +4,151 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
 
+import com.group_finity.mascot.log.Diagnostics;
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.SlotVariables;
+import com.group_finity.mascot.trigger.expr.eval.VersionStamp;
 import com.group_finity.mascot.trigger.expr.type.Mode;
 
 /**
  * Holds evaluated result value and dependency snapshot.
+ * When the result was computed against a versioned variable table (SlotVariables), it keeps only
+ * a VersionStamp: freshness is decided by comparing write versions, and dependency values are read
+ * back from the stamp's table when something (another table's lookup, a snapshot) asks for them.
  */
 public final class EvaluationResult {
 
-	 // --- debug flag (default: false) ---
-    private static final AtomicBoolean DEBUG = new AtomicBoolean(false);
-	
-	    /** Enable or disable debug logging for cache freshness checks. */
+    // freshness checks run on every cache lookup; their output is DEBUG so it is off by default
+    private static final Diagnostics DIAG = Diagnostics.of("trigger.expr.cache");
+
+    /** Enable debug logging for cache freshness checks, or go back to the configured level (mascot.diag). */
     public static void setDebug(boolean enabled) {
-	        DEBUG.set(enabled);
-	    }
+        if (enabled) Diagnostics.setLevel(DIAG.getComponent(), Diagnostics.Level.DEBUG);
+        else Diagnostics.restoreLevel(DIAG.getComponent());
+    }
+
     private final Object value;
-    private final Map<String, Object> dependencies;
+    private final Map<String, Object> dependencies; // null when the stamp stands in for the values
+    private final VersionStamp versions;
     private final long timestamp;
     private final long evalDurationNanos;
     private final Mode mode;
+    private final boolean restored;
+
+    public EvaluationResult(
+            Object value,
+            Map<String, Object> dependencies,
+            long timestamp,
+            long evalDurationNanos,
+            Mode mode) {
+        this(value, dependencies, null, timestamp, evalDurationNanos, mode);
+    }
 
     public EvaluationResult(
             Object value,
             Map<String, Object> dependencies,
+            VersionStamp versions,
             long timestamp,
             long evalDurationNanos,
             Mode mode) {
+        this(value, dependencies, versions, timestamp, evalDurationNanos, mode, false);
+    }
+
+    private EvaluationResult(
+            Object value,
+            Map<String, Object> dependencies,
+            VersionStamp versions,
+            long timestamp,
+            long evalDurationNanos,
+            Mode mode,
+            boolean restored) {
         this.value = value;
-        this.dependencies = Collections.unmodifiableMap(new LinkedHashMap<>(dependencies));
+        this.dependencies = (dependencies != null) ? Collections.unmodifiableMap(new LinkedHashMap<>(dependencies)) : null;
+        this.versions = versions;
         this.timestamp = timestamp;
         this.evalDurationNanos = evalDurationNanos;
         this.mode = mode;
+        this.restored = restored;
+    }
+
+    /** A result computed against a SlotVariables table; the stamp replaces the dependency values. */
+    public EvaluationResult(Object value, VersionStamp versions, long timestamp, long evalDurationNanos, Mode mode) {
+        this(value, null, Objects.requireNonNull(versions, "versions"), timestamp, evalDurationNanos, mode, false);
+    }
+
+    /**
+     * A result read back from a WarmStartSnapshot. It has no stamp and nothing is known about writes
+     * made before the restart, so it is checked by its dependency values in every mode.
+     */
+    public static EvaluationResult restored(
+            Object value,
+            Map<String, Object> dependencies,
+            long timestamp,
+            long evalDurationNanos,
+            Mode mode) {
+        return new EvaluationResult(value, dependencies, null, timestamp, evalDurationNanos, mode, true);
     }
 
     public Object getValue() { return value; }
-    public Map<String, Object> getDependencies() { return dependencies; }
+    /**
+     * Dependency values at evaluation time. For a stamp-only result they are read back from the stamp's
+     * table, which is only possible while none of them has been written since; otherwise null.
+     */
+    public Map<String, Object> getDependencies() {
+        return (dependencies != null) ? dependencies : versions.values();
+    }
+
+    /** Names of the variables this result was computed from. */
+    public Set<String> getDependencyNames() {
+        return (dependencies != null) ? dependencies.keySet() : versions.names();
+    }
+
+    /** Versions of the dependencies at evaluation time, or null if the table was not versioned. */
+    public VersionStamp getVersionStamp() { return versions; }
     public long getTimestamp() { return timestamp; }
     public long getEvalDurationNanos() { return evalDurationNanos; }
     public Mode getMode() { return mode; }
+    /** Whether this result came from a warm-start snapshot rather than an evaluation in this process. */
+    public boolean isRestored() { return restored; }
+
+    /**
+     * Whether this result is still valid for the given context.
+     * STRICT: no variable was written since evaluation. LOOSE: none of the dependencies was written.
+     * Falls back to comparing dependency values when the stamp belongs to another variable table.
+     * Restored results are always checked by their dependency values.
+     */
+    public boolean isCurrent(EvaluationContext ctx) {
+        Map<String, Object> variables = ctx.getVariables();
+        boolean strict = ctx.getMode() == Mode.STRICT;
+        if (versions != null && versions.isFrom(variables)) {
+            return versions.isCurrent((SlotVariables) variables, strict);
+        }
+        Map<String, Object> deps = getDependencies();
+        if (deps == null) return false;
+        if (strict && !restored) return !isOutdated(deps, variables);
+        return dependenciesMatch(deps, variables);
+    }
+
+    private static boolean dependenciesMatch(Map<String, Object> deps, Map<String, Object> variables) {
+        for (Map.Entry<String, Object> e : deps.entrySet()) {
+            Object current = variables.get(e.getKey());
+            if (!Objects.equals(current, e.getValue())) {
+                DIAG.debug("dependency {} changed (stored={}, current={})", e.getKey(), e.getValue(), current);
+                return false;
+            }
+        }
+        return true;
+    }
 
     public boolean isOutdated(Map<String, Object> currentDeps) {
-        boolean outdated = !Objects.equals(this.dependencies, currentDeps);
-        System.out.printf("[Cache] isOutdated=%s (stored=%s, current=%s)%n",
-            outdated, this.dependencies, currentDeps);
-        if (DEBUG.get()) {
-        	            System.out.printf("[Cache] isOutdated=%s (stored=%s, current=%s)%n",
-        	                    outdated, this.dependencies, currentDeps);
-        	        }
+        return isOutdated(getDependencies(), currentDeps);
+    }
+
+    private static boolean isOutdated(Map<String, Object> stored, Map<String, Object> currentDeps) {
+        boolean outdated = stored == null || !Objects.equals(stored, currentDeps);
+        DIAG.debug("isOutdated={} (stored={}, current={})", outdated, stored, currentDeps);
         return outdated;
     }
 
@@ -62,7 +158,7 @@ public final class EvaluationResult {
             "[EvalResult value=%s mode=%s deps=%d time=%dμs]",
             value,
             mode,
-            dependencies.size(),
+            dependencies != null ? dependencies.size() : versions.size(),
             evalDurationNanos / 1000
         );
     }
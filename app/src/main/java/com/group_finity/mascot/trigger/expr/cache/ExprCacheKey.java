@@ -3,39 +3,53 @@ package com.group_finity.mascot.trigger.expr.cache;
 import java.util.Objects;
 
 import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.StructuralHash;
 import com.group_finity.mascot.trigger.expr.type.Mode;
 
 /**
- * AST と Mode に基づくキャッシュキー（D-5 安定版）
- * - ofAst(...) を提供（toCanonicalString() が無い環境でも動く）
- * - equals/hashCode は文字列表現＋Mode のみ（identityHashCode 不使用）
+ * AST と Mode に基づくキャッシュキー
+ * - ofAst(...) はノードの構造ハッシュ（生成時に計算済み）を使うので O(1)。文字列は作らない
+ * - equals はまず64bitハッシュと Mode を比べ、一致した場合だけノードの同一性→構造比較を行う
+ * - 文字列から作ったキー（new ExprCacheKey(String, Mode)）は正規形文字列で比較する。
+ *   AST から作ったキーとは別のキーとして扱う
  */
 public final class ExprCacheKey {
 
-    private final String canonicalAst;
+    private final ExpressionNode node;      // ofAst の場合のみ
+    private final String canonicalAst;      // 文字列から作った場合のみ
+    private final long hash;
     private final Mode mode;
 
     public ExprCacheKey(String canonicalAst, Mode mode) {
+        this.node = null;
         this.canonicalAst = canonicalAst;
+        this.hash = StructuralHash.of(canonicalAst);
         this.mode = mode;
     }
 
-    public String getCanonicalAst() { return canonicalAst; }
+    private ExprCacheKey(ExpressionNode node, Mode mode) {
+        this.node = node;
+        this.canonicalAst = null;
+        this.hash = node.structuralHash();
+        this.mode = mode;
+    }
+
+    /** 正規形の文字列（AST から作ったキーでは呼ばれた時に組み立てる） */
+    public String getCanonicalAst() { return node != null ? node.toCanonicalString() : canonicalAst; }
     public Mode getMode() { return mode; }
 
-    /** AST+Mode からキー生成。toCanonicalString() が無い場合は toString() を使う。 */
+    /** キーの AST。文字列から作ったキーでは null */
+    public ExpressionNode getNode() { return node; }
+
+    /** 64bit 構造ハッシュ */
+    public long getStructuralHash() { return hash; }
+
+    /** AST+Mode からキー生成 */
     public static ExprCacheKey ofAst(ExpressionNode node, Mode mode) {
         if (node == null || mode == null) {
             throw new IllegalArgumentException("node or mode is null");
         }
-        String rep;
-        try {
-            // toCanonicalString が無ければ例外に飛ぶ → toString() にフォールバック
-            rep = node.getClass().getMethod("toCanonicalString").invoke(node).toString();
-        } catch (Throwable ignore) {
-            rep = String.valueOf(node); // node.toString()
-        }
-        return new ExprCacheKey(rep, mode);
+        return new ExprCacheKey(node, mode);
     }
 
     @Override
@@ -43,16 +57,18 @@ public final class ExprCacheKey {
         if (this == o) return true;
         if (!(o instanceof ExprCacheKey)) return false;
         ExprCacheKey other = (ExprCacheKey) o;
-        return Objects.equals(canonicalAst, other.canonicalAst) && mode == other.mode;
+        if (hash != other.hash || mode != other.mode) return false;
+        if (node != null && other.node != null) return node == other.node || node.equals(other.node);
+        return node == null && other.node == null && Objects.equals(canonicalAst, other.canonicalAst);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(canonicalAst, mode);
+        return 31 * StructuralHash.fold(hash) + (mode != null ? mode.ordinal() : -1);
     }
 
     @Override
     public String toString() {
-        return "ExprCacheKey[" + canonicalAst + "," + mode + "]";
+        return "ExprCacheKey[" + getCanonicalAst() + "," + mode + "]";
     }
 }
@@ -1,38 +1,327 @@
 package com.group_finity.mascot.trigger.expr.cache;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import com.group_finity.mascot.trigger.expr.eval.VersionStamp;
 
 /**
- * LRU cache for expression evaluation results.
+ * Bounded concurrent cache for expression evaluation results.
+ *
+ * Reads are lock-free: a hit is a ConcurrentHashMap lookup plus setting the entry's reference bit.
+ * Eviction approximates LRU with the CLOCK (second-chance) algorithm: inserts of new keys run under
+ * a single lock that advances a hand over a fixed ring of entries, clearing reference bits until it
+ * finds an entry that has not been read since the last sweep. Updates of existing keys do not lock
+ * unless their set of dependencies changed.
+ *
+ * A reverse index maps each (variable table, variable name) pair to the keys whose result was computed
+ * from that table and depends on that variable. invalidate(source, name) marks exactly those entries
+ * dirty, so a write in one mascot's table leaves results computed from other tables alone; get() treats
+ * a dirty entry as absent until it is put again. Results without a VersionStamp (plain maps) are indexed
+ * under NO_SOURCE and only reached by invalidate(name), which covers every table.
+ *
+ * Besides the entry capacity, each cache has a byte budget: every entry is charged an estimate of its
+ * footprint (a fixed overhead plus a cost per dependency), and inserts evict until the total fits, so a
+ * scope whose expressions read many variables cannot grow without bound.
+ *
+ * What is kept is decided by a CachePolicy from per-key statistics (average evaluation cost, hits,
+ * recomputations). A key the policy rejects stays in the ring as a bypassed entry without a result:
+ * get() misses, its statistics keep accumulating, and it has no CLOCK credit so it is evicted before
+ * any cached result. Hits grant credits according to cost, so expensive results survive more sweeps.
+ * The statistics are updated without synchronization and are approximate under contention: concurrent
+ * hits may lose increments, and hit counts saturate at CachePolicy.decayAt(), after which reads of the
+ * entry write nothing but the CLOCK credit.
  */
 public final class ExprCacheManager {
 
-    private static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_CAPACITY = 1024;
 
-    private final Map<ExprCacheKey, EvaluationResult> cache =
-        Collections.synchronizedMap(new LinkedHashMap<>(DEFAULT_CAPACITY, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<ExprCacheKey, EvaluationResult> eldest) {
-                return size() > DEFAULT_CAPACITY;
-            }
-        });
+    /** Byte budget per unit of capacity when none is given (room for about seven dependencies per entry). */
+    public static final long DEFAULT_BYTES_PER_ENTRY = 512L;
+
+    // footprint estimate: entry, key, result and index overhead, plus map/index/stamp cost per dependency
+    static final int ENTRY_BYTES = 160;
+    static final int DEPENDENCY_BYTES = 48;
+
+    /** Source id of results that were not computed from a SlotVariables table (table ids start at 1). */
+    public static final long NO_SOURCE = 0L;
+
+    private final int capacity;
+    private final long maxBytes;
+    private final CachePolicy policy;
+    // hits stop being counted at this value (0 when the policy ignores them)
+    private final int hitCap;
+    private final ConcurrentHashMap<ExprCacheKey, Entry> map;
+    // variable table id -> variable name -> keys whose dependencies include it; mutated under the ring lock
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, Set<ExprCacheKey>>> dependents =
+        new ConcurrentHashMap<>();
+
+    // CLOCK ring; guarded by itself. Slots freed by evictions beyond the one being filled go on the free stack
+    private final Entry[] ring;
+    private final int[] free;
+    private int freeCount;
+    private int next;   // slots at or above this index have never been used
+    private int count;  // live entries
+    private long bytes;
+    private int hand;
+
+    public ExprCacheManager() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ExprCacheManager(int capacity) {
+        this(capacity, CachePolicy.ADMIT_ALL);
+    }
+
+    public ExprCacheManager(int capacity, CachePolicy policy) {
+        this(capacity, policy, capacity * DEFAULT_BYTES_PER_ENTRY);
+    }
+
+    public ExprCacheManager(int capacity, CachePolicy policy, long maxBytes) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        if (policy == null) throw new IllegalArgumentException("policy is null");
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        // hit counts only feed the volatility test, and the first update after decayAt() halves them anyway
+        this.hitCap = policy.getVolatilityWindow() > 0 ? policy.decayAt() : 0;
+        this.map = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16) * 4 / 3 + 1);
+        this.ring = new Entry[capacity];
+        this.free = new int[capacity];
+    }
 
     public Optional<EvaluationResult> get(ExprCacheKey key) {
-        return Optional.ofNullable(cache.get(key));
+        Entry e = map.get(key);
+        if (e == null || e.dirty) return Optional.empty();
+        EvaluationResult r = e.result;
+        if (r == null) return Optional.empty();
+        // saturating, so a hot entry stops writing once it is known to be read often
+        if (e.hits < hitCap) e.hits++;
+        // avoid dirtying the cache line when the credits are already full
+        if (e.credits < e.maxCredits) e.credits = e.maxCredits;
+        return Optional.of(r);
     }
 
     public void put(ExprCacheKey key, EvaluationResult result) {
-        cache.put(key, result);
+        Set<String> deps = result.getDependencyNames();
+        long source = sourceOf(result);
+        Entry e = map.get(key);
+        if (e != null && e.source == source && e.deps.equals(deps)) {
+            update(e, result);
+            return;
+        }
+        synchronized (ring) {
+            e = map.get(key);
+            if (e != null) {
+                unindex(key, e.source, e.deps);
+                index(key, source, deps);
+                e.source = source;
+                e.deps = deps;
+                int weight = weightOf(deps.size());
+                bytes += weight - e.weight;
+                e.weight = weight;
+                update(e, result);
+                while (bytes > maxBytes && count > 1) evictOne(e);
+                return;
+            }
+            Entry added = new Entry(key, source, deps, result.getEvalDurationNanos());
+            added.maxCredits = policy.credits(added.avgCostNanos);
+            if (policy.admit(added.avgCostNanos, 0, 0)) added.result = result;
+            while (count > 0 && (count == capacity || bytes + added.weight > maxBytes)) evictOne(null);
+            int slot = (freeCount > 0) ? free[--freeCount] : next++;
+            ring[slot] = added;
+            count++;
+            bytes += added.weight;
+            map.put(key, added);
+            index(key, source, deps);
+        }
+    }
+
+    static int weightOf(int dependencies) {
+        return ENTRY_BYTES + dependencies * DEPENDENCY_BYTES;
+    }
+
+    private static long sourceOf(EvaluationResult result) {
+        VersionStamp stamp = result.getVersionStamp();
+        return stamp != null ? stamp.getSourceId() : NO_SOURCE;
+    }
+
+    /** Records a recomputation of an existing key and lets the policy decide whether to keep the result. */
+    private void update(Entry e, EvaluationResult result) {
+        // a bypassed key recomputed without invalidation would have been a hit had it been cached
+        if (e.result == null && !e.dirty) e.hits++;
+        else e.changes++;
+        if (e.hits + e.changes >= policy.decayAt()) {
+            e.hits >>>= 1;
+            e.changes >>>= 1;
+        }
+        long cost = e.avgCostNanos;
+        cost += (result.getEvalDurationNanos() - cost) >> 2;
+        e.avgCostNanos = cost;
+        e.maxCredits = policy.credits(cost);
+        boolean admitted = policy.admit(cost, e.hits, e.changes);
+        e.result = admitted ? result : null;
+        e.credits = admitted ? e.maxCredits : 0;
+        e.dirty = false;
+    }
+
+    /**
+     * Marks every entry computed from the given variable table that depends on the variable dirty.
+     *
+     * @param source id of the variable table that was written (SlotVariables.id())
+     * @return number of cached results marked (bypassed keys are marked but not counted)
+     */
+    public int invalidate(long source, String variable) {
+        Map<String, Set<ExprCacheKey>> bySource = dependents.get(source);
+        return bySource == null ? 0 : mark(bySource.get(variable));
+    }
+
+    /**
+     * Marks every entry that depends on the variable dirty, whichever table it was computed from.
+     *
+     * @return number of cached results marked (bypassed keys are marked but not counted)
+     */
+    public int invalidate(String variable) {
+        int marked = 0;
+        for (Map<String, Set<ExprCacheKey>> bySource : dependents.values()) marked += mark(bySource.get(variable));
+        return marked;
+    }
+
+    private int mark(Set<ExprCacheKey> keys) {
+        if (keys == null) return 0;
+        int marked = 0;
+        for (ExprCacheKey key : keys) {
+            Entry e = map.get(key);
+            if (e != null && !e.dirty) {
+                e.dirty = true;
+                if (e.result != null) marked++;
+            }
+        }
+        return marked;
+    }
+
+    /** Number of cached keys that depend on the variable, over all variable tables. */
+    public int dependentCount(String variable) {
+        int n = 0;
+        for (Map<String, Set<ExprCacheKey>> bySource : dependents.values()) {
+            Set<ExprCacheKey> keys = bySource.get(variable);
+            if (keys != null) n += keys.size();
+        }
+        return n;
+    }
+
+    private void index(ExprCacheKey key, long source, Set<String> deps) {
+        if (deps.isEmpty()) return;
+        Map<String, Set<ExprCacheKey>> bySource = dependents.computeIfAbsent(source, s -> new ConcurrentHashMap<>());
+        for (String name : deps) {
+            bySource.computeIfAbsent(name, n -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    /** Removes the key from the index, dropping sets and tables that become empty (so dead tables do not pile up). */
+    private void unindex(ExprCacheKey key, long source, Set<String> deps) {
+        Map<String, Set<ExprCacheKey>> bySource = dependents.get(source);
+        if (bySource == null) return;
+        for (String name : deps) {
+            Set<ExprCacheKey> keys = bySource.get(name);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) bySource.remove(name);
+        }
+        if (bySource.isEmpty()) dependents.remove(source);
+    }
+
+    /** Sweeps the hand until an entry without credits is found (never keep), removes it and frees its slot. */
+    private void evictOne(Entry keep) {
+        while (true) {
+            Entry victim = ring[hand];
+            int slot = hand;
+            hand = (hand + 1 == capacity) ? 0 : hand + 1;
+            if (victim == null || victim == keep) continue;
+            // dirty entries are useless until recomputed, so they go first; bypassed ones never earn credits
+            if (victim.credits > 0 && !victim.dirty) {
+                victim.credits--;
+                continue;
+            }
+            map.remove(victim.key, victim);
+            unindex(victim.key, victim.source, victim.deps);
+            ring[slot] = null;
+            free[freeCount++] = slot;
+            count--;
+            bytes -= victim.weight;
+            return;
+        }
     }
 
     public void clear() {
-        cache.clear();
+        synchronized (ring) {
+            map.clear();
+            dependents.clear();
+            Arrays.fill(ring, null);
+            freeCount = 0;
+            next = 0;
+            count = 0;
+            bytes = 0;
+            hand = 0;
+        }
     }
 
+    /** Visits every cached result that is neither dirty nor bypassed. */
+    public void forEach(BiConsumer<ExprCacheKey, EvaluationResult> action) {
+        for (Entry e : map.values()) {
+            EvaluationResult r = e.result;
+            if (r != null && !e.dirty) action.accept(e.key, r);
+        }
+    }
+
+    /** Number of tracked keys, including bypassed ones. */
     public int size() {
-        return cache.size();
+        return map.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Byte budget of this cache. */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /** Estimated footprint of the tracked keys (see the class comment). */
+    public long bytes() {
+        synchronized (ring) {
+            return bytes;
+        }
+    }
+
+    public CachePolicy policy() {
+        return policy;
+    }
+
+    private static final class Entry {
+        final ExprCacheKey key;
+        volatile long source;
+        volatile Set<String> deps;
+        int weight;         // estimated bytes; guarded by the ring lock
+        volatile EvaluationResult result;   // null while the policy bypasses this key
+        volatile int credits;
+        volatile int maxCredits;
+        volatile boolean dirty;
+        // admission statistics (racy, approximate; hits saturate at hitCap)
+        long avgCostNanos;
+        int hits;
+        int changes;
+
+        Entry(ExprCacheKey key, long source, Set<String> deps, long costNanos) {
+            this.key = key;
+            this.source = source;
+            this.deps = deps;
+            this.weight = weightOf(deps.size());
+            this.avgCostNanos = costNanos;
+        }
     }
 }
@@ -0,0 +1,227 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.group_finity.mascot.log.Diagnostics;
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.SlotVariables;
+import com.group_finity.mascot.trigger.expr.eval.VersionStamp;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * Remembers expressions that failed to parse or to evaluate, so that a broken trigger is not retried
+ * (and reported) on every tick.
+ *
+ * - Parse failures depend only on the source text; they stay until clear() (callers clear when the
+ *   parser configuration, e.g. the variable schema, changes).
+ * - Evaluation failures record the variables read before the failure, as a VersionStamp when the table
+ *   is a SlotVariables and as values otherwise, plus the Mode. They are current until one of those
+ *   variables is written or the mode differs; evaluation is deterministic, so the same inputs fail again.
+ * - Reports go to the "trigger.expr.failure" diagnostics channel: the first failure of an expression at
+ *   WARN, repeats at most once per report interval with the number of failures and suppressed
+ *   evaluations since the previous report.
+ */
+public final class FailureCache {
+
+    public enum Phase { PARSE, EVALUATION }
+
+    /** Default minimum time between two reports of the same expression. */
+    public static final Duration DEFAULT_REPORT_INTERVAL = Duration.ofMinutes(1);
+
+    private static final Diagnostics DIAG = Diagnostics.of("trigger.expr.failure");
+
+    /** One remembered failure. Counters are updated in place while the entry is kept. */
+    public static final class Failure {
+        private final Phase phase;
+        private final String source;
+        private volatile String errorType;
+        private volatile String message;
+        private volatile Map<String, Object> dependencies;
+        private volatile VersionStamp versions;
+        private volatile Mode mode;
+        private final long firstSeenNanos;
+        private volatile long lastSeenNanos;
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong suppressed = new AtomicLong();
+        // report rate limiting
+        private long lastReportNanos;
+        private long failuresAtLastReport;
+        private long suppressedAtLastReport;
+
+        private Failure(Phase phase, String source, long now) {
+            this.phase = phase;
+            this.source = source;
+            this.firstSeenNanos = now;
+        }
+
+        private void update(Throwable error, Map<String, Object> dependencies, VersionStamp versions, Mode mode,
+                            long now) {
+            this.errorType = error.getClass().getSimpleName();
+            this.message = error.getMessage();
+            this.dependencies = dependencies;
+            this.versions = versions;
+            this.mode = mode;
+            this.lastSeenNanos = now;
+            failures.incrementAndGet();
+        }
+
+        /** Whether the same inputs are still in place, i.e. retrying would fail the same way. */
+        boolean isCurrent(EvaluationContext ctx) {
+            if (phase == Phase.PARSE) return true;
+            Map<String, Object> deps = dependencies;
+            if (ctx == null) return deps.isEmpty();
+            if (ctx.getMode() != mode) return false;
+            Map<String, Object> variables = ctx.getVariables();
+            VersionStamp stamp = versions;
+            if (stamp != null && stamp.isFrom(variables)) {
+                return stamp.isCurrent((SlotVariables) variables, false);
+            }
+            for (Map.Entry<String, Object> e : deps.entrySet()) {
+                if (!Objects.equals(variables.get(e.getKey()), e.getValue())) return false;
+            }
+            return true;
+        }
+
+        public Phase getPhase() { return phase; }
+        public String getSource() { return source; }
+        public String getErrorType() { return errorType; }
+        public String getMessage() { return message; }
+        /** Variables read before the evaluation failed (empty for parse failures). */
+        public Map<String, Object> getDependencies() { return dependencies; }
+        public long getFirstSeenNanos() { return firstSeenNanos; }
+        public long getLastSeenNanos() { return lastSeenNanos; }
+        /** Times the expression actually failed. */
+        public long getFailureCount() { return failures.get(); }
+        /** Times a retry was skipped because the inputs had not changed. */
+        public long getSuppressedCount() { return suppressed.get(); }
+
+        @Override
+        public String toString() {
+            return String.format("[Failure %s \"%s\" %s: %s failures=%d suppressed=%d]",
+                phase, source, errorType, message, failures.get(), suppressed.get());
+        }
+    }
+
+    private final Map<String, Failure> parseFailures = new ConcurrentHashMap<>();
+    private final Map<String, Failure> evaluationFailures = new ConcurrentHashMap<>();
+    private volatile long reportIntervalNanos = DEFAULT_REPORT_INTERVAL.toNanos();
+
+    // ===== lookup =====
+
+    /** The parse failure of this source, or null if it has not failed to parse. */
+    public Failure parseFailure(String source) {
+        if (parseFailures.isEmpty()) return null;
+        Failure f = parseFailures.get(source);
+        if (f != null) f.suppressed.incrementAndGet();
+        return f;
+    }
+
+    /**
+     * The evaluation failure of this source if its inputs are unchanged in the given context, or null if
+     * the expression should be evaluated (no failure, or some input has changed since).
+     */
+    public Failure evaluationFailure(String source, EvaluationContext ctx) {
+        if (evaluationFailures.isEmpty()) return null;
+        Failure f = evaluationFailures.get(source);
+        if (f == null || !f.isCurrent(ctx)) return null;
+        f.suppressed.incrementAndGet();
+        return f;
+    }
+
+    // ===== recording =====
+
+    public Failure recordParseFailure(String source, Throwable error) {
+        return record(parseFailures, Phase.PARSE, source, error, Map.of(), null, null);
+    }
+
+    /**
+     * Records an evaluation failure with the variables the context read so far. Pass the per-evaluation
+     * context ({@link EvaluationContext#newEvaluation()}) the expression ran in, so that variables read
+     * by other expressions through the same parent are not recorded as its inputs.
+     */
+    public Failure recordEvaluationFailure(String source, Throwable error, EvaluationContext ctx) {
+        Map<String, Object> deps = ctx != null ? ctx.snapshotDependencies() : Map.of();
+        VersionStamp stamp = ctx != null ? ctx.stampDependencies() : null;
+        Mode mode = ctx != null ? ctx.getMode() : null;
+        return record(evaluationFailures, Phase.EVALUATION, source, error,
+            Collections.unmodifiableMap(new LinkedHashMap<>(deps)), stamp, mode);
+    }
+
+    private Failure record(Map<String, Failure> table, Phase phase, String source, Throwable error,
+                           Map<String, Object> deps, VersionStamp stamp, Mode mode) {
+        long now = System.nanoTime();
+        Failure f = table.computeIfAbsent(source, s -> new Failure(phase, s, now));
+        f.update(error, deps, stamp, mode, now);
+        report(f, error, now);
+        return f;
+    }
+
+    private void report(Failure f, Throwable error, long now) {
+        long failures;
+        long suppressed;
+        boolean first;
+        synchronized (f) {
+            long total = f.failures.get();
+            if (total > 1 && now - f.lastReportNanos < reportIntervalNanos) return;
+            first = f.failuresAtLastReport == 0;
+            failures = total - f.failuresAtLastReport;
+            suppressed = f.suppressed.get() - f.suppressedAtLastReport;
+            f.failuresAtLastReport = total;
+            f.suppressedAtLastReport += suppressed;
+            f.lastReportNanos = now;
+        }
+        if (first) {
+            DIAG.warn("{} failed for \"{}\": {}", f.phase, f.source, error);
+        } else {
+            DIAG.warn("{} still failing for \"{}\": {} ({} failures, {} skipped retries since last report)",
+                f.phase, f.source, error, failures, suppressed);
+        }
+    }
+
+    // ===== maintenance =====
+
+    /** Forgets every failure, so that all expressions are retried. */
+    public void clear() {
+        parseFailures.clear();
+        evaluationFailures.clear();
+    }
+
+    /** Forgets the failures of one source. */
+    public void forget(String source) {
+        parseFailures.remove(source);
+        evaluationFailures.remove(source);
+    }
+
+    public int size() {
+        return parseFailures.size() + evaluationFailures.size();
+    }
+
+    public boolean isEmpty() {
+        return parseFailures.isEmpty() && evaluationFailures.isEmpty();
+    }
+
+    /** The remembered failures, parse failures first. */
+    public List<Failure> failures() {
+        List<Failure> all = new ArrayList<>(parseFailures.values());
+        all.addAll(evaluationFailures.values());
+        return all;
+    }
+
+    /** Minimum time between two reports of the same expression (the first failure is always reported). */
+    public void setReportInterval(Duration interval) {
+        if (interval == null || interval.isNegative()) throw new IllegalArgumentException("interval: " + interval);
+        this.reportIntervalNanos = interval.toNanos();
+    }
+
+    public Duration getReportInterval() {
+        return Duration.ofNanos(reportIntervalNanos);
+    }
+}
@@ -0,0 +1,116 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent latency histogram with log-linear buckets (the HdrHistogram layout at low precision).
+ *
+ * Values below 8ns get one bucket each; above that every power of two is split into 8 linear
+ * sub-buckets, so any recorded value is reported within 12.5% of its true value. Buckets are
+ * LongAdders, so recording from many threads does not contend on a shared cache line.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[indexOf(nanos)].increment();
+        total.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /** Largest value that falls into the bucket. */
+    static long highestValueOf(int index) {
+        if (index < SUB_COUNT) return index;
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        long lowest = (long) (SUB_COUNT + index % SUB_COUNT) << (exp - SUB_BITS);
+        return lowest + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    /** Copies the current counts. Recording may continue meanwhile; the copy is not atomic across buckets. */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts[i].sum();
+            n += copy[i];
+        }
+        return new Snapshot(copy, n, sum.sum(), max.get());
+    }
+
+    public void reset() {
+        for (LongAdder c : counts) c.reset();
+        total.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    /** Immutable view of the histogram at one point in time. */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public long getMax() { return max; }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * Value at the given percentile (0-100), reported as the upper bound of its bucket.
+         * Returns 0 when nothing was recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) return 0L;
+            double p = Math.min(Math.max(percentile, 0.0), 100.0);
+            long rank = Math.max(1L, (long) Math.ceil(p / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(highestValueOf(i), max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[count=%d mean=%.0fns p50=%dns p99=%dns max=%dns]",
+                count, getMean(), getValueAtPercentile(50), getValueAtPercentile(99), max);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.NodeCodec;
+import com.group_finity.mascot.trigger.expr.node.NodeInterner;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * Binary snapshot of parsed expressions and cached results, written on shutdown and mapped back in at
+ * startup so that a restart does not re-parse and re-evaluate everything cold.
+ *
+ * Layout (big-endian): magic, format version, fingerprint, then an expression section and a result
+ * section. Every expression and every result is a length-prefixed record, so a record that cannot be
+ * decoded (unknown type, renamed class) is skipped without losing the rest of the file.
+ *
+ * The fingerprint identifies everything the ASTs were built from (the variable schema); a file with a
+ * different fingerprint, magic or version is ignored as a whole. Restored results carry no VersionStamp,
+ * so EvaluationResult.isCurrent compares their recorded dependency values with the current variables
+ * (in STRICT mode too) and they are only reused while those still match. Private scopes are not
+ * persisted; results whose value or dependencies are not plain literals, or whose dependencies were
+ * written after they were computed (so their values can no longer be read back), are left out.
+ */
+public final class WarmStartSnapshot {
+
+    public static final int MAGIC = 0x42535753; // "BSWS"
+    public static final int FORMAT_VERSION = 1;
+
+    private static final WarmStartSnapshot EMPTY = new WarmStartSnapshot(List.of(), Map.of(), 0);
+
+    /** A parsed expression, by source text, and whether it had been compiled. */
+    public static final class Expression {
+        private final String source;
+        private final ExpressionNode node;
+        private final boolean compiled;
+
+        public Expression(String source, ExpressionNode node, boolean compiled) {
+            this.source = source;
+            this.node = node;
+            this.compiled = compiled;
+        }
+
+        public String getSource() { return source; }
+        public ExpressionNode getNode() { return node; }
+        public boolean isCompiled() { return compiled; }
+    }
+
+    private final List<Expression> expressions;
+    // scope name -> restored results
+    private final Map<String, Map<ExprCacheKey, EvaluationResult>> results;
+    private final int skipped;
+
+    private WarmStartSnapshot(List<Expression> expressions, Map<String, Map<ExprCacheKey, EvaluationResult>> results,
+                              int skipped) {
+        this.expressions = expressions;
+        this.results = results;
+        this.skipped = skipped;
+    }
+
+    // ===== writing =====
+
+    /**
+     * Writes the expressions and the cached results of the given scopes. The file is written next to the
+     * target and moved into place, so a crash never leaves a half-written snapshot behind.
+     *
+     * @return number of records written
+     */
+    public static int write(Path file, long fingerprint, Collection<Expression> expressions,
+                            Collection<CacheScope> scopes) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        int written = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(fingerprint);
+
+            List<byte[]> records = new ArrayList<>();
+            for (Expression e : expressions) {
+                byte[] record = encodeExpression(e);
+                if (record != null) records.add(record);
+            }
+            written += writeRecords(records, out);
+
+            List<CacheScope> persistent = new ArrayList<>();
+            for (CacheScope scope : scopes) {
+                if (scope.kind() != CacheScope.Kind.PRIVATE) persistent.add(scope);
+            }
+            out.writeInt(persistent.size());
+            for (CacheScope scope : persistent) {
+                List<byte[]> entries = new ArrayList<>();
+                scope.cache().forEach((key, result) -> {
+                    byte[] record = encodeResult(key, result);
+                    if (record != null) entries.add(record);
+                });
+                NodeCodec.writeString(scope.name(), out);
+                written += writeRecords(entries, out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return written;
+    }
+
+    private static int writeRecords(List<byte[]> records, DataOutputStream out) throws IOException {
+        out.writeInt(records.size());
+        for (byte[] record : records) {
+            out.writeInt(record.length);
+            out.write(record);
+        }
+        return records.size();
+    }
+
+    private static byte[] encodeExpression(Expression e) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            NodeCodec.writeString(e.getSource(), out);
+            out.writeBoolean(e.isCompiled());
+            out.writeLong(e.getNode().structuralHash());
+            NodeCodec.write(e.getNode(), out);
+            return bytes.toByteArray();
+        } catch (IOException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static byte[] encodeResult(ExprCacheKey key, EvaluationResult result) {
+        ExpressionNode node = key.getNode();
+        Map<String, Object> deps = result.getDependencies();
+        if (node == null || deps == null || !NodeCodec.isEncodable(result.getValue())) return null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(node.structuralHash());
+            NodeCodec.write(node, out);
+            NodeCodec.writeString(key.getMode().name(), out);
+            NodeCodec.writeValue(result.getValue(), out);
+            out.writeLong(result.getEvalDurationNanos());
+            out.writeInt(deps.size());
+            for (Map.Entry<String, Object> dep : deps.entrySet()) {
+                NodeCodec.writeString(dep.getKey(), out);
+                NodeCodec.writeValue(dep.getValue(), out);
+            }
+            return bytes.toByteArray();
+        } catch (IOException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    // ===== reading =====
+
+    /**
+     * Maps the file and decodes it. A missing file, or one written for another fingerprint or format,
+     * yields an empty snapshot.
+     */
+    public static WarmStartSnapshot read(Path file, long fingerprint) throws IOException {
+        if (!Files.isRegularFile(file)) return EMPTY;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buf, fingerprint);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // truncated header or section table: nothing can be trusted
+            return EMPTY;
+        }
+    }
+
+    private static WarmStartSnapshot decode(ByteBuffer buf, long fingerprint) {
+        if (buf.remaining() < 16 || buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION
+            || buf.getLong() != fingerprint) {
+            return EMPTY;
+        }
+        int skipped = 0;
+        List<Expression> expressions = new ArrayList<>();
+        int count = buf.getInt();
+        for (int i = 0; i < count; i++) {
+            Expression e = decodeExpression(nextRecord(buf));
+            if (e != null) expressions.add(e);
+            else skipped++;
+        }
+        Map<String, Map<ExprCacheKey, EvaluationResult>> results = new LinkedHashMap<>();
+        int scopes = buf.getInt();
+        for (int s = 0; s < scopes; s++) {
+            String scope = NodeCodec.readString(buf);
+            Map<ExprCacheKey, EvaluationResult> entries = results.computeIfAbsent(scope, n -> new LinkedHashMap<>());
+            int entryCount = buf.getInt();
+            for (int i = 0; i < entryCount; i++) {
+                if (!decodeResult(nextRecord(buf), entries)) skipped++;
+            }
+        }
+        return new WarmStartSnapshot(Collections.unmodifiableList(expressions), results, skipped);
+    }
+
+    private static ByteBuffer nextRecord(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0 || length > buf.remaining()) throw new IllegalArgumentException("Bad record length: " + length);
+        ByteBuffer record = buf.slice(buf.position(), length);
+        buf.position(buf.position() + length);
+        return record;
+    }
+
+    private static Expression decodeExpression(ByteBuffer in) {
+        try {
+            String source = NodeCodec.readString(in);
+            boolean compiled = in.get() != 0;
+            ExpressionNode node = decodeNode(in);
+            return node != null ? new Expression(source, node, compiled) : null;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean decodeResult(ByteBuffer in, Map<ExprCacheKey, EvaluationResult> out) {
+        try {
+            ExpressionNode node = decodeNode(in);
+            if (node == null) return false;
+            Mode mode = Mode.valueOf(NodeCodec.readString(in));
+            Object value = NodeCodec.readValue(in);
+            long duration = in.getLong();
+            int depCount = in.getInt();
+            Map<String, Object> deps = new LinkedHashMap<>();
+            for (int i = 0; i < depCount; i++) deps.put(NodeCodec.readString(in), NodeCodec.readValue(in));
+            out.put(ExprCacheKey.ofAst(node, mode), EvaluationResult.restored(value, deps, System.nanoTime(), duration, mode));
+            return true;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** Decodes a node preceded by its structural hash; a hash mismatch means the node classes changed. */
+    private static ExpressionNode decodeNode(ByteBuffer in) {
+        long hash = in.getLong();
+        ExpressionNode node = NodeCodec.read(in);
+        return node.structuralHash() == hash ? NodeInterner.intern(node) : null;
+    }
+
+    // ===== restoring =====
+
+    public List<Expression> getExpressions() {
+        return expressions;
+    }
+
+    public int resultCount() {
+        int n = 0;
+        for (Map<ExprCacheKey, EvaluationResult> entries : results.values()) n += entries.size();
+        return n;
+    }
+
+    /** Records that could not be decoded and were dropped. */
+    public int skippedCount() {
+        return skipped;
+    }
+
+    /**
+     * Puts the restored results into the global scope and the group scopes of the same names.
+     *
+     * @return number of results put
+     */
+    public int restoreResults() {
+        int restored = 0;
+        for (Map.Entry<String, Map<ExprCacheKey, EvaluationResult>> scope : results.entrySet()) {
+            CacheScope target = CacheScope.byName(scope.getKey());
+            if (target == null) continue;
+            ExprCacheManager cache = target.cache();
+            for (Map.Entry<ExprCacheKey, EvaluationResult> e : scope.getValue().entrySet()) {
+                cache.put(e.getKey(), e.getValue());
+                restored++;
+            }
+        }
+        return restored;
+    }
+}
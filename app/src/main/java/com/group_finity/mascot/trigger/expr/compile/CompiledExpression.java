@@ -0,0 +1,17 @@
+package com.group_finity.mascot.trigger.expr.compile;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+
+/**
+ * CompiledExpression
+ * ExpressionCompiler が生成する hidden class の共通インタフェース。
+ * AST インタプリタ（ExpressionNode.evaluate）と同じ意味論で評価する。
+ */
+public interface CompiledExpression {
+
+    /** 式の値を評価する（ExpressionNode.evaluate と同じ結果を返す） */
+    Object evaluate(EvaluationContext context);
+
+    /** 条件として評価する（TypeResolver.toBoolean(evaluate(context)) と同じ結果を返す） */
+    boolean test(EvaluationContext context);
+}
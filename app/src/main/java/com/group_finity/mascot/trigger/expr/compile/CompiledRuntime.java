@@ -0,0 +1,38 @@
+package com.group_finity.mascot.trigger.expr.compile;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.SymbolTable;
+import com.group_finity.mascot.trigger.expr.type.CoercionException;
+import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+
+/**
+ * 生成コードから invokestatic で呼ばれる補助メソッド群。
+ * hidden class は同一パッケージに定義されるため package-private で足りる。
+ */
+final class CompiledRuntime {
+
+    private CompiledRuntime() {}
+
+    /** VariableNode.evaluate と同じく null コンテキストでは null を返す */
+    static Object variable(EvaluationContext context, int slot) {
+        return context != null ? context.getVariable(slot) : null;
+    }
+
+    /** 数値と宣言された変数を double のまま読む（VariableNode.evalDouble と同じく数値でなければ CoercionException） */
+    static double doubleVariable(EvaluationContext context, int slot) {
+        if (context == null) {
+            throw new CoercionException("Variable '" + SymbolTable.nameOf(slot) + "' is not a number: null");
+        }
+        return context.getDouble(slot);
+    }
+
+    /** Operators.cmp と同じく Number 以外は 0 として扱う */
+    static double orderingOperand(Object value) {
+        return (value instanceof Number n) ? n.doubleValue() : 0;
+    }
+
+    /** トップレベルの真偽判定（TriggerCondition と同じ規則） */
+    static boolean truthy(Object value) {
+        return TypeResolver.toBoolean(value);
+    }
+}
@@ -0,0 +1,413 @@
+package com.group_finity.mascot.trigger.expr.compile;
+
+import static java.lang.constant.ConstantDescs.CD_Boolean;
+import static java.lang.constant.ConstantDescs.CD_Object;
+import static java.lang.constant.ConstantDescs.CD_Double;
+import static java.lang.constant.ConstantDescs.CD_boolean;
+import static java.lang.constant.ConstantDescs.CD_double;
+import static java.lang.constant.ConstantDescs.CD_int;
+import static java.lang.constant.ConstantDescs.INIT_NAME;
+import static java.lang.constant.ConstantDescs.MTD_void;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.ClassHierarchyResolver;
+import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.Label;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDescs;
+import java.lang.constant.DynamicConstantDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.node.ArithmeticNode;
+import com.group_finity.mascot.trigger.expr.node.ComparisonNode;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.LiteralNode;
+import com.group_finity.mascot.trigger.expr.node.LogicalNode;
+import com.group_finity.mascot.trigger.expr.node.Operators;
+import com.group_finity.mascot.trigger.expr.node.StrictEqualityNode;
+import com.group_finity.mascot.trigger.expr.node.UnaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.VariableNode;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+
+/**
+ * ExpressionCompiler
+ * ExpressionNode の木を ClassFile API でバイトコード化し、CompiledExpression を実装する hidden class を生成する。
+ *
+ * - 演算子の実装は Operators を invokestatic で呼ぶため、意味論はインタプリタと一致する
+ * - 比較・等価・論理演算は test() 側では boolean のまま扱い、Boolean の箱化を行わない
+ * - 静的に数値・真偽値のノードはインタプリタ（evalDouble / evalBoolean）と同じ型付き経路で評価する
+ *   （数値と宣言された変数は EvaluationContext.getDouble で基本型の列から読み、未設定・型違いは CoercionException）
+ * - リテラルは class data（classDataAt）として渡し、ldc で参照する
+ * - 未知のノードは class data として埋め込み、ExpressionNode.evaluate を呼ぶコードにフォールバックする
+ * - hidden class は弱参照で定義されるため、参照が無くなればアンロードされる
+ */
+public final class ExpressionCompiler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final ClassDesc CD_COMPILED_EXPRESSION = desc(CompiledExpression.class);
+    private static final ClassDesc CD_COMPILED_RUNTIME = desc(CompiledRuntime.class);
+    private static final ClassDesc CD_EVALUATION_CONTEXT = desc(EvaluationContext.class);
+    private static final ClassDesc CD_EXPRESSION_NODE = desc(ExpressionNode.class);
+    private static final ClassDesc CD_OPERATORS = desc(Operators.class);
+    private static final ClassDesc CD_ARITHMETIC_OPERATOR = desc(ArithmeticNode.Operator.class);
+
+    private static final MethodTypeDesc MTD_EVALUATE = MethodTypeDesc.of(CD_Object, CD_EVALUATION_CONTEXT);
+    private static final MethodTypeDesc MTD_TEST = MethodTypeDesc.of(CD_boolean, CD_EVALUATION_CONTEXT);
+    private static final MethodTypeDesc MTD_VARIABLE = MethodTypeDesc.of(CD_Object, CD_EVALUATION_CONTEXT, CD_int);
+    private static final MethodTypeDesc MTD_BINARY = MethodTypeDesc.of(CD_Object, CD_Object, CD_Object);
+    private static final MethodTypeDesc MTD_UNARY = MethodTypeDesc.of(CD_Object, CD_Object);
+    private static final MethodTypeDesc MTD_PREDICATE = MethodTypeDesc.of(CD_boolean, CD_Object);
+    private static final MethodTypeDesc MTD_BI_PREDICATE = MethodTypeDesc.of(CD_boolean, CD_Object, CD_Object);
+    private static final MethodTypeDesc MTD_DOUBLE_VARIABLE = MethodTypeDesc.of(CD_double, CD_EVALUATION_CONTEXT, CD_int);
+    private static final MethodTypeDesc MTD_TO_DOUBLE = MethodTypeDesc.of(CD_double, CD_Object);
+    private static final MethodTypeDesc MTD_COMPARE_DOUBLE = MethodTypeDesc.of(CD_int, CD_double, CD_double);
+    private static final MethodTypeDesc MTD_EVAL_DOUBLE = MethodTypeDesc.of(CD_double, CD_EVALUATION_CONTEXT);
+    private static final MethodTypeDesc MTD_APPLY_DOUBLE = MethodTypeDesc.of(CD_double, CD_double, CD_double);
+    private static final MethodTypeDesc MTD_BOX_NUMBER = MethodTypeDesc.of(CD_Object, CD_double);
+    private static final MethodTypeDesc MTD_STRICT_EQUALS_DOUBLE = MethodTypeDesc.of(CD_boolean, CD_double, CD_double);
+    private static final MethodTypeDesc MTD_BOX_BOOLEAN = MethodTypeDesc.of(CD_Boolean, CD_boolean);
+
+    private static final int SLOT_CONTEXT = 1;
+
+    private ExpressionCompiler() {}
+
+    /**
+     * AST をコンパイルする。
+     *
+     * @param root コンパイル対象の式
+     * @return 生成クラスのインスタンス
+     * @throws IllegalStateException クラス生成・定義に失敗した場合
+     */
+    public static CompiledExpression compile(ExpressionNode root) {
+        if (root == null) throw new IllegalArgumentException("root is null");
+        Emitter emitter = new Emitter();
+        ClassDesc thisClass = ClassDesc.of(ExpressionCompiler.class.getPackageName(), "CompiledExpression$Generated");
+
+        byte[] bytes = ClassFile.of(ClassFile.ClassHierarchyResolverOption.of(
+                ClassHierarchyResolver.defaultResolver()
+                    .orElse(ClassHierarchyResolver.ofClassLoading(ExpressionCompiler.class.getClassLoader()))))
+            .build(thisClass, clb -> {
+                clb.withFlags(ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL | ClassFile.ACC_SUPER);
+                clb.withSuperclass(CD_Object);
+                clb.withInterfaceSymbols(CD_COMPILED_EXPRESSION);
+                clb.withMethodBody(INIT_NAME, MTD_void, ClassFile.ACC_PUBLIC, cb -> {
+                    cb.aload(0);
+                    cb.invokespecial(CD_Object, INIT_NAME, MTD_void);
+                    cb.return_();
+                });
+                clb.withMethodBody("evaluate", MTD_EVALUATE, ClassFile.ACC_PUBLIC, cb -> {
+                    emitter.emitValue(cb, root);
+                    cb.areturn();
+                });
+                clb.withMethodBody("test", MTD_TEST, ClassFile.ACC_PUBLIC, cb -> {
+                    emitter.emitCondition(cb, root);
+                    cb.ireturn();
+                });
+            });
+
+        try {
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClassWithClassData(bytes, List.copyOf(emitter.constants), true);
+            return (CompiledExpression) hidden
+                .findConstructor(hidden.lookupClass(), MethodType.methodType(void.class))
+                .invoke();
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to define compiled expression for " + root, t);
+        }
+    }
+
+    private static ClassDesc desc(Class<?> type) {
+        return type.describeConstable().orElseThrow();
+    }
+
+    /** 1回のコンパイル中の状態（class data に積む定数） */
+    private static final class Emitter {
+
+        private final List<Object> constants = new ArrayList<>();
+
+        /** スタックに Object を1つ積む */
+        void emitValue(CodeBuilder cb, ExpressionNode node) {
+            if (isBooleanProducing(node)) {
+                emitBool(cb, node);
+                cb.invokestatic(CD_Boolean, "valueOf", MTD_BOX_BOOLEAN);
+                return;
+            }
+            if (node instanceof LiteralNode lit) {
+                emitLiteral(cb, lit.getValue());
+                return;
+            }
+            if (node instanceof VariableNode var) {
+                cb.aload(SLOT_CONTEXT);
+                cb.loadConstant(var.getSlot());
+                cb.invokestatic(CD_COMPILED_RUNTIME, "variable", MTD_VARIABLE);
+                return;
+            }
+            if (node instanceof ArithmeticNode arith && arith.hasNumericOperands()) {
+                // ArithmeticNode.compute と同じく operator.box(operator.applyDouble(l, r))
+                DynamicConstantDesc<Object> operator = classData(arith.getArithmeticOperator());
+                cb.loadConstant(operator);
+                cb.checkcast(CD_ARITHMETIC_OPERATOR);
+                cb.dup();
+                emitEvalDouble(cb, arith.getLeft());
+                emitEvalDouble(cb, arith.getRight());
+                cb.invokevirtual(CD_ARITHMETIC_OPERATOR, "applyDouble", MTD_APPLY_DOUBLE);
+                cb.invokevirtual(CD_ARITHMETIC_OPERATOR, "box", MTD_BOX_NUMBER);
+                return;
+            }
+            if (node instanceof ArithmeticNode arith) {
+                String method = switch (arith.getArithmeticOperator()) {
+                    case ADD -> "add";
+                    case SUB -> "sub";
+                    case MUL -> "mul";
+                    case DIV -> "div";
+                    case MOD -> "mod";
+                };
+                emitValue(cb, arith.getLeft());
+                emitValue(cb, arith.getRight());
+                cb.invokestatic(CD_OPERATORS, method, MTD_BINARY);
+                return;
+            }
+            if (node instanceof UnaryExpressionNode un && un.getOperand().staticType() == TypeKind.NUMBER
+                    && un.getUnaryOperator() != UnaryExpressionNode.Operator.BITWISE_NOT) {
+                // 符号演算は evalDouble 経由（未設定の数値変数は CoercionException）なのでインタプリタに任せる
+                emitInterpreted(cb, node);
+                return;
+            }
+            if (node instanceof UnaryExpressionNode un) {
+                String method = switch (un.getUnaryOperator()) {
+                    case PLUS -> "plus";
+                    case MINUS -> "negate";
+                    case BITWISE_NOT -> "bitwiseNot";
+                    case NOT -> throw new AssertionError("handled as boolean");
+                };
+                emitValue(cb, un.getOperand());
+                cb.invokestatic(CD_OPERATORS, method, MTD_UNARY);
+                return;
+            }
+            emitInterpreted(cb, node);
+        }
+
+        /** スタックに int(0/1) を1つ積む。非真偽値は Operators.toBool で変換する */
+        void emitBool(CodeBuilder cb, ExpressionNode node) {
+            if (node instanceof LiteralNode lit && lit.getValue() instanceof Boolean b) {
+                if (b) cb.iconst_1(); else cb.iconst_0();
+                return;
+            }
+            if (node instanceof UnaryExpressionNode un && un.getUnaryOperator() == UnaryExpressionNode.Operator.NOT) {
+                // UnaryExpressionNode.evalBoolean と同じ規則
+                switch (un.getOperand().staticType()) {
+                    case BOOLEAN -> {
+                        emitOperandBool(cb, un.getOperand());
+                        cb.iconst_1();
+                        cb.ixor();
+                    }
+                    case NUMBER -> {
+                        emitEvalDouble(cb, un.getOperand());
+                        cb.dconst_0();
+                        cb.dcmpl();
+                        emitIfZero(cb);
+                    }
+                    default -> {
+                        emitValue(cb, un.getOperand());
+                        cb.invokestatic(CD_OPERATORS, "not", MTD_PREDICATE);
+                    }
+                }
+                return;
+            }
+            if (node instanceof StrictEqualityNode eq) {
+                if (eq.hasNumericOperands()) {
+                    emitEvalDouble(cb, eq.getLeft());
+                    emitEvalDouble(cb, eq.getRight());
+                    cb.invokestatic(CD_OPERATORS, "strictEquals", MTD_STRICT_EQUALS_DOUBLE);
+                } else {
+                    emitValue(cb, eq.getLeft());
+                    emitValue(cb, eq.getRight());
+                    cb.invokestatic(CD_OPERATORS, "strictEquals", MTD_BI_PREDICATE);
+                }
+                if (eq.isNegated()) {
+                    cb.iconst_1();
+                    cb.ixor();
+                }
+                return;
+            }
+            if (node instanceof ComparisonNode cmp) {
+                // ComparisonNode.test と同じ分岐：順序比較と数値同士の等価比較は double、それ以外は Operators.eq
+                ComparisonNode.Operator op = cmp.getComparisonOperator();
+                if (cmp.hasNumericOperands() || op.isOrdering()) {
+                    emitOrderingOperand(cb, cmp.getLeft());
+                    emitOrderingOperand(cb, cmp.getRight());
+                    cb.invokestatic(CD_Double, "compare", MTD_COMPARE_DOUBLE);
+                    emitCompareResult(cb, op);
+                } else {
+                    emitValue(cb, cmp.getLeft());
+                    emitValue(cb, cmp.getRight());
+                    cb.invokestatic(CD_OPERATORS, "eq", MTD_BI_PREDICATE);
+                    if (op == ComparisonNode.Operator.NE) {
+                        cb.iconst_1();
+                        cb.ixor();
+                    }
+                }
+                return;
+            }
+            if (node instanceof LogicalNode logical) {
+                // 短絡評価：左辺で結果が決まれば右辺のコードを飛ばす
+                Label shortCircuit = cb.newLabel();
+                Label end = cb.newLabel();
+                boolean shortValue = logical.getLogicalOperator().shortCircuitValue();
+                emitOperandBool(cb, logical.getLeft());
+                if (shortValue) cb.ifne(shortCircuit); else cb.ifeq(shortCircuit);
+                emitOperandBool(cb, logical.getRight());
+                cb.goto_(end);
+                cb.labelBinding(shortCircuit);
+                if (shortValue) cb.iconst_1(); else cb.iconst_0();
+                cb.labelBinding(end);
+                return;
+            }
+            emitValue(cb, node);
+            cb.invokestatic(CD_OPERATORS, "toBool", MTD_PREDICATE);
+        }
+
+        /** test() 用：トップレベルの非真偽値は TypeResolver.toBoolean の規則で変換する */
+        void emitCondition(CodeBuilder cb, ExpressionNode node) {
+            if (isBooleanProducing(node)) {
+                emitBool(cb, node);
+                return;
+            }
+            emitValue(cb, node);
+            cb.invokestatic(CD_COMPILED_RUNTIME, "truthy", MTD_PREDICATE);
+        }
+
+        /** 論理演算の辺を int(0/1) で積む（LogicalNode.operand と同じ規則） */
+        private void emitOperandBool(CodeBuilder cb, ExpressionNode node) {
+            switch (node.staticType()) {
+                case BOOLEAN -> {
+                    if (isBooleanProducing(node)) {
+                        emitBool(cb, node);
+                    } else {
+                        // 真偽値と宣言された変数など：evalBoolean は値が真偽値でなければ CoercionException
+                        cb.loadConstant(classData(node));
+                        cb.checkcast(CD_EXPRESSION_NODE);
+                        cb.aload(SLOT_CONTEXT);
+                        cb.invokeinterface(CD_EXPRESSION_NODE, "evalBoolean", MTD_TEST);
+                    }
+                }
+                case NUMBER -> {
+                    emitEvalDouble(cb, node);
+                    cb.dconst_0();
+                    cb.dcmpl();
+                    emitIfZero(cb);
+                    cb.iconst_1();
+                    cb.ixor();
+                }
+                default -> emitBool(cb, node);
+            }
+        }
+
+        /** 静的に数値のノードの evalDouble(ctx) をスタックに double で積む */
+        private void emitEvalDouble(CodeBuilder cb, ExpressionNode node) {
+            if (isNumberVariable(node)) {
+                cb.aload(SLOT_CONTEXT);
+                cb.loadConstant(((VariableNode) node).getSlot());
+                cb.invokestatic(CD_COMPILED_RUNTIME, "doubleVariable", MTD_DOUBLE_VARIABLE);
+                return;
+            }
+            if (node instanceof LiteralNode lit && lit.getValue() instanceof Number n) {
+                cb.loadConstant(n.doubleValue());
+                return;
+            }
+            if (node instanceof ArithmeticNode arith && arith.hasNumericOperands()) {
+                cb.loadConstant(classData(arith.getArithmeticOperator()));
+                cb.checkcast(CD_ARITHMETIC_OPERATOR);
+                emitEvalDouble(cb, arith.getLeft());
+                emitEvalDouble(cb, arith.getRight());
+                cb.invokevirtual(CD_ARITHMETIC_OPERATOR, "applyDouble", MTD_APPLY_DOUBLE);
+                return;
+            }
+            cb.loadConstant(classData(node));
+            cb.checkcast(CD_EXPRESSION_NODE);
+            cb.aload(SLOT_CONTEXT);
+            cb.invokeinterface(CD_EXPRESSION_NODE, "evalDouble", MTD_EVAL_DOUBLE);
+        }
+
+        /** 順序比較の辺をスタックに double で積む（ComparisonNode.orderingOperand と同じ規則） */
+        private void emitOrderingOperand(CodeBuilder cb, ExpressionNode node) {
+            if (node.staticType() == TypeKind.NUMBER || (node instanceof LiteralNode lit && lit.getValue() instanceof Number)) {
+                emitEvalDouble(cb, node);
+                return;
+            }
+            emitValue(cb, node);
+            cb.invokestatic(CD_COMPILED_RUNTIME, "orderingOperand", MTD_TO_DOUBLE);
+        }
+
+        /** スタック上の int が 0 なら 1、それ以外なら 0 に置き換える */
+        private void emitIfZero(CodeBuilder cb) {
+            Label nonZero = cb.newLabel();
+            Label end = cb.newLabel();
+            cb.ifne(nonZero);
+            cb.iconst_1();
+            cb.goto_(end);
+            cb.labelBinding(nonZero);
+            cb.iconst_0();
+            cb.labelBinding(end);
+        }
+
+        private static boolean isNumberVariable(ExpressionNode node) {
+            return node instanceof VariableNode var && var.staticType() == TypeKind.NUMBER;
+        }
+
+        /** Double.compare の int 結果を演算子に応じて 0/1 に変換する */
+        private void emitCompareResult(CodeBuilder cb, ComparisonNode.Operator operator) {
+            Label isFalse = cb.newLabel();
+            Label end = cb.newLabel();
+            switch (operator) {
+                case LT -> cb.ifge(isFalse);
+                case LE -> cb.ifgt(isFalse);
+                case GT -> cb.ifle(isFalse);
+                case GE -> cb.iflt(isFalse);
+                case EQ -> cb.ifne(isFalse);
+                case NE -> cb.ifeq(isFalse);
+            }
+            cb.iconst_1();
+            cb.goto_(end);
+            cb.labelBinding(isFalse);
+            cb.iconst_0();
+            cb.labelBinding(end);
+        }
+
+        private void emitLiteral(CodeBuilder cb, Object value) {
+            if (value == null) {
+                cb.aconst_null();
+            } else if (value instanceof String s) {
+                cb.loadConstant(s);
+            } else {
+                cb.loadConstant(classData(value));
+            }
+        }
+
+        /** 未対応ノードはノード自体を class data に載せてインタプリタで評価する */
+        private void emitInterpreted(CodeBuilder cb, ExpressionNode node) {
+            cb.loadConstant(classData(node));
+            cb.checkcast(CD_EXPRESSION_NODE);
+            cb.aload(SLOT_CONTEXT);
+            cb.invokeinterface(CD_EXPRESSION_NODE, "evaluate", MTD_EVALUATE);
+        }
+
+        private DynamicConstantDesc<Object> classData(Object value) {
+            int index = constants.size();
+            constants.add(value);
+            return DynamicConstantDesc.ofNamed(ConstantDescs.BSM_CLASS_DATA_AT, ConstantDescs.DEFAULT_NAME, CD_Object, index);
+        }
+
+        /** emitBool が専用のコードを出せるノード（型宣言付きの変数などは含めない） */
+        private static boolean isBooleanProducing(ExpressionNode node) {
+            if (node instanceof LiteralNode lit) return lit.getValue() instanceof Boolean;
+            if (node instanceof UnaryExpressionNode un) return un.getUnaryOperator() == UnaryExpressionNode.Operator.NOT;
+            return node instanceof ComparisonNode || node instanceof StrictEqualityNode || node instanceof LogicalNode;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.group_finity.mascot.trigger.expr.compile;
+
+import com.group_finity.mascot.log.Diagnostics;
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.TickMemo;
+import com.group_finity.mascot.trigger.expr.node.BinaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+
+/**
+ * TieredExpression
+ * 最初はインタプリタで評価し、評価回数が閾値に達したら ExpressionCompiler で生成したコードに切り替える。
+ *
+ * - threshold <= 0 の場合はコンパイルしない（既定は無効＝オプトイン）
+ * - 評価回数のカウントは厳密でなくてよいため同期しない
+ * - コンパイルに失敗した式は以後インタプリタのまま評価する
+ * - ティック中はコンパイル後も式全体（根の二項演算ノード）の結果をティック内メモで共有する。
+ *   メモのキー・値・依存の記録はインタプリタと同じなので、どちらの段で評価した結果も互いに使える。
+ *   生成コードの内側の部分式はメモを通さない（評価のたびに計算する。読んだ変数の記録はインタプリタと同じ）
+ */
+public final class TieredExpression {
+
+    private static final Diagnostics DIAG = Diagnostics.of("trigger.expr.compile");
+
+    private final ExpressionNode node;
+    private final int threshold;
+
+    private int evaluations;
+    private volatile CompiledExpression compiled;
+    private volatile boolean compileFailed;
+
+    public TieredExpression(ExpressionNode node, int threshold) {
+        this.node = node;
+        this.threshold = threshold;
+    }
+
+    public ExpressionNode getNode() { return node; }
+
+    public boolean isCompiled() { return compiled != null; }
+
+    /** ExpressionNode.evaluate(context, resolver, coercion) と同じ結果を返す */
+    public Object evaluate(EvaluationContext context, TypeResolver resolver, TypeCoercion coercion) {
+        CompiledExpression c = compiledOrNull();
+        if (c == null) return node.evaluate(context, resolver, coercion);
+        TickMemo memo = memoFor(context);
+        if (memo == null) return c.evaluate(context);
+        Object value = memo.get(node, context);
+        if (value != TickMemo.MISSING) return value;
+        return evaluateInto(memo, c, context);
+    }
+
+    /** TypeResolver.toBoolean(evaluate(...)) と同じ結果を返す */
+    public boolean test(EvaluationContext context, TypeResolver resolver, TypeCoercion coercion) {
+        CompiledExpression c = compiledOrNull();
+        if (c == null) return TypeResolver.toBoolean(node.evaluate(context, resolver, coercion));
+        TickMemo memo = memoFor(context);
+        if (memo == null) return c.test(context);
+        Object value = memo.get(node, context);
+        if (value != TickMemo.MISSING) return TypeResolver.toBoolean(value);
+        // 真偽値以外を返す式は evaluate の値をメモする（BinaryExpressionNode.evalBoolean と同じ）
+        if (node.staticType() != TypeKind.BOOLEAN) return TypeResolver.toBoolean(evaluateInto(memo, c, context));
+        long version = memo.version();
+        boolean result;
+        int[] slots;
+        context.beginCapture();
+        try {
+            result = c.test(context);
+        } finally {
+            slots = context.endCapture();
+        }
+        memo.put(node, result, slots, version);
+        return result;
+    }
+
+    /** インタプリタがメモするのは二項演算ノードだけなので、根がそれ以外ならメモを使わない */
+    private TickMemo memoFor(EvaluationContext context) {
+        return (context != null && node instanceof BinaryExpressionNode) ? context.tickMemo() : null;
+    }
+
+    private Object evaluateInto(TickMemo memo, CompiledExpression c, EvaluationContext context) {
+        long version = memo.version();
+        Object value;
+        int[] slots;
+        context.beginCapture();
+        try {
+            value = c.evaluate(context);
+        } finally {
+            slots = context.endCapture();
+        }
+        memo.put(node, value, slots, version);
+        return value;
+    }
+
+    /** 評価回数を待たずにコンパイルする（コンパイル無効の場合は何もしない）。ウォームスタートで使う */
+    public boolean precompile() {
+        if (threshold <= 0) return false;
+        return compile() != null;
+    }
+
+    private CompiledExpression compiledOrNull() {
+        CompiledExpression c = compiled;
+        if (c != null || threshold <= 0 || compileFailed) return c;
+        if (++evaluations < threshold) return null;
+        return compile();
+    }
+
+    private synchronized CompiledExpression compile() {
+        if (compiled == null && !compileFailed) {
+            try {
+                compiled = ExpressionCompiler.compile(node);
+            } catch (RuntimeException e) {
+                compileFailed = true;
+                DIAG.warn("Compile failed, staying interpreted: {}", e.getMessage());
+            }
+        }
+        return compiled;
+    }
+}
@@ -0,0 +1,106 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DependencyRecorder
+ * 1回の評価で読んだ変数の記録（SymbolTable のスロットのビット集合）。
+ *
+ * - 名前で読んだ変数もスロットに変換して記録する（名前の集合は持たない）
+ * - push/pop で部分木ごとの記録を入れ子に取れる（ティック内メモが、部分式が実際に読んだ変数を残すのに使う）。
+ *   内側の記録は pop で外側の記録にも加える
+ * - 1回の評価を行うスレッドだけが触る前提で、同期はしない
+ *   （同じ変数表を並行に評価する場合は EvaluationContext.newEvaluation() で評価ごとに別の記録を使う）
+ */
+final class DependencyRecorder {
+
+    private long[] words = new long[1];
+    // push 中の記録（frames[0..depth) が有効。配列は使い回す）
+    private long[][] frames = new long[0][];
+    private int depth;
+
+    void mark(int slot) {
+        words = set(words, slot);
+        if (depth > 0) frames[depth - 1] = set(frames[depth - 1], slot);
+    }
+
+    void push() {
+        if (depth == frames.length) frames = Arrays.copyOf(frames, Math.max(4, depth * 2));
+        long[] frame = frames[depth];
+        if (frame == null) frames[depth] = new long[1];
+        else Arrays.fill(frame, 0L);
+        depth++;
+    }
+
+    /** 直前の push 以降に記録したスロット（昇順） */
+    int[] pop() {
+        long[] frame = frames[--depth];
+        if (depth > 0) {
+            long[] outer = frames[depth - 1];
+            if (outer.length < frame.length) outer = frames[depth - 1] = Arrays.copyOf(outer, frame.length);
+            for (int i = 0; i < frame.length; i++) outer[i] |= frame[i];
+        }
+        return slotsOf(frame);
+    }
+
+    private static long[] set(long[] bits, int slot) {
+        int word = slot >>> 6;
+        if (word >= bits.length) {
+            bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+        }
+        bits[word] |= 1L << slot;
+        return bits;
+    }
+
+    void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    int count() {
+        return count(words);
+    }
+
+    private static int count(long[] bits) {
+        int n = 0;
+        for (long word : bits) n += Long.bitCount(word);
+        return n;
+    }
+
+    /** 記録したスロット（昇順） */
+    int[] slots() {
+        return slotsOf(words);
+    }
+
+    private static int[] slotsOf(long[] bits) {
+        int[] slots = new int[count(bits)];
+        int n = 0;
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                slots[n++] = i * 64 + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return slots;
+    }
+
+    /** 記録した変数の現在値（スロット順） */
+    Map<String, Object> values(Map<String, Object> variables) {
+        Map<String, Object> deps = new LinkedHashMap<>();
+        for (int slot : slots()) {
+            String name = SymbolTable.nameOf(slot);
+            deps.put(name, variables.get(name));
+        }
+        return deps;
+    }
+
+    /** 記録した変数のバージョン */
+    VersionStamp stamp(SlotVariables variables) {
+        int[] slots = slots();
+        long[] versions = new long[slots.length];
+        for (int i = 0; i < slots.length; i++) versions[i] = variables.versionOf(slots[i]);
+        return new VersionStamp(variables, variables.version(), slots, versions);
+    }
+}
@@ -1,28 +1,58 @@
 package com.group_finity.mascot.trigger.expr.eval;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+import com.group_finity.mascot.trigger.expr.type.CoercionException;
 import com.group_finity.mascot.trigger.expr.type.Mode;
 import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
 
 /**
  * 評価時の変数・依存関係・型変換・モードを保持するコンテキスト（D-5 安定版）
  * - 参照共有/コピーの両コンストラクタを用意
- * - 依存トラッキング（markAccess/clearAccessLog/snapshotDependencies）
- * - スナップショットAPI（getVariablesSnapshot/snapshotImmutable）
+ * - 依存トラッキング（markAccess/clearAccessLog/snapshotDependencies）：読んだ変数をスロットのビット集合に記録する。
+ *   記録はコンテキストごとなので、同じ変数表を並行に評価する場合は newEvaluation() で評価ごとのコンテキストを使う
+ * - スナップショットAPI（getVariablesSnapshot/snapshotImmutable）：変数表が SlotVariables ならチャンク共有で O(1)
  * - 互換API（getVariable/setValue）を提供
+ * - スロット参照（getVariable(int)）：自前の変数表は SlotVariables で持ち、配列添字で読む
+ * - ティック内メモ（beginTick/tickMemo/endTick）：1回のディスパッチ中は共有部分式の結果を使い回す。
+ *   メモは newEvaluation() の子と共有し、並行に評価してもよい。部分木が読んだ変数は beginCapture/endCapture で集める
+ * - バージョン（version/stampDependencies）：変数表が SlotVariables なら全体と変数ごとの書き込み番号を持つ
+ * - 変更通知（addChangeListener）：setValue で書き込んだ変数名を登録済みのリスナーへ即座に通知する。
+ *   登録先は変数表ごと（SlotVariables なら表に、通常の Map ならこのコンテキストと newEvaluation() の子に）で、
+ *   別の変数表への書き込みは届かない
+ * - まとめて更新（update/applyDelta）：1フレーム分の書き込みを version 1つ分で反映し、変わった変数名を1回で通知する
+ * - 型付きアクセサ（getDouble/setDouble など）：VariableSchema 付きで作ると宣言型の変数を基本型の列で持ち、箱詰めせずに読み書きする。
+ *   getVariables() はこれまでどおり Map として読み書きできる
  */
 public class EvaluationContext {
 
-    // 変数表（基本は LinkedHashMap/参照共有も可能）
+    // 変数表（基本は SlotVariables/参照共有も可能）
     private final Map<String, Object> variables;
 
-    // 依存トラッキング用（読み取りアクセスしたキー集合）
-    private final Set<String> accessedKeys = ConcurrentHashMap.newKeySet();
+    // variables が SlotVariables の場合は同じインスタンス（外部の通常 Map を参照共有する場合は null）
+    private final SlotVariables slots;
+
+    // 依存トラッキング用（読んだ変数のスロット。このコンテキストで評価するスレッドだけが触る）
+    private final DependencyRecorder recorder = new DependencyRecorder();
+
+    // 変数表が通常の Map の場合の通知先（SlotVariables なら表の側に持つので null）
+    private final List<VariableChangeListener> mapListeners;
+
+    // newEvaluation() で作った場合の元のコンテキスト（ティック内メモは元のものを使う）
+    private final EvaluationContext parent;
+
+    // ティック内メモ（beginTick〜endTick の間だけ非 null。newEvaluation() の子が別スレッドから読む）
+    private volatile TickMemo tickMemo;
 
     // 型変換器とモード（null許容：既存コード互換）
     private final TypeCoercion typeCoercion;
@@ -46,14 +76,39 @@ public class EvaluationContext {
         this.typeCoercion = coercion;
         this.mode = (mode != null ? mode : Mode.STRICT);
         if (vars == null) {
-            this.variables = new LinkedHashMap<>();
+            this.slots = new SlotVariables();
         } else if (shareVariables) {
-            // 参照共有：外部で put した変更がそのまま見える
-            this.variables = vars;
+            // 参照共有：外部で put した変更がそのまま見える（SlotVariables ならスロット参照も使える）
+            this.slots = (vars instanceof SlotVariables sv) ? sv : null;
         } else {
-            // コピー保持：外部変更の影響を受けない
-            this.variables = new LinkedHashMap<>(vars);
+            // コピー保持：外部変更の影響を受けない（SlotVariables ならチャンクを共有し、書き込み時に複製する）
+            this.slots = (vars instanceof SlotVariables sv) ? sv.snapshot() : new SlotVariables(vars);
         }
+        this.variables = (slots != null) ? slots : vars;
+        this.mapListeners = (slots != null) ? null : new CopyOnWriteArrayList<>();
+        this.parent = null;
+    }
+
+    /** 宣言型付き：long / double / boolean と宣言した変数を基本型の列で持つ空の変数表を使う */
+    public EvaluationContext(VariableSchema schema, TypeCoercion coercion, Mode mode) {
+        this(new SlotVariables(schema), coercion, mode, true);
+    }
+
+    private EvaluationContext(EvaluationContext parent) {
+        this.variables = parent.variables;
+        this.slots = parent.slots;
+        this.mapListeners = parent.mapListeners;
+        this.typeCoercion = parent.typeCoercion;
+        this.mode = parent.mode;
+        this.parent = parent;
+    }
+
+    /**
+     * 同じ変数表・型変換器・モード・ティック内メモを使い、依存の記録だけを別に持つコンテキストを返す。
+     * 1回の評価ごとに作れば、同じコンテキストを並行に評価しても依存の記録が混ざらない。
+     */
+    public EvaluationContext newEvaluation() {
+        return new EvaluationContext(parent != null ? parent : this);
     }
 
     // ========= 基本アクセサ =========
@@ -74,38 +129,95 @@ public class EvaluationContext {
 
     /** 変数アクセスの記録（VariableNode などから呼ばれる） */
     public void markAccess(String name) {
-        if (name != null) accessedKeys.add(name);
+        if (name != null) recorder.mark(SymbolTable.slotOf(name));
     }
 
     /** 依存アクセスログのクリア（再評価直前に呼ぶ） */
     public void clearAccessLog() {
-        accessedKeys.clear();
+        recorder.clear();
     }
 
-    /** 現時点でアクセスされたキーの値スナップショット（順序安定） */
+    /** 現時点でアクセスされたキーの値スナップショット（スロット順） */
     public Map<String, Object> snapshotDependencies() {
-        return accessedKeys.stream().collect(Collectors.toMap(
-            k -> k,
-            k -> variables.get(k),
-            (a, b) -> a,
-            LinkedHashMap::new
-        ));
+        return recorder.values(variables);
+    }
+
+    /** スロット参照の依存記録（メモから結果を返すときに、記録時に読んだ変数を記録するのに使う） */
+    public void markAccess(int slot) {
+        recorder.mark(slot);
+    }
+
+    /**
+     * ここから endCapture までに読んだ変数を別に集め始める（入れ子にできる。必ず endCapture と対にする）。
+     * 集めた変数もこれまでどおり評価全体の依存として記録される。
+     */
+    public void beginCapture() {
+        recorder.push();
+    }
+
+    /** 対応する beginCapture 以降に読んだ変数のスロット（昇順） */
+    public int[] endCapture() {
+        return recorder.pop();
+    }
+
+    /**
+     * 現時点でアクセスされた変数のバージョンを記録する（snapshotDependencies の値の代わり）。
+     * 変数表が SlotVariables でない場合は null。
+     */
+    public VersionStamp stampDependencies() {
+        return slots != null ? recorder.stamp(slots) : null;
+    }
+
+    /** 変数表全体のバージョン（書き込みのたびに増える）。SlotVariables でない場合は -1 */
+    public long version() {
+        return slots != null ? slots.version() : -1L;
+    }
+
+    // ========= ティック内メモ =========
+
+    /**
+     * ティックを開始する。endTick までの間、ノードは tickMemo() で部分式の結果を共有する。
+     * 変数表が SlotVariables でない場合（外部の通常 Map を参照共有）は書き込みを検知できないのでメモを使わない。
+     * newEvaluation() で作ったコンテキストでは元のコンテキストのティックを操作する。
+     */
+    public void beginTick() {
+        if (parent != null) {
+            parent.beginTick();
+            return;
+        }
+        this.tickMemo = (slots != null) ? new TickMemo(slots) : null;
+    }
+
+    /** ティックを終了し、使ったメモを返す（統計の報告用。メモを使っていなければ null） */
+    public TickMemo endTick() {
+        if (parent != null) return parent.endTick();
+        TickMemo memo = this.tickMemo;
+        this.tickMemo = null;
+        return memo;
+    }
+
+    /** 有効なティック内メモ。ティック外なら null（変数表が書き換わった後の記録は TickMemo.get が使わない） */
+    public TickMemo tickMemo() {
+        return (parent != null) ? parent.tickMemo : tickMemo;
     }
 
     // ========= スナップショットAPI =========
 
-    /** 現在の変数表のコピーを返す（STRICT 判定・ログ出力などに使用） */
+    /**
+     * 現在の変数表のコピーを返す（STRICT 判定・ログ出力などに使用）。
+     * 変数表が SlotVariables なら SlotVariables.snapshot()（O(1)。以後の書き込みは互いに見えない）。
+     */
     public Map<String, Object> getVariablesSnapshot() {
-        return new LinkedHashMap<>(variables);
+        return (slots != null) ? slots.snapshot() : new LinkedHashMap<>(variables);
     }
 
     /**
      * Immutability を想定した簡易スナップショット。
-     * 新しい EvaluationContext を生成し、変数表はコピーして埋め込む。
+     * 新しい EvaluationContext を生成し、変数表はスナップショットを埋め込む。
      * （EventDispatcher のワーカー渡し用）
      */
     public EvaluationContext snapshotImmutable() {
-        return new EvaluationContext(new LinkedHashMap<>(variables), typeCoercion, mode, false);
+        return new EvaluationContext(variables, typeCoercion, mode, false); // コピー側コンストラクタで複製される
     }
 
     // ========= 互換API（既存コード対応） =========
@@ -113,12 +225,187 @@ public class EvaluationContext {
     /** 既存：VariableNode からの読み取りで使用される */
     public Object getVariable(String name) {
         // 読み取り時にも依存記録する
-        if (name != null) accessedKeys.add(name);
+        if (name != null) recorder.mark(SymbolTable.slotOf(name));
         return variables.get(name);
     }
 
-    /** 既存：Main からの setValue(String, int/obj) 呼び出しに対応 */
+    /**
+     * スロット参照（VariableNode から使用）。依存記録も行う。
+     * 変数表が SlotVariables でない場合は名前で引く。
+     */
+    public Object getVariable(int slot) {
+        recorder.mark(slot);
+        return slots != null ? slots.getSlot(slot) : variables.get(SymbolTable.nameOf(slot));
+    }
+
+    /** 既存：Main からの setValue(String, int/obj) 呼び出しに対応。書き込み後にリスナーへ通知する */
     public void setValue(String name, Object value) {
         variables.put(name, value);
+        fireChanged(name);
+    }
+
+    // ========= 型付きアクセサ =========
+
+    /** 数値として読む（依存記録も行う）。数値でなければ CoercionException */
+    public double getDouble(int slot) {
+        recorder.mark(slot);
+        if (slots != null) return slots.getDouble(slot);
+        Object v = variables.get(SymbolTable.nameOf(slot));
+        if (v instanceof Number n) return n.doubleValue();
+        throw new CoercionException("Variable '" + SymbolTable.nameOf(slot) + "' is not a number: " + v);
+    }
+
+    /** 整数として読む（依存記録も行う）。整数でなければ CoercionException */
+    public long getLong(int slot) {
+        recorder.mark(slot);
+        if (slots != null) return slots.getLong(slot);
+        Object v = variables.get(SymbolTable.nameOf(slot));
+        if (v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            return ((Number) v).longValue();
+        }
+        throw new CoercionException("Variable '" + SymbolTable.nameOf(slot) + "' is not an integer: " + v);
+    }
+
+    /** 真偽値として読む（依存記録も行う）。真偽値でなければ CoercionException */
+    public boolean getBoolean(int slot) {
+        recorder.mark(slot);
+        if (slots != null) return slots.getBoolean(slot);
+        Object v = variables.get(SymbolTable.nameOf(slot));
+        if (v instanceof Boolean b) return b;
+        throw new CoercionException("Variable '" + SymbolTable.nameOf(slot) + "' is not a boolean: " + v);
+    }
+
+    public double getDouble(String name) {
+        return getDouble(SymbolTable.slotOf(name));
+    }
+
+    public long getLong(String name) {
+        return getLong(SymbolTable.slotOf(name));
+    }
+
+    public boolean getBoolean(String name) {
+        return getBoolean(SymbolTable.slotOf(name));
+    }
+
+    /** 基本型の列があれば箱詰めせずに書く。書き込み後に setValue と同じく通知する */
+    public void setLong(String name, long value) {
+        if (slots != null) slots.setLong(SymbolTable.slotOf(name), value);
+        else variables.put(name, value);
+        fireChanged(name);
+    }
+
+    public void setDouble(String name, double value) {
+        if (slots != null) slots.setDouble(SymbolTable.slotOf(name), value);
+        else variables.put(name, value);
+        fireChanged(name);
+    }
+
+    public void setBoolean(String name, boolean value) {
+        if (slots != null) slots.setBoolean(SymbolTable.slotOf(name), value);
+        else variables.put(name, value);
+        fireChanged(name);
+    }
+
+    // ========= まとめて更新 =========
+
+    /** update に渡される書き込み口。書いた内容は update の最後にまとめて反映される */
+    public interface Writer {
+        Writer set(String name, Object value);
+        Writer remove(String name);
+    }
+
+    /**
+     * 1フレーム分の書き込みをまとめて反映する。
+     * batch の中の書き込みは batch が正常に戻った後で一度に反映され、batch が例外を投げた場合は何も反映しない。
+     * 変数表が SlotVariables なら version は1つだけ進み、書き込んだ変数の versionOf はすべて同じ値になる。
+     * 値が変わらない書き込みは無視し、変わった変数名をリスナーへ1回で通知する（何も変わらなければ通知しない）。
+     *
+     * @return 値が変わった変数名
+     */
+    public Set<String> update(Consumer<? super Writer> batch) {
+        Map<String, Object> puts = new LinkedHashMap<>();
+        Set<String> removals = new LinkedHashSet<>();
+        batch.accept(new Writer() {
+            @Override
+            public Writer set(String name, Object value) {
+                if (name == null) throw new IllegalArgumentException("variable name is null");
+                removals.remove(name);
+                puts.put(name, value);
+                return this;
+            }
+
+            @Override
+            public Writer remove(String name) {
+                if (name == null) throw new IllegalArgumentException("variable name is null");
+                puts.remove(name);
+                removals.add(name);
+                return this;
+            }
+        });
+        return apply(puts, removals);
+    }
+
+    /** delta の内容をまとめて書き込む（update と同じく1回の反映・1回の通知） */
+    public Set<String> applyDelta(Map<String, ?> delta) {
+        // Map.of などは containsKey(null) が例外になるので名前を1つずつ確かめる
+        for (String name : delta.keySet()) {
+            if (name == null) throw new IllegalArgumentException("variable name is null");
+        }
+        return apply(delta, List.of());
+    }
+
+    private Set<String> apply(Map<String, ?> puts, Collection<String> removals) {
+        Set<String> changed = (slots != null) ? slots.applyDelta(puts, removals) : applyToMap(puts, removals);
+        if (!changed.isEmpty()) {
+            if (slots != null) {
+                for (VariableChangeListener l : slots.changeListeners()) l.variablesChanged(changed);
+            } else {
+                for (VariableChangeListener l : mapListeners) l.variablesChanged(changed);
+            }
+        }
+        return changed;
+    }
+
+    /** 外部の通常 Map を参照共有している場合（version はない） */
+    private Set<String> applyToMap(Map<String, ?> puts, Collection<String> removals) {
+        Set<String> changed = new LinkedHashSet<>();
+        for (Map.Entry<String, ?> e : puts.entrySet()) {
+            String name = e.getKey();
+            if (variables.containsKey(name) && Objects.equals(variables.get(name), e.getValue())) continue;
+            variables.put(name, e.getValue());
+            changed.add(name);
+        }
+        for (String name : removals) {
+            if (!variables.containsKey(name)) continue;
+            variables.remove(name);
+            changed.add(name);
+        }
+        return Collections.unmodifiableSet(changed);
+    }
+
+    // ========= 変更通知 =========
+
+    /**
+     * setValue / update / applyDelta による書き込みの通知先を、このコンテキストの変数表に登録する
+     * （SlotVariables なら SlotVariables.addChangeListener と同じ。同じ表を共有する他のコンテキストからの書き込みも届く）。
+     * getVariables().put(...) で直接書き込んだ場合は通知されない（キャッシュ側はバージョン比較で検出する）。
+     */
+    public void addChangeListener(VariableChangeListener listener) {
+        if (listener == null) return;
+        if (slots != null) slots.addChangeListener(listener);
+        else if (!mapListeners.contains(listener)) mapListeners.add(listener);
+    }
+
+    public void removeChangeListener(VariableChangeListener listener) {
+        if (slots != null) slots.removeChangeListener(listener);
+        else mapListeners.remove(listener);
+    }
+
+    private void fireChanged(String name) {
+        if (slots != null) {
+            for (VariableChangeListener l : slots.changeListeners()) l.variableChanged(name);
+        } else {
+            for (VariableChangeListener l : mapListeners) l.variableChanged(name);
+        }
     }
 }
@@ -0,0 +1,567 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.group_finity.mascot.trigger.expr.type.CoercionException;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
+
+/**
+ * SlotVariables
+ * SymbolTable のスロットを添字とする配列で値を持つ変数表。
+ *
+ * - Map として振る舞うので getVariables().put(...) など既存の呼び出しはそのまま使える
+ * - getSlot(int) は配列参照のみ（ハッシュ計算なし）
+ * - 反復順はスロット順（挿入順ではない）
+ * - 書き込みのたびに version() が増え、書き込んだスロットにはその値が記録される（versionOf）
+ *   → TickMemo の有効性判定や、キャッシュの鮮度判定（VersionStamp）を値の比較なしで行える
+ * - applyDelta はまとめた書き込みを version 1つ分として反映する（値が変わらない書き込みは数えない）
+ * - 値は 32 スロットずつのチャンクに分けて持ち、snapshot() はチャンクを共有した別の表を O(1) で返す。
+ *   共有中のチャンクは書き込む側（元の表・スナップショットのどちらでも）が最初の書き込みで複製する
+ *   （コピーされるのは書き込んだスロットのチャンクと、チャンクの参照配列だけ）
+ * - VariableSchema 付きで作ると、long / double / boolean（ラッパー型も可）と宣言した変数を
+ *   チャンク内の long 配列に基本型のまま持つ（double と boolean はビット列にして格納する）。
+ *   setLong / getDouble などの型付きアクセサは箱詰めしない。Map としての読み書きでは従来どおり箱詰めする
+ *   （宣言型の列に合わない値を put すると IllegalArgumentException）
+ * - 変更通知の登録先（addChangeListener）は変数表ごと。EvaluationContext.setValue / update などで書き込むと、
+ *   この表を使うどのコンテキストから書いても同じリスナーに届く（スナップショットには引き継がない）
+ * - HashMap / LinkedHashMap と同じくスレッドセーフではない。
+ *   ただし snapshot() で得た表は元の表と書き込みを共有しないので、別スレッドへ渡してよい
+ */
+public final class SlotVariables extends AbstractMap<String, Object> {
+
+    /** 未設定を表す番兵（null 値と区別するため） */
+    private static final Object ABSENT = new Object();
+    /** 値が基本型の列（Chunk.prims）にあることを表す番兵 */
+    private static final Object PRIMITIVE = new Object();
+
+    // スロットの列の種類
+    private static final byte REF = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte[] NO_COLUMNS = new byte[0];
+    private static final VariableChangeListener[] NO_LISTENERS = new VariableChangeListener[0];
+
+    private static final int CHUNK_BITS = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final AtomicLong IDS = new AtomicLong();
+
+    /**
+     * 値とスロットごとの version。owner が自分の所有トークンと同じチャンクだけ書き換えてよい。
+     * prims は基本型の列の値（宣言型のない表では null）
+     */
+    private static final class Chunk {
+        final Object owner;
+        final Object[] values;
+        final long[] versions;
+        final long[] prims;
+
+        Chunk(Object owner, boolean typed) {
+            this.owner = owner;
+            this.values = new Object[CHUNK_SIZE];
+            Arrays.fill(values, ABSENT);
+            this.versions = new long[CHUNK_SIZE];
+            this.prims = typed ? new long[CHUNK_SIZE] : null;
+        }
+
+        Chunk(Object owner, Chunk from) {
+            this.owner = owner;
+            this.values = from.values.clone();
+            this.versions = from.versions.clone();
+            this.prims = from.prims != null ? from.prims.clone() : null;
+        }
+    }
+
+    // 変数表ごとに一意な番号（別の表で取った VersionStamp と区別するため）
+    private final long id = IDS.incrementAndGet();
+
+    // 宣言型と、そこから作ったスロットごとの列の種類（スナップショットと共有する。変更しない）
+    private final VariableSchema schema;
+    private final byte[] columns;
+
+    // 所有トークン（snapshot() のたびに取り替え、それまでのチャンクを共有扱いにする）
+    private Object owner = new Object();
+    // 未割り当てのチャンクは null
+    private Chunk[] chunks;
+    // chunks 配列自体を書き換えてよいか（スナップショットと共有中は false）
+    private boolean chunksOwned;
+    private int size;
+    private long version;
+    // 変更通知の登録先（書き換えは this で同期し、配列ごと差し替える）
+    private volatile VariableChangeListener[] listeners = NO_LISTENERS;
+
+    public SlotVariables() {
+        this(VariableSchema.EMPTY);
+    }
+
+    public SlotVariables(Map<String, ?> initial) {
+        this();
+        if (initial != null) putAll(initial);
+    }
+
+    /** 宣言型が long / double / boolean の変数を基本型の列で持つ変数表 */
+    public SlotVariables(VariableSchema schema) {
+        this.schema = (schema != null) ? schema : VariableSchema.EMPTY;
+        this.columns = columnsOf(this.schema);
+        int slots = Math.max(SymbolTable.size(), 16);
+        this.chunks = new Chunk[(slots + CHUNK_MASK) >>> CHUNK_BITS];
+        this.chunksOwned = true;
+    }
+
+    private SlotVariables(VariableSchema schema, byte[] columns, Chunk[] chunks, int size, long version) {
+        this.schema = schema;
+        this.columns = columns;
+        this.chunks = chunks;
+        this.chunksOwned = false;
+        this.size = size;
+        this.version = version;
+    }
+
+    /**
+     * 現在の内容を持つ別の変数表を返す（チャンクを共有するので変数の数によらず O(1)）。
+     * 以後の書き込みは互いに見えない。スナップショットは別の id() を持ち、version() は引き継ぐ。
+     */
+    public SlotVariables snapshot() {
+        SlotVariables copy = new SlotVariables(schema, columns, chunks, size, version);
+        this.owner = new Object();
+        this.chunksOwned = false;
+        return copy;
+    }
+
+    /** 書き込み（put/remove/clear）のたびに増える値 */
+    public long version() {
+        return version;
+    }
+
+    /** スロットに最後に書き込んだときの version()（一度も書き込んでいなければ 0） */
+    public long versionOf(int slot) {
+        Chunk c = chunkOf(slot);
+        return c != null ? c.versions[slot & CHUNK_MASK] : 0L;
+    }
+
+    /** 変数表の識別番号 */
+    public long id() {
+        return id;
+    }
+
+    // ===== 変更通知 =====
+
+    /** 通知先を登録する（equals で同じリスナーが登録済みなら何もしない） */
+    public synchronized void addChangeListener(VariableChangeListener listener) {
+        if (listener == null) return;
+        VariableChangeListener[] ls = listeners;
+        for (VariableChangeListener l : ls) {
+            if (l.equals(listener)) return;
+        }
+        VariableChangeListener[] next = Arrays.copyOf(ls, ls.length + 1);
+        next[ls.length] = listener;
+        listeners = next;
+    }
+
+    public synchronized void removeChangeListener(VariableChangeListener listener) {
+        VariableChangeListener[] ls = listeners;
+        for (int i = 0; i < ls.length; i++) {
+            if (!ls[i].equals(listener)) continue;
+            VariableChangeListener[] next = new VariableChangeListener[ls.length - 1];
+            System.arraycopy(ls, 0, next, 0, i);
+            System.arraycopy(ls, i + 1, next, i, ls.length - i - 1);
+            listeners = next;
+            return;
+        }
+    }
+
+    /** 登録済みの通知先（EvaluationContext が書き込み後に呼ぶ） */
+    VariableChangeListener[] changeListeners() {
+        return listeners;
+    }
+
+    /** 生成時に渡した宣言型（なければ VariableSchema.EMPTY） */
+    public VariableSchema schema() {
+        return schema;
+    }
+
+    /** スロットの値（未設定なら null）。基本型の列の値は箱詰めして返す */
+    public Object getSlot(int slot) {
+        Object value = valueAt(slot);
+        return value == ABSENT ? null : value;
+    }
+
+    // ===== 型付きアクセサ（基本型の列なら箱詰めしない） =====
+
+    /** 数値として読む。long / double の列か Number の値でなければ CoercionException */
+    public double getDouble(int slot) {
+        Chunk c = chunkOf(slot);
+        if (c != null) {
+            int i = slot & CHUNK_MASK;
+            Object raw = c.values[i];
+            if (raw == PRIMITIVE) {
+                byte column = columnOf(slot);
+                if (column == DOUBLE) return Double.longBitsToDouble(c.prims[i]);
+                if (column == LONG) return c.prims[i];
+            } else if (raw instanceof Number n) {
+                return n.doubleValue();
+            }
+        }
+        throw mismatch(slot, "a number");
+    }
+
+    /** 整数として読む。long の列か整数型（Long / Integer / Short / Byte）の値でなければ CoercionException */
+    public long getLong(int slot) {
+        Chunk c = chunkOf(slot);
+        if (c != null) {
+            int i = slot & CHUNK_MASK;
+            Object raw = c.values[i];
+            if (raw == PRIMITIVE) {
+                if (columnOf(slot) == LONG) return c.prims[i];
+            } else if (raw instanceof Long || raw instanceof Integer || raw instanceof Short || raw instanceof Byte) {
+                return ((Number) raw).longValue();
+            }
+        }
+        throw mismatch(slot, "an integer");
+    }
+
+    /** 真偽値として読む。boolean の列か Boolean の値でなければ CoercionException */
+    public boolean getBoolean(int slot) {
+        Chunk c = chunkOf(slot);
+        if (c != null) {
+            int i = slot & CHUNK_MASK;
+            Object raw = c.values[i];
+            if (raw == PRIMITIVE) {
+                if (columnOf(slot) == BOOLEAN) return c.prims[i] != 0;
+            } else if (raw instanceof Boolean b) {
+                return b;
+            }
+        }
+        throw mismatch(slot, "a boolean");
+    }
+
+    /** long の列なら基本型で、double の列なら double に変換して書く。宣言型のない変数は Long で持つ */
+    public void setLong(int slot, long value) {
+        byte column = columnOf(slot);
+        switch (column) {
+            case LONG -> storeBits(slot, value, ++version);
+            case DOUBLE -> storeBits(slot, Double.doubleToRawLongBits(value), ++version);
+            case REF -> storeRaw(slot, value, ++version);
+            default -> throw columnMismatch(slot, column, value);
+        }
+    }
+
+    /** double の列なら基本型で書く。宣言型のない変数は Double で持つ。long / boolean の列には書けない */
+    public void setDouble(int slot, double value) {
+        byte column = columnOf(slot);
+        switch (column) {
+            case DOUBLE -> storeBits(slot, Double.doubleToRawLongBits(value), ++version);
+            case REF -> storeRaw(slot, value, ++version);
+            default -> throw columnMismatch(slot, column, value);
+        }
+    }
+
+    /** boolean の列なら基本型で書く。宣言型のない変数は Boolean で持つ */
+    public void setBoolean(int slot, boolean value) {
+        byte column = columnOf(slot);
+        switch (column) {
+            case BOOLEAN -> storeBits(slot, value ? 1L : 0L, ++version);
+            case REF -> storeRaw(slot, value, ++version);
+            default -> throw columnMismatch(slot, column, value);
+        }
+    }
+
+    private CoercionException mismatch(int slot, String expected) {
+        Object value = valueAt(slot);
+        return new CoercionException("Variable '" + SymbolTable.nameOf(slot) + "' is not " + expected + ": "
+            + (value == ABSENT ? "unset" : value));
+    }
+
+    // ===== 列 =====
+
+    private static byte[] columnsOf(VariableSchema schema) {
+        if (schema.isEmpty()) return NO_COLUMNS;
+        byte[] columns = NO_COLUMNS;
+        for (String name : schema.names()) {
+            byte column = columnFor(schema.typeOf(name));
+            if (column == REF) continue;
+            int slot = SymbolTable.slotOf(name);
+            if (slot >= columns.length) columns = Arrays.copyOf(columns, slot + 1);
+            columns[slot] = column;
+        }
+        return columns;
+    }
+
+    private static byte columnFor(Class<?> type) {
+        if (type == long.class || type == Long.class) return LONG;
+        if (type == double.class || type == Double.class || type == float.class || type == Float.class) return DOUBLE;
+        if (type == boolean.class || type == Boolean.class) return BOOLEAN;
+        return REF;
+    }
+
+    private byte columnOf(int slot) {
+        byte[] cs = columns;
+        return slot < cs.length ? cs[slot] : REF;
+    }
+
+    /** 基本型の列に入れる値をビット列にする。列に合わない値なら IllegalArgumentException */
+    private static long encode(int slot, byte column, Object value) {
+        switch (column) {
+            case LONG:
+                if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                    return ((Number) value).longValue();
+                }
+                break;
+            case DOUBLE:
+                if (value instanceof Number n) return Double.doubleToRawLongBits(n.doubleValue());
+                break;
+            case BOOLEAN:
+                if (value instanceof Boolean b) return b ? 1L : 0L;
+                break;
+            default:
+                break;
+        }
+        throw columnMismatch(slot, column, value);
+    }
+
+    private static Object decode(byte column, long bits) {
+        return switch (column) {
+            case LONG -> bits;
+            case DOUBLE -> Double.longBitsToDouble(bits);
+            default -> bits != 0;
+        };
+    }
+
+    private static IllegalArgumentException columnMismatch(int slot, byte column, Object value) {
+        String type = switch (column) {
+            case LONG -> "long";
+            case DOUBLE -> "double";
+            default -> "boolean";
+        };
+        return new IllegalArgumentException("Variable '" + SymbolTable.nameOf(slot) + "' is declared " + type
+            + " but got " + value);
+    }
+
+    private Chunk chunkOf(int slot) {
+        Chunk[] cs = chunks;
+        int index = slot >>> CHUNK_BITS;
+        return index < cs.length ? cs[index] : null;
+    }
+
+    /** 書き込み用のチャンク（共有中なら複製し、未割り当てなら作る） */
+    private Chunk writableChunk(int slot) {
+        int index = slot >>> CHUNK_BITS;
+        if (!chunksOwned || index >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(index + 1, chunks.length));
+            chunksOwned = true;
+        }
+        Chunk c = chunks[index];
+        if (c == null) {
+            c = chunks[index] = new Chunk(owner, columns.length > 0);
+        } else if (c.owner != owner) {
+            c = chunks[index] = new Chunk(owner, c);
+        }
+        return c;
+    }
+
+    /** 格納されている値そのもの（基本型の列なら PRIMITIVE、未設定なら ABSENT） */
+    private Object rawValue(int slot) {
+        Chunk c = chunkOf(slot);
+        return c != null ? c.values[slot & CHUNK_MASK] : ABSENT;
+    }
+
+    /** 値（基本型の列なら箱詰めする。未設定なら ABSENT） */
+    private Object valueAt(int slot) {
+        Chunk c = chunkOf(slot);
+        if (c == null) return ABSENT;
+        int i = slot & CHUNK_MASK;
+        Object raw = c.values[i];
+        return raw == PRIMITIVE ? decode(columnOf(slot), c.prims[i]) : raw;
+    }
+
+    /** スロットが value と同じ値を持っているか（基本型の列はビット列で比べる） */
+    private boolean holds(int slot, Object value) {
+        Chunk c = chunkOf(slot);
+        if (c == null) return false;
+        int i = slot & CHUNK_MASK;
+        Object raw = c.values[i];
+        if (raw == ABSENT) return false;
+        if (raw == PRIMITIVE) return value != null && c.prims[i] == encode(slot, columnOf(slot), value);
+        return Objects.equals(raw, value);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = SymbolTable.lookup(key);
+        return slot < 0 ? null : getSlot(slot);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = SymbolTable.lookup(key);
+        return slot >= 0 && rawValue(slot) != ABSENT;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return putSlot(SymbolTable.slotOf(key), value);
+    }
+
+    private Object putSlot(int slot, Object value) {
+        validate(slot, value);
+        Object old = valueAt(slot);
+        store(slot, value, ++version);
+        return old == ABSENT ? null : old;
+    }
+
+    /** 基本型の列に合わない値なら IllegalArgumentException（書き込む前に確かめる） */
+    private void validate(int slot, Object value) {
+        byte column = columnOf(slot);
+        if (column != REF && value != null) encode(slot, column, value);
+    }
+
+    /** スロットに値（削除なら ABSENT）と version を書く。基本型の列の値は prims に入れる */
+    private void store(int slot, Object value, long v) {
+        byte column = columnOf(slot);
+        if (column != REF && value != null && value != ABSENT) storeBits(slot, encode(slot, column, value), v);
+        else storeRaw(slot, value, v);
+    }
+
+    private void storeRaw(int slot, Object value, long v) {
+        Chunk c = writableChunk(slot);
+        int i = slot & CHUNK_MASK;
+        Object old = c.values[i];
+        c.values[i] = value;
+        c.versions[i] = v;
+        if (old == ABSENT && value != ABSENT) size++;
+        else if (old != ABSENT && value == ABSENT) size--;
+    }
+
+    private void storeBits(int slot, long bits, long v) {
+        Chunk c = writableChunk(slot);
+        int i = slot & CHUNK_MASK;
+        if (c.values[i] == ABSENT) size++;
+        c.values[i] = PRIMITIVE;
+        c.prims[i] = bits;
+        c.versions[i] = v;
+    }
+
+    /**
+     * 書き込みと削除をまとめて反映する。値が変わった変数だけを書き、それらの versionOf は同じ値になる。
+     * version() は何か変わった場合だけ 1 増える。
+     *
+     * @return 値が変わった（追加・変更・削除された）変数名
+     */
+    public Set<String> applyDelta(Map<String, ?> puts, Collection<String> removals) {
+        // 途中で失敗して一部だけ書かれないよう、基本型の列に合わない値がないか先に確かめる
+        for (Map.Entry<String, ?> e : puts.entrySet()) validate(SymbolTable.slotOf(e.getKey()), e.getValue());
+        long next = version + 1;
+        Set<String> changed = new LinkedHashSet<>();
+        for (Map.Entry<String, ?> e : puts.entrySet()) {
+            int slot = SymbolTable.slotOf(e.getKey());
+            if (holds(slot, e.getValue())) continue;
+            store(slot, e.getValue(), next);
+            changed.add(e.getKey());
+        }
+        for (String name : removals) {
+            int slot = SymbolTable.lookup(name);
+            if (slot < 0 || rawValue(slot) == ABSENT) continue;
+            store(slot, ABSENT, next);
+            changed.add(name);
+        }
+        if (!changed.isEmpty()) version = next;
+        return Collections.unmodifiableSet(changed);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int slot = SymbolTable.lookup(key);
+        if (slot < 0 || rawValue(slot) == ABSENT) return null;
+        return removeSlot(slot);
+    }
+
+    private Object removeSlot(int slot) {
+        Object old = valueAt(slot);
+        storeRaw(slot, ABSENT, ++version);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        long v = ++version;
+        for (int index = 0; index < chunks.length; index++) {
+            if (chunks[index] == null) continue;
+            Chunk c = writableChunk(index << CHUNK_BITS);
+            Arrays.fill(c.values, ABSENT);
+            Arrays.fill(c.versions, v);
+        }
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int next = advance(0);
+        private int last = -1;
+
+        private int advance(int from) {
+            int capacity = chunks.length << CHUNK_BITS;
+            int i = from;
+            while (i < capacity && rawValue(i) == ABSENT) i++;
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < chunks.length << CHUNK_BITS;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            last = next;
+            next = advance(next + 1);
+            int slot = last;
+            return new SimpleEntry<>(SymbolTable.nameOf(slot), valueAt(slot)) {
+                @Override
+                public Object setValue(Object value) {
+                    super.setValue(value);
+                    return putSlot(slot, value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0 || rawValue(last) == ABSENT) throw new IllegalStateException();
+            removeSlot(last);
+            last = -1;
+        }
+    }
+}
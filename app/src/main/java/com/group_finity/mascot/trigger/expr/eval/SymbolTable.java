@@ -0,0 +1,60 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SymbolTable
+ * 変数名と整数スロットの対応表（プロセス全体で共通）。
+ *
+ * - VariableNode は生成時にスロットを確定し、評価時は配列添字で変数を読む
+ * - スロットは一度割り当てたら変わらない（名前の登録解除はしない）
+ * - マスコットの変数は固定の数十個程度なので、表が際限なく増えることは想定しない
+ */
+public final class SymbolTable {
+
+    private static final Map<String, Integer> SLOTS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int size; // register() 内でのみ更新
+
+    private SymbolTable() {}
+
+    /** 名前に対応するスロット。未登録なら新しく割り当てる */
+    public static int slotOf(String name) {
+        if (name == null) throw new IllegalArgumentException("variable name is null");
+        Integer slot = SLOTS.get(name);
+        return slot != null ? slot : register(name);
+    }
+
+    /** 登録済みならスロット、未登録なら -1（登録はしない） */
+    public static int lookup(Object name) {
+        if (!(name instanceof String)) return -1;
+        Integer slot = SLOTS.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    /** スロットに対応する名前 */
+    public static String nameOf(int slot) {
+        return names[slot];
+    }
+
+    /** 割り当て済みスロット数 */
+    public static int size() {
+        return SLOTS.size();
+    }
+
+    private static synchronized int register(String name) {
+        Integer existing = SLOTS.get(name);
+        if (existing != null) return existing;
+        int slot = size;
+        if (slot == names.length) {
+            names = Arrays.copyOf(names, slot * 2);
+        }
+        // 名前を先に書いてから公開する（lookup で見えたスロットの nameOf が null にならないように）
+        names[slot] = name;
+        size = slot + 1;
+        SLOTS.put(name, slot);
+        return slot;
+    }
+}
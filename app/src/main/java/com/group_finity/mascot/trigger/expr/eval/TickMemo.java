@@ -0,0 +1,65 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TickMemo
+ * 1回のディスパッチ（ティック）の間だけ有効な、部分式の評価結果の表。
+ *
+ * - キーはノード（NodeInterner で共有された部分木は全トリガーで同じインスタンスになる）
+ * - 値と一緒に、計算した時点の変数表のバージョンと、計算中に実際に読んだ変数のスロットを持つ
+ *   → 変数表が書き換わった後の記録は使わない（記録を捨てる処理はなく、次に計算した値で上書きする）
+ *   → メモから返すときは読んだ変数だけを依存として記録する（短絡で読まなかった変数は含めない）
+ * - ヒット/ミス数は呼び出し側がティックの終わりに CacheStatsTracker へまとめて報告する
+ * - newEvaluation() で作ったコンテキストから並行に使ってよい（変数表への書き込みは評価と並行しない前提。
+ *   SlotVariables と同じ）
+ */
+public final class TickMemo {
+
+    /** 未登録を表す番兵（評価結果の null と区別するため） */
+    public static final Object MISSING = new Object();
+
+    private record Memo(Object value, int[] slots, long version) {}
+
+    private final ConcurrentHashMap<Object, Memo> values = new ConcurrentHashMap<>();
+    private final SlotVariables table;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    TickMemo(SlotVariables table) {
+        this.table = table;
+    }
+
+    /**
+     * 現在の変数表で記録済みの値。なければ MISSING。
+     * ヒットした場合は、記録したときに読んだ変数を ctx の依存として記録する。
+     */
+    public Object get(Object node, EvaluationContext ctx) {
+        Memo memo = values.get(node);
+        if (memo == null || memo.version() != table.version()) {
+            misses.increment();
+            return MISSING;
+        }
+        hits.increment();
+        for (int slot : memo.slots()) ctx.markAccess(slot);
+        return memo.value();
+    }
+
+    /**
+     * 値を記録する。version は計算を始める前に version() で得た値
+     * （計算中に書き込みがあった場合は、次の get で使われない）。
+     */
+    public void put(Object node, Object value, int[] slots, long version) {
+        values.put(node, new Memo(value, slots, version));
+    }
+
+    /** 変数表の現在のバージョン */
+    public long version() {
+        return table.version();
+    }
+
+    public int hits() { return hits.intValue(); }
+    public int misses() { return misses.intValue(); }
+    public int size() { return values.size(); }
+}
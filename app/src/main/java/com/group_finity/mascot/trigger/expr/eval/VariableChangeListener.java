@@ -0,0 +1,22 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import java.util.Set;
+
+/**
+ * VariableChangeListener
+ * EvaluationContext.setValue / update / applyDelta で変数が書き込まれたことの通知を受け取る。
+ * 書き込んだスレッドで同期的に呼ばれるので、軽い処理（フラグを立てる程度）にとどめること。
+ */
+@FunctionalInterface
+public interface VariableChangeListener {
+
+    void variableChanged(String name);
+
+    /**
+     * update / applyDelta でまとめて書き込まれた変数（値が変わったものだけ）。1回の反映につき1回呼ばれる。
+     * 既定では1つずつ variableChanged を呼ぶ。
+     */
+    default void variablesChanged(Set<String> names) {
+        for (String name : names) variableChanged(name);
+    }
+}
@@ -0,0 +1,80 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * VersionStamp
+ * 評価時点の変数表のバージョン（全体・依存スロットごと）の記録。
+ * 値をコピーして比較する代わりに、long の比較だけで「その後に書き込みがあったか」を判定する。
+ *
+ * - 別の変数表（コピーされたコンテキスト等）に対しては判定できない（isFrom で確認する）
+ * - 依存変数の値は持たない。必要になったら values() で記録元の表から読み直す
+ *   （記録後に書き込みがなければ評価時と同じ値。記録元の表は弱参照で持つ）
+ * - 依存スロットの並びは EvaluationContext.stampDependencies() が決める
+ */
+public final class VersionStamp {
+
+    private final long sourceId;
+    private final WeakReference<SlotVariables> source;
+    private final long globalVersion;
+    private final int[] slots;
+    private final long[] versions;
+
+    VersionStamp(SlotVariables source, long globalVersion, int[] slots, long[] versions) {
+        this.sourceId = source.id();
+        this.source = new WeakReference<>(source);
+        this.globalVersion = globalVersion;
+        this.slots = slots;
+        this.versions = versions;
+    }
+
+    /** 同じ変数表で取った記録か */
+    public boolean isFrom(Map<String, Object> variables) {
+        return variables instanceof SlotVariables sv && sv.id() == sourceId;
+    }
+
+    /**
+     * 記録後に書き込みがなければ true。
+     * wholeTable=true なら変数表全体（どの変数の書き込みでも false）、false なら依存スロットだけを見る。
+     */
+    public boolean isCurrent(SlotVariables variables, boolean wholeTable) {
+        if (variables.id() != sourceId) return false;
+        if (wholeTable) return variables.version() == globalVersion;
+        for (int i = 0; i < slots.length; i++) {
+            if (variables.versionOf(slots[i]) != versions[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 評価時の依存変数の値（スロット順）。記録元の表がもう無いか、依存変数に書き込みがあった場合は null。
+     * 記録元の表を別スレッドが書き換えていても、読んだ後にバージョンを確かめ直すので古い値と新しい値は混ざらない。
+     */
+    public Map<String, Object> values() {
+        SlotVariables table = source.get();
+        if (table == null || !isCurrent(table, false)) return null;
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int slot : slots) values.put(SymbolTable.nameOf(slot), table.getSlot(slot));
+        return isCurrent(table, false) ? values : null;
+    }
+
+    /** 依存変数の名前（スロット順） */
+    public Set<String> names() {
+        Set<String> names = new LinkedHashSet<>();
+        for (int slot : slots) names.add(SymbolTable.nameOf(slot));
+        return Collections.unmodifiableSet(names);
+    }
+
+    public long getGlobalVersion() { return globalVersion; }
+
+    /** 記録を取った変数表の識別番号（SlotVariables.id()） */
+    public long getSourceId() { return sourceId; }
+
+    /** 依存スロット数 */
+    public int size() { return slots.length; }
+}
@@ -0,0 +1,133 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.type.CoercionPlan;
+import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+
+/**
+ * ArithmeticNode
+ * 算術演算ノード（+, -, *, /, %）。
+ * 両辺が静的に数値なら double のまま計算し、箱詰めは Object を返す境界（evaluate）でのみ行う。
+ */
+public final class ArithmeticNode extends BinaryExpressionNode {
+
+    private final Operator operator;
+    private final boolean numericOperands;
+
+    public ArithmeticNode(ExpressionNode left, Operator operator, ExpressionNode right) {
+        this(left, operator, right, null);
+    }
+
+    public ArithmeticNode(ExpressionNode left, Operator operator, ExpressionNode right, CoercionPlan plan) {
+        super(left, operator.symbol(), right, plan);
+        this.operator = operator;
+        this.numericOperands = hasNumericOperands();
+    }
+
+    @Override
+    protected Object compute(EvaluationContext ctx, TypeResolver resolver, TypeCoercion coercion) {
+        if (numericOperands) {
+            return operator.box(operator.applyDouble(left.evalDouble(ctx), right.evalDouble(ctx)));
+        }
+        Object l = left.evaluate(ctx, resolver, coercion);
+        Object r = right.evaluate(ctx, resolver, coercion);
+        return operator.apply(l, r);
+    }
+
+    /** + 以外は数値を返すか例外。+ は両辺が数値の場合のみ数値（それ以外は文字列連結の可能性がある） */
+    @Override
+    public TypeKind staticType() {
+        return (operator != Operator.ADD || numericOperands) ? TypeKind.NUMBER : TypeKind.OBJECT;
+    }
+
+    @Override
+    public double evalDouble(EvaluationContext ctx) {
+        if (numericOperands) {
+            return operator.applyDouble(left.evalDouble(ctx), right.evalDouble(ctx));
+        }
+        // 静的に数値の辺は evalDouble、それ以外は値を見て数値かどうか判定する（左→右の評価順は Object 経路と同じ）
+        boolean numeric = true;
+        double ld;
+        if (left.staticType() == TypeKind.NUMBER) {
+            ld = left.evalDouble(ctx);
+        } else {
+            Object l = left.evaluate(ctx);
+            numeric = Operators.isNumericType(l);
+            ld = Operators.toDouble(l);
+        }
+        double rd;
+        if (right.staticType() == TypeKind.NUMBER) {
+            rd = right.evalDouble(ctx);
+        } else {
+            Object r = right.evaluate(ctx);
+            numeric &= Operators.isNumericType(r);
+            rd = Operators.toDouble(r);
+        }
+        if (numeric) return operator.applyDouble(ld, rd);
+        // 数値にならない組み合わせは Object 経路と同じ例外を出す（ノードは副作用を持たないので再評価してよい）
+        return ((Number) operator.apply(left.evaluate(ctx), right.evaluate(ctx))).doubleValue();
+    }
+
+    public Operator getArithmeticOperator() { return operator; }
+
+    @Override
+    public ArithmeticNode withOperands(ExpressionNode left, ExpressionNode right) {
+        return new ArithmeticNode(left, operator, right, plan);
+    }
+
+    /**
+     * 算術演算子。各定数が演算の実装を持つ。
+     * applyDouble は apply の結果を doubleValue() したものと同じ値を返す（+, -, * は normalizeNumber 相当の正規化を含む）。
+     */
+    public enum Operator {
+        ADD("+", true) {
+            @Override public Object apply(Object a, Object b) { return Operators.add(a, b); }
+            @Override public double applyDouble(double a, double b) { return Operators.normalizeDouble(a + b); }
+        },
+        SUB("-", true) {
+            @Override public Object apply(Object a, Object b) { return Operators.sub(a, b); }
+            @Override public double applyDouble(double a, double b) { return Operators.normalizeDouble(a - b); }
+        },
+        MUL("*", true) {
+            @Override public Object apply(Object a, Object b) { return Operators.mul(a, b); }
+            @Override public double applyDouble(double a, double b) { return Operators.normalizeDouble(a * b); }
+        },
+        DIV("/", false) {
+            @Override public Object apply(Object a, Object b) { return Operators.div(a, b); }
+            @Override public double applyDouble(double a, double b) { return a / b; }
+        },
+        MOD("%", false) {
+            @Override public Object apply(Object a, Object b) { return Operators.mod(a, b); }
+            @Override public double applyDouble(double a, double b) { return a % b; }
+        };
+
+        private final String symbol;
+        private final boolean normalizes;
+
+        Operator(String symbol, boolean normalizes) {
+            this.symbol = symbol;
+            this.normalizes = normalizes;
+        }
+
+        public String symbol() { return symbol; }
+
+        public abstract Object apply(Object a, Object b);
+
+        public abstract double applyDouble(double a, double b);
+
+        /** applyDouble の結果を apply と同じ型（Long または Double）で返す */
+        public Object box(double value) {
+            return normalizes ? Operators.normalizeNumber(value) : Double.valueOf(value);
+        }
+
+        /** 記号に対応する演算子。該当しなければ null。 */
+        public static Operator fromSymbol(String symbol) {
+            for (Operator op : values()) {
+                if (op.symbol.equals(symbol)) return op;
+            }
+            return null;
+        }
+    }
+}
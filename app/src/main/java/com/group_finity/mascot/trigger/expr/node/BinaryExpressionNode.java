@@ -1,154 +1,201 @@
 package com.group_finity.mascot.trigger.expr.node;
 
-import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
-
-public final class BinaryExpressionNode implements ExpressionNode {
+import java.util.Objects;
 
-    private final ExpressionNode left;
-    private final ExpressionNode right;
-    private final String operator;
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.TickMemo;
+import com.group_finity.mascot.trigger.expr.type.CoercionPlan;
+import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+
+/**
+ * BinaryExpressionNode
+ * 二項演算ノードの基底クラス。
+ * 演算子はパース時に解決され、演算子ファミリごとの具象ノードが演算の実装を final フィールドで保持する。
+ * - ArithmeticNode     : +, -, *, /, %
+ * - ComparisonNode     : <, <=, >, >=, ==, !=
+ * - StrictEqualityNode : ===, !==
+ * - LogicalNode        : &&, ||
+ *
+ * 型推論パス（TypeInference）で CoercionPlan が決まったノードは、評価経路をその計画に従って選ぶ。
+ * 計画がないノードは子ノードの staticType() から判断する。
+ *
+ * equals / hashCode は構造的（同じ具象クラス・演算子・計画・子ノード）。NodeInterner が同じ部分木を共有するために使う。
+ * 64bit の構造ハッシュは生成時に子ノードのハッシュから計算し、equals もまずハッシュを比べる。
+ *
+ * ティック中（EvaluationContext.tickMemo() が非 null）は evaluate / evalBoolean の結果をノードの同一性でメモし、
+ * 同じティック内の2回目以降は再計算しない。メモには計算中に実際に読んだ変数も残し、メモから返す場合は
+ * それを依存として記録する（短絡で読まなかった変数は依存にしない）。
+ * 具象ノードは compute / computeBoolean に演算を実装する。
+ */
+public abstract class BinaryExpressionNode implements ExpressionNode {
+
+    protected final ExpressionNode left;
+    protected final ExpressionNode right;
+    protected final CoercionPlan plan;
+    private final String symbol;
+    private final long structuralHash;
+
+    protected BinaryExpressionNode(ExpressionNode left, String symbol, ExpressionNode right) {
+        this(left, symbol, right, null);
+    }
 
-    public BinaryExpressionNode(ExpressionNode left, String operator, ExpressionNode right) {
+    protected BinaryExpressionNode(ExpressionNode left, String symbol, ExpressionNode right, CoercionPlan plan) {
         this.left = left;
         this.right = right;
-        this.operator = operator;
+        this.plan = plan;
+        this.symbol = symbol;
+        this.structuralHash = StructuralHash.combine(
+            StructuralHash.combine(StructuralHash.of(getClass().getName()), StructuralHash.of(symbol), planHash(plan)),
+            left.structuralHash(),
+            right.structuralHash());
     }
 
-    @Override
-    public Object evaluate(EvaluationContext ctx) {
-        Object l = left.evaluate(ctx);
-        Object r = right.evaluate(ctx);
+    private static long planHash(CoercionPlan plan) {
+        if (plan == null) return 0L;
+        return StructuralHash.combine(StructuralHash.of(plan.leftTarget()), StructuralHash.of(plan.rightTarget()),
+            StructuralHash.of(plan.resultType()));
+    }
+
+    /**
+     * 演算子文字列から対応する具象ノードを生成する。
+     *
+     * @throws IllegalArgumentException 未知の演算子の場合
+     */
+    public static BinaryExpressionNode of(ExpressionNode left, String operator, ExpressionNode right) {
+        ArithmeticNode.Operator arithmetic = ArithmeticNode.Operator.fromSymbol(operator);
+        if (arithmetic != null) return new ArithmeticNode(left, arithmetic, right);
+
+        ComparisonNode.Operator comparison = ComparisonNode.Operator.fromSymbol(operator);
+        if (comparison != null) return new ComparisonNode(left, comparison, right);
+
+        LogicalNode.Operator logical = LogicalNode.Operator.fromSymbol(operator);
+        if (logical != null) return new LogicalNode(left, logical, right);
 
         return switch (operator) {
-            case "+" -> add(l, r);
-            case "-" -> sub(l, r);
-            case "*" -> mul(l, r);
-            case "/" -> div(l, r);
-            case "%" -> mod(l, r);
-            case "===" -> strictEquals(l, r);
-            case "!==" -> !strictEquals(l, r);
-            case "==" -> eq(l, r);
-            case "!=" -> !eq(l, r);
-            case "<" -> cmp(l, r) < 0;
-            case "<=" -> cmp(l, r) <= 0;
-            case ">" -> cmp(l, r) > 0;
-            case ">=" -> cmp(l, r) >= 0;
-            case "&&" -> toBool(l) && toBool(r);
-            case "||" -> toBool(l) || toBool(r);
-            default -> throw new RuntimeException("Unknown operator: " + operator);
+            case "===" -> new StrictEqualityNode(left, false, right);
+            case "!==" -> new StrictEqualityNode(left, true, right);
+            default -> throw new IllegalArgumentException("Unknown operator: " + operator);
         };
     }
 
-    private static boolean toBool(Object v) {
-        if (v instanceof Boolean b) return b;
-        if (v instanceof Number n) return n.doubleValue() != 0.0;
-        return v != null;
+    /**
+     * 計画付きで生成する（計画を持たない StrictEqualityNode では plan を無視する）。
+     *
+     * @throws IllegalArgumentException 未知の演算子の場合
+     */
+    public static BinaryExpressionNode of(ExpressionNode left, String operator, ExpressionNode right, CoercionPlan plan) {
+        BinaryExpressionNode node = of(left, operator, right);
+        if (plan == null) return node;
+        if (node instanceof ArithmeticNode n) return new ArithmeticNode(left, n.getArithmeticOperator(), right, plan);
+        if (node instanceof ComparisonNode n) return new ComparisonNode(left, n.getComparisonOperator(), right, plan);
+        if (node instanceof LogicalNode n) return new LogicalNode(left, n.getLogicalOperator(), right, plan);
+        return node;
     }
 
-    private static Object add(Object a, Object b) {
-        // 両方が数値、または数値変換可能な文字列の場合は数値加算
-        if (isNumericType(a) && isNumericType(b)) {
-            double result = toDouble(a) + toDouble(b);
-            return normalizeNumber(result);
-        }
-        // それ以外は文字列連結
-        return String.valueOf(a) + String.valueOf(b);
+    @Override
+    public Object evaluate(EvaluationContext ctx) {
+        return evaluate(ctx, null, null);
     }
 
-    private static Object sub(Object a, Object b) {
-        if (isNumericType(a) && isNumericType(b)) {
-            double result = toDouble(a) - toDouble(b);
-            return normalizeNumber(result);
+    @Override
+    public final Object evaluate(EvaluationContext ctx, TypeResolver resolver, TypeCoercion coercion) {
+        TickMemo memo = (ctx != null) ? ctx.tickMemo() : null;
+        if (memo == null) return compute(ctx, resolver, coercion);
+        Object value = memo.get(this, ctx);
+        if (value != TickMemo.MISSING) return value;
+        long version = memo.version();
+        int[] slots;
+        ctx.beginCapture();
+        try {
+            value = compute(ctx, resolver, coercion);
+        } finally {
+            slots = ctx.endCapture();
         }
-        throw new RuntimeException("Unsupported '-' between " + a + " and " + b);
+        memo.put(this, value, slots, version);
+        return value;
     }
 
-    private static Object mul(Object a, Object b) {
-        if (isNumericType(a) && isNumericType(b)) {
-            double result = toDouble(a) * toDouble(b);
-            return normalizeNumber(result);
+    @Override
+    public final boolean evalBoolean(EvaluationContext ctx) {
+        // 真偽値以外を返すノードは evaluate の結果（数値など）をメモする
+        if (staticType() != TypeKind.BOOLEAN) return Operators.toBool(evaluate(ctx, null, null));
+        TickMemo memo = (ctx != null) ? ctx.tickMemo() : null;
+        if (memo == null) return computeBoolean(ctx);
+        Object value = memo.get(this, ctx);
+        if (value != TickMemo.MISSING) return (Boolean) value;
+        long version = memo.version();
+        boolean result;
+        int[] slots;
+        ctx.beginCapture();
+        try {
+            result = computeBoolean(ctx);
+        } finally {
+            slots = ctx.endCapture();
         }
-        throw new RuntimeException("Unsupported '*' between " + a + " and " + b);
+        memo.put(this, result, slots, version);
+        return result;
     }
 
-    private static Object div(Object a, Object b) {
-        if (isNumericType(a) && isNumericType(b))
-            return toDouble(a) / toDouble(b);
-        throw new RuntimeException("Unsupported '/' between " + a + " and " + b);
-    }
+    /** 子ノードにも resolver/coercion を渡して評価する（具象ノードで実装） */
+    protected abstract Object compute(EvaluationContext ctx, TypeResolver resolver, TypeCoercion coercion);
 
-    private static Object mod(Object a, Object b) {
-        if (isNumericType(a) && isNumericType(b))
-            return toDouble(a) % toDouble(b);
-        throw new RuntimeException("Unsupported '%' between " + a + " and " + b);
+    /** staticType() が BOOLEAN のノードの箱詰めしない評価（既定は compute の結果を真偽値にする） */
+    protected boolean computeBoolean(EvaluationContext ctx) {
+        return Operators.toBool(compute(ctx, null, null));
     }
 
-    private static boolean strictEquals(Object a, Object b) {
-        if (a == null || b == null) return a == b;
-        // 数値型は正規化して比較（Longに統一可能なら統一）
-        if (a instanceof Number && b instanceof Number) {
-            Object na = normalizeNumber(((Number) a).doubleValue());
-            Object nb = normalizeNumber(((Number) b).doubleValue());
-            return na.getClass() == nb.getClass() && na.equals(nb);
-        }
-        if (a.getClass() != b.getClass()) return false;
-        return a.equals(b);
-    }
+    public ExpressionNode getLeft() { return left; }
+    public ExpressionNode getRight() { return right; }
+
+    /** 事前に決めた型変換計画。未解決なら null */
+    public CoercionPlan getCoercionPlan() { return plan; }
 
-    private static boolean eq(Object a, Object b) {
-        if (a instanceof Number && b instanceof Number)
-            return Double.compare(toDouble(a), toDouble(b)) == 0;
-        if (a instanceof Boolean || b instanceof Boolean)
-            return toBool(a) == toBool(b);
-        return (a == null) ? b == null : a.toString().equals(b.toString());
+    /**
+     * 両辺を double のまま計算してよいか（計画があれば計画、なければ子ノードの静的型で判断）。
+     * ExpressionCompiler もこの判定でインタプリタと同じ型付き経路を選ぶ。
+     */
+    public final boolean hasNumericOperands() {
+        if (plan != null) return plan.leftTarget() == Double.class && plan.rightTarget() == Double.class;
+        return left.staticType() == TypeKind.NUMBER && right.staticType() == TypeKind.NUMBER;
     }
 
-    private static int cmp(Object a, Object b) {
-        double da = (a instanceof Number n1) ? n1.doubleValue() : 0;
-        double db = (b instanceof Number n2) ? n2.doubleValue() : 0;
-        return Double.compare(da, db);
+    /** 演算子の記号（"+", "===" など） */
+    public String getOperator() { return symbol; }
+
+    /** 演算子と計画はそのままに、子ノードだけを差し替えたノードを返す */
+    public abstract BinaryExpressionNode withOperands(ExpressionNode left, ExpressionNode right);
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || o.getClass() != getClass()) return false;
+        BinaryExpressionNode other = (BinaryExpressionNode) o;
+        return structuralHash == other.structuralHash
+            && symbol.equals(other.symbol)
+            && Objects.equals(plan, other.plan)
+            && left.equals(other.left)
+            && right.equals(other.right);
     }
 
-    // ========== ヘルパーメソッド ==========
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash);
+    }
 
-    /**
-     * 数値型または数値変換可能な文字列かどうかを判定
-     */
-    private static boolean isNumericType(Object v) {
-        if (v instanceof Number) return true;
-        if (v instanceof String s) {
-            try {
-                Double.parseDouble(s.trim());
-                return true;
-            } catch (NumberFormatException e) {
-                return false;
-            }
-        }
-        return false;
+    @Override
+    public long structuralHash() {
+        return structuralHash;
     }
 
-    /**
-     * オブジェクトをdoubleに変換
-     */
-    private static double toDouble(Object v) {
-        if (v instanceof Number n) return n.doubleValue();
-        if (v instanceof String s) {
-            try {
-                return Double.parseDouble(s.trim());
-            } catch (NumberFormatException e) {
-                return 0.0;
-            }
-        }
-        return 0.0;
+    @Override
+    public String toCanonicalString() {
+        return "(" + left.toCanonicalString() + " " + symbol + " " + right.toCanonicalString() + ")";
     }
 
-    /**
-     * double値を整数化可能ならLong、そうでなければDoubleで返す
-     */
-    private static Object normalizeNumber(double val) {
-        if (val % 1 == 0 && val >= Long.MIN_VALUE && val <= Long.MAX_VALUE) {
-            return Long.valueOf((long) val);
-        }
-        return val;
+    @Override
+    public String toString() {
+        return "(" + left + " " + symbol + " " + right + ")";
     }
-}
\ No newline at end of file
+}
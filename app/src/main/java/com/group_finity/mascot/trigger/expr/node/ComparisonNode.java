@@ -0,0 +1,134 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.type.CoercionPlan;
+import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+
+/**
+ * ComparisonNode
+ * 比較演算ノード（<, <=, >, >=）と緩い等価演算ノード（==, !=）。
+ * 順序比較は数値以外を 0 とみなすので、静的に数値の辺は evalDouble、それ以外は Number かどうかだけを見て箱詰めせずに比較する。
+ * 等価比較は両辺が静的に数値の場合のみ double で比較する。
+ */
+public final class ComparisonNode extends BinaryExpressionNode {
+
+    private final Operator operator;
+    private final boolean numericOperands;
+
+    public ComparisonNode(ExpressionNode left, Operator operator, ExpressionNode right) {
+        this(left, operator, right, null);
+    }
+
+    public ComparisonNode(ExpressionNode left, Operator operator, ExpressionNode right, CoercionPlan plan) {
+        super(left, operator.symbol(), right, plan);
+        this.operator = operator;
+        this.numericOperands = hasNumericOperands();
+    }
+
+    @Override
+    protected Object compute(EvaluationContext ctx, TypeResolver resolver, TypeCoercion coercion) {
+        return test(ctx, resolver, coercion);
+    }
+
+    @Override
+    public TypeKind staticType() {
+        return TypeKind.BOOLEAN;
+    }
+
+    @Override
+    protected boolean computeBoolean(EvaluationContext ctx) {
+        return test(ctx, null, null);
+    }
+
+    private boolean test(EvaluationContext ctx, TypeResolver resolver, TypeCoercion coercion) {
+        if (numericOperands || operator.isOrdering()) {
+            double l = orderingOperand(left, ctx, resolver, coercion);
+            double r = orderingOperand(right, ctx, resolver, coercion);
+            return operator.testDouble(l, r);
+        }
+        Object l = left.evaluate(ctx, resolver, coercion);
+        Object r = right.evaluate(ctx, resolver, coercion);
+        return operator.test(l, r);
+    }
+
+    /** Operators.cmp と同じく Number 以外は 0 として扱う */
+    private static double orderingOperand(ExpressionNode node, EvaluationContext ctx,
+                                          TypeResolver resolver, TypeCoercion coercion) {
+        if (node.staticType() == TypeKind.NUMBER) return node.evalDouble(ctx);
+        return (node.evaluate(ctx, resolver, coercion) instanceof Number n) ? n.doubleValue() : 0;
+    }
+
+    public Operator getComparisonOperator() { return operator; }
+
+    @Override
+    public ComparisonNode withOperands(ExpressionNode left, ExpressionNode right) {
+        return new ComparisonNode(left, operator, right, plan);
+    }
+
+    /**
+     * 比較演算子。各定数が判定の実装を持つ。
+     * testDouble は数値同士の test と同じ結果を返す（Double.compare の順序なので NaN も同じ扱い）。
+     */
+    public enum Operator {
+        LT("<") {
+            @Override public boolean test(Object a, Object b) { return Operators.cmp(a, b) < 0; }
+            @Override public boolean testDouble(double a, double b) { return Double.compare(a, b) < 0; }
+        },
+        LE("<=") {
+            @Override public boolean test(Object a, Object b) { return Operators.cmp(a, b) <= 0; }
+            @Override public boolean testDouble(double a, double b) { return Double.compare(a, b) <= 0; }
+        },
+        GT(">") {
+            @Override public boolean test(Object a, Object b) { return Operators.cmp(a, b) > 0; }
+            @Override public boolean testDouble(double a, double b) { return Double.compare(a, b) > 0; }
+        },
+        GE(">=") {
+            @Override public boolean test(Object a, Object b) { return Operators.cmp(a, b) >= 0; }
+            @Override public boolean testDouble(double a, double b) { return Double.compare(a, b) >= 0; }
+        },
+        EQ("==") {
+            @Override public boolean test(Object a, Object b) { return Operators.eq(a, b); }
+            @Override public boolean testDouble(double a, double b) { return Double.compare(a, b) == 0; }
+        },
+        NE("!=") {
+            @Override public boolean test(Object a, Object b) { return !Operators.eq(a, b); }
+            @Override public boolean testDouble(double a, double b) { return Double.compare(a, b) != 0; }
+        };
+
+        private final String symbol;
+
+        Operator(String symbol) { this.symbol = symbol; }
+
+        public String symbol() { return symbol; }
+
+        public abstract boolean test(Object a, Object b);
+
+        public abstract boolean testDouble(double a, double b);
+
+        /** 順序比較（<, <=, >, >=）か */
+        public boolean isOrdering() {
+            return this != EQ && this != NE;
+        }
+
+        /** 左右を入れ替えたときに同じ結果になる演算子（a < b ⇔ b > a） */
+        public Operator mirrored() {
+            return switch (this) {
+                case LT -> GT;
+                case LE -> GE;
+                case GT -> LT;
+                case GE -> LE;
+                case EQ, NE -> this;
+            };
+        }
+
+        /** 記号に対応する演算子。該当しなければ null。 */
+        public static Operator fromSymbol(String symbol) {
+            for (Operator op : values()) {
+                if (op.symbol.equals(symbol)) return op;
+            }
+            return null;
+        }
+    }
+}
@@ -3,12 +3,14 @@ package com.group_finity.mascot.trigger.expr.node;
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
 import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
 import com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
 import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
 import com.group_finity.mascot.trigger.expr.type.TypeResolver;
 
 /**
  * ExpressionNode — すべてのASTノードの共通インタフェース。
  * TypeResolver / TypeCoercion に対応するevaluate拡張を追加。
+ * 静的な型が数値・真偽値と分かっているノードは evalDouble / evalBoolean で箱詰めせずに評価できる。
  */
 public interface ExpressionNode {
 
@@ -22,10 +24,47 @@ public interface ExpressionNode {
         return evaluate(context);
     }
 
+    /**
+     * 評価結果の静的な型。NUMBER なら evaluate は必ず Number を返し（または例外）、BOOLEAN なら必ず Boolean を返す。
+     * 分からない場合は OBJECT。
+     */
+    default TypeKind staticType() {
+        return TypeKind.OBJECT;
+    }
+
+    /**
+     * evaluate(context) の結果を double で返す（staticType() が NUMBER のノードに対してのみ呼ぶこと）。
+     * 数値だけで構成される部分木は途中の Long/Double を生成しない。
+     */
+    default double evalDouble(EvaluationContext context) {
+        return ((Number) evaluate(context)).doubleValue();
+    }
+
+    /**
+     * Operators.toBool(evaluate(context)) と同じ値を返す。
+     */
+    default boolean evalBoolean(EvaluationContext context) {
+        return Operators.toBool(evaluate(context));
+    }
+
+    /**
+     * 正規形の文字列表現（キャッシュキーの表示・診断用）。構造的に等しいノードは同じ文字列になる。
+     */
+    default String toCanonicalString() {
+        return toString();
+    }
+
+    /**
+     * 64bit の構造ハッシュ。構造的に等しいノードは同じ値を返す（組み込みのノードは生成時に計算済み）。
+     */
+    default long structuralHash() {
+        return StructuralHash.of(toCanonicalString());
+    }
+
     /**
      * デフォルトのResolver/Coercionを用いた簡易評価。
      */
     default Object evaluateWithDefaults(EvaluationContext context) {
-        return evaluate(context, new DefaultTypeResolver(), new DefaultTypeCoercion());
+        return evaluate(context, DefaultTypeResolver.INSTANCE, DefaultTypeCoercion.INSTANCE);
     }
 }
@@ -1,17 +1,34 @@
 package com.group_finity.mascot.trigger.expr.node;
 
+import java.util.Objects;
+
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
 
 /**
  * LiteralNode
  * リテラル値（数値・文字列・真偽値）を表すASTノード。
+ * 値が equals なら同じノードとみなす（1 と 1.0、0.0 と -0.0 は別）。
  */
 public class LiteralNode implements ExpressionNode {
 
     private final Object value;
+    private final TypeKind type;
+    private final double doubleValue;
+    private final boolean booleanValue;
+    private final long structuralHash;
 
     public LiteralNode(Object value) {
         this.value = value;
+        if (value instanceof Number) this.type = TypeKind.NUMBER;
+        else if (value instanceof Boolean) this.type = TypeKind.BOOLEAN;
+        else if (value instanceof String) this.type = TypeKind.STRING;
+        else if (value == null) this.type = TypeKind.NULL;
+        else this.type = TypeKind.OBJECT;
+        this.doubleValue = (value instanceof Number n) ? n.doubleValue() : 0.0;
+        this.booleanValue = Operators.toBool(value);
+        this.structuralHash = StructuralHash.combine(StructuralHash.of("literal"),
+            StructuralHash.of(value != null ? value.getClass() : null), StructuralHash.of(String.valueOf(value)));
     }
 
     @Override
@@ -19,12 +36,49 @@ public class LiteralNode implements ExpressionNode {
         return value;
     }
 
+    @Override
+    public TypeKind staticType() {
+        return type;
+    }
+
+    @Override
+    public double evalDouble(EvaluationContext context) {
+        return doubleValue;
+    }
+
+    @Override
+    public boolean evalBoolean(EvaluationContext context) {
+        return booleanValue;
+    }
+
     @Override
     public String toString() {
+        // 変数名と区別できるよう文字列はクォートする
+        if (value instanceof String s) {
+            return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
         return String.valueOf(value);
     }
 
     public Object getValue() {
         return value;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || o.getClass() != getClass()) return false;
+        LiteralNode other = (LiteralNode) o;
+        return structuralHash == other.structuralHash && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash);
+    }
+
+    @Override
+    public long structuralHash() {
+        return structuralHash;
+    }
 }
@@ -0,0 +1,89 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.type.CoercionPlan;
+import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+
+/**
+ * LogicalNode
+ * 論理演算ノード（&&, ||）。左辺で結果が決まる場合は右辺を評価しない。
+ */
+public final class LogicalNode extends BinaryExpressionNode {
+
+    private final Operator operator;
+
+    public LogicalNode(ExpressionNode left, Operator operator, ExpressionNode right) {
+        this(left, operator, right, null);
+    }
+
+    public LogicalNode(ExpressionNode left, Operator operator, ExpressionNode right, CoercionPlan plan) {
+        super(left, operator.symbol(), right, plan);
+        this.operator = operator;
+    }
+
+    @Override
+    protected Object compute(EvaluationContext ctx, TypeResolver resolver, TypeCoercion coercion) {
+        boolean l = operand(left, ctx, resolver, coercion);
+        // 短絡評価：右辺は結果が決まらない場合のみ評価する（読まなかった変数は依存に記録されない）
+        if (l == operator.shortCircuitValue()) return l;
+        return operand(right, ctx, resolver, coercion);
+    }
+
+    @Override
+    public TypeKind staticType() {
+        return TypeKind.BOOLEAN;
+    }
+
+    @Override
+    protected boolean computeBoolean(EvaluationContext ctx) {
+        boolean l = operand(left, ctx, null, null);
+        if (l == operator.shortCircuitValue()) return l;
+        return operand(right, ctx, null, null);
+    }
+
+    /** 真偽値・数値の辺は箱詰めせずに Operators.toBool と同じ判定をする */
+    private static boolean operand(ExpressionNode node, EvaluationContext ctx,
+                                   TypeResolver resolver, TypeCoercion coercion) {
+        return switch (node.staticType()) {
+            case BOOLEAN -> node.evalBoolean(ctx);
+            case NUMBER -> node.evalDouble(ctx) != 0.0;
+            default -> Operators.toBool(node.evaluate(ctx, resolver, coercion));
+        };
+    }
+
+    public Operator getLogicalOperator() { return operator; }
+
+    @Override
+    public LogicalNode withOperands(ExpressionNode left, ExpressionNode right) {
+        return new LogicalNode(left, operator, right, plan);
+    }
+
+    /** 論理演算子。各定数が短絡する左辺値を持つ。 */
+    public enum Operator {
+        AND("&&", false),
+        OR("||", true);
+
+        private final String symbol;
+        private final boolean shortCircuitValue;
+
+        Operator(String symbol, boolean shortCircuitValue) {
+            this.symbol = symbol;
+            this.shortCircuitValue = shortCircuitValue;
+        }
+
+        public String symbol() { return symbol; }
+
+        /** 左辺がこの値なら右辺を評価せずに結果が確定する（&& は false、|| は true） */
+        public boolean shortCircuitValue() { return shortCircuitValue; }
+
+        /** 記号に対応する演算子。該当しなければ null。 */
+        public static Operator fromSymbol(String symbol) {
+            for (Operator op : values()) {
+                if (op.symbol.equals(symbol)) return op;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.group_finity.mascot.trigger.expr.type.CoercionPlan;
+
+/**
+ * NodeCodec
+ * AST と値をコンパクトなバイナリ形式で読み書きする（ウォームスタート用のスナップショットファイルで使う）。
+ *
+ * - 書き込みは DataOutput、読み込みは ByteBuffer（メモリマップしたファイルをそのまま読める）
+ * - 数値はビッグエンディアン、文字列は「バイト長(int) + UTF-8」
+ * - 値として扱えるのは null / Boolean / Integer / Long / Double / String のみ。それ以外は IllegalArgumentException
+ * - 読み込んだ木は NodeInterner を通していない（呼び出し側で intern する）
+ * - 壊れた入力は IllegalArgumentException（読み込み側は式単位で捨てる）
+ */
+public final class NodeCodec {
+
+    private static final byte LITERAL = 0;
+    private static final byte VARIABLE = 1;
+    private static final byte UNARY = 2;
+    private static final byte BINARY = 3;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte LONG = 3;
+    private static final byte INT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte STRING = 6;
+
+    private NodeCodec() {}
+
+    // ===== AST =====
+
+    public static void write(ExpressionNode node, DataOutput out) throws IOException {
+        if (node instanceof LiteralNode l) {
+            out.writeByte(LITERAL);
+            writeValue(l.getValue(), out);
+        } else if (node instanceof VariableNode v) {
+            out.writeByte(VARIABLE);
+            writeString(v.getName(), out);
+            writeClass(v.getDeclaredType(), out);
+        } else if (node instanceof UnaryExpressionNode u) {
+            out.writeByte(UNARY);
+            writeString(u.getOperator(), out);
+            write(u.getOperand(), out);
+        } else if (node instanceof BinaryExpressionNode b) {
+            out.writeByte(BINARY);
+            writeString(b.getOperator(), out);
+            CoercionPlan plan = b.getCoercionPlan();
+            out.writeBoolean(plan != null);
+            if (plan != null) {
+                writeClass(plan.leftTarget(), out);
+                writeClass(plan.rightTarget(), out);
+                writeClass(plan.resultType(), out);
+            }
+            write(b.getLeft(), out);
+            write(b.getRight(), out);
+        } else {
+            throw new IllegalArgumentException("Unsupported node: " + (node == null ? null : node.getClass().getName()));
+        }
+    }
+
+    public static ExpressionNode read(ByteBuffer in) {
+        try {
+            byte tag = in.get();
+            switch (tag) {
+                case LITERAL:
+                    return new LiteralNode(readValue(in));
+                case VARIABLE: {
+                    String name = readString(in);
+                    return new VariableNode(name, readClass(in));
+                }
+                case UNARY: {
+                    String op = readString(in);
+                    return new UnaryExpressionNode(op, read(in));
+                }
+                case BINARY: {
+                    String op = readString(in);
+                    CoercionPlan plan = in.get() != 0 ? new CoercionPlan(readClass(in), readClass(in), readClass(in)) : null;
+                    ExpressionNode left = read(in);
+                    ExpressionNode right = read(in);
+                    return BinaryExpressionNode.of(left, op, right, plan);
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown node tag: " + tag);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated node data", e);
+        }
+    }
+
+    // ===== 値 =====
+
+    public static void writeValue(Object value, DataOutput out) throws IOException {
+        if (value == null) out.writeByte(NULL);
+        else if (value instanceof Boolean b) out.writeByte(b ? TRUE : FALSE);
+        else if (value instanceof Long l) { out.writeByte(LONG); out.writeLong(l); }
+        else if (value instanceof Integer i) { out.writeByte(INT); out.writeInt(i); }
+        else if (value instanceof Double d) { out.writeByte(DOUBLE); out.writeDouble(d); }
+        else if (value instanceof String s) { out.writeByte(STRING); writeString(s, out); }
+        else throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+    }
+
+    public static Object readValue(ByteBuffer in) {
+        byte tag = in.get();
+        return switch (tag) {
+            case NULL -> null;
+            case TRUE -> Boolean.TRUE;
+            case FALSE -> Boolean.FALSE;
+            case LONG -> in.getLong();
+            case INT -> in.getInt();
+            case DOUBLE -> in.getDouble();
+            case STRING -> readString(in);
+            default -> throw new IllegalArgumentException("Unknown value tag: " + tag);
+        };
+    }
+
+    /** writeValue で書ける値か */
+    public static boolean isEncodable(Object value) {
+        return value == null || value instanceof Boolean || value instanceof Long || value instanceof Integer
+            || value instanceof Double || value instanceof String;
+    }
+
+    // ===== 文字列・型 =====
+
+    public static void writeString(String s, DataOutput out) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) throw new IllegalArgumentException("Bad string length: " + length);
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeClass(Class<?> type, DataOutput out) throws IOException {
+        writeString(type != null ? type.getName() : "", out);
+    }
+
+    private static Class<?> readClass(ByteBuffer in) {
+        String name = readString(in);
+        if (name.isEmpty()) return null;
+        // Class.forName はプリミティブ型の名前を解決できないので先に引く（宣言型は long などのことがある）
+        switch (name) {
+            case "boolean": return boolean.class;
+            case "byte": return byte.class;
+            case "char": return char.class;
+            case "short": return short.class;
+            case "int": return int.class;
+            case "long": return long.class;
+            case "float": return float.class;
+            case "double": return double.class;
+            default: break;
+        }
+        try {
+            return Class.forName(name, false, NodeCodec.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown type: " + name, e);
+        }
+    }
+}
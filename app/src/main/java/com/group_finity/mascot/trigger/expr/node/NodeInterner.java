@@ -0,0 +1,57 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * NodeInterner
+ * 構造的に等しい AST ノードを1つのインスタンスに集約する表（プロセス全体で共通）。
+ *
+ * - 子ノードから順に登録するので、共有された部分木は木全体で同じインスタンスになる
+ *   （数百のトリガーに現れる state === "falling" も1ノードで済む）
+ * - キー・値とも弱参照なので、どの式からも参照されなくなったノードは GC で回収される
+ * - 登録はパース時にしか起きないので、単純に synchronized で保護する
+ *
+ * ノードは不変なので、共有しても評価結果は変わらない。
+ */
+public final class NodeInterner {
+
+    private static final Map<ExpressionNode, WeakReference<ExpressionNode>> TABLE = new WeakHashMap<>();
+
+    private NodeInterner() {}
+
+    /**
+     * 木全体を登録し、構造的に等しい既存の木があればそれを返す。
+     * 子ノードが差し替わった場合は新しい親ノードを作って登録する。
+     */
+    public static ExpressionNode intern(ExpressionNode node) {
+        if (node == null) return null;
+        if (node instanceof UnaryExpressionNode un) {
+            ExpressionNode operand = intern(un.getOperand());
+            if (operand != un.getOperand()) node = new UnaryExpressionNode(un.getUnaryOperator(), operand);
+        } else if (node instanceof BinaryExpressionNode bin) {
+            ExpressionNode left = intern(bin.getLeft());
+            ExpressionNode right = intern(bin.getRight());
+            if (left != bin.getLeft() || right != bin.getRight()) node = bin.withOperands(left, right);
+        }
+        return canonical(node);
+    }
+
+    /** 登録済みのノード数（回収済みのものは含まない） */
+    public static int size() {
+        synchronized (TABLE) {
+            return TABLE.size();
+        }
+    }
+
+    private static ExpressionNode canonical(ExpressionNode node) {
+        synchronized (TABLE) {
+            WeakReference<ExpressionNode> ref = TABLE.get(node);
+            ExpressionNode existing = (ref != null) ? ref.get() : null;
+            if (existing != null) return existing;
+            TABLE.put(node, new WeakReference<>(node));
+            return node;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+/**
+ * Operators
+ * 演算子の実装本体。AST ノードとコンパイル済み式（compile パッケージ）の両方から呼ばれるため public static で公開する。
+ */
+public final class Operators {
+
+    private Operators() {}
+
+    // ========== 二項演算 ==========
+
+    public static Object add(Object a, Object b) {
+        // 両方が数値、または数値変換可能な文字列の場合は数値加算
+        if (isNumericType(a) && isNumericType(b)) {
+            double result = toDouble(a) + toDouble(b);
+            return normalizeNumber(result);
+        }
+        // それ以外は文字列連結
+        return String.valueOf(a) + String.valueOf(b);
+    }
+
+    public static Object sub(Object a, Object b) {
+        if (isNumericType(a) && isNumericType(b)) {
+            double result = toDouble(a) - toDouble(b);
+            return normalizeNumber(result);
+        }
+        throw new RuntimeException("Unsupported '-' between " + a + " and " + b);
+    }
+
+    public static Object mul(Object a, Object b) {
+        if (isNumericType(a) && isNumericType(b)) {
+            double result = toDouble(a) * toDouble(b);
+            return normalizeNumber(result);
+        }
+        throw new RuntimeException("Unsupported '*' between " + a + " and " + b);
+    }
+
+    public static Object div(Object a, Object b) {
+        if (isNumericType(a) && isNumericType(b))
+            return toDouble(a) / toDouble(b);
+        throw new RuntimeException("Unsupported '/' between " + a + " and " + b);
+    }
+
+    public static Object mod(Object a, Object b) {
+        if (isNumericType(a) && isNumericType(b))
+            return toDouble(a) % toDouble(b);
+        throw new RuntimeException("Unsupported '%' between " + a + " and " + b);
+    }
+
+    public static boolean strictEquals(Object a, Object b) {
+        if (a == null || b == null) return a == b;
+        // 数値型は正規化して比較（Longに統一可能なら統一）
+        if (a instanceof Number && b instanceof Number) {
+            Object na = normalizeNumber(((Number) a).doubleValue());
+            Object nb = normalizeNumber(((Number) b).doubleValue());
+            return na.getClass() == nb.getClass() && na.equals(nb);
+        }
+        if (a.getClass() != b.getClass()) return false;
+        return a.equals(b);
+    }
+
+    /** strictEquals を数値同士に限定したもの（正規化後の Long/Double の equals と同じ結果） */
+    public static boolean strictEquals(double a, double b) {
+        return a == b || (Double.isNaN(a) && Double.isNaN(b));
+    }
+
+    public static boolean eq(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number)
+            return Double.compare(toDouble(a), toDouble(b)) == 0;
+        if (a instanceof Boolean || b instanceof Boolean)
+            return toBool(a) == toBool(b);
+        return (a == null) ? b == null : a.toString().equals(b.toString());
+    }
+
+    public static int cmp(Object a, Object b) {
+        double da = (a instanceof Number n1) ? n1.doubleValue() : 0;
+        double db = (b instanceof Number n2) ? n2.doubleValue() : 0;
+        return Double.compare(da, db);
+    }
+
+    public static boolean toBool(Object v) {
+        if (v instanceof Boolean b) return b;
+        if (v instanceof Number n) return n.doubleValue() != 0.0;
+        return v != null;
+    }
+
+    // ========== 単項演算 ==========
+
+    public static Object plus(Object v) {
+        if (v instanceof Number n) {
+            double d = n.doubleValue();
+            return normalizeNumber(d);
+        }
+        throw new RuntimeException("Unary '+' not applicable to type: " + v);
+    }
+
+    public static Object negate(Object v) {
+        if (v instanceof Number n) {
+            double d = -n.doubleValue();
+            return normalizeNumber(d);
+        }
+        throw new RuntimeException("Unary '-' not applicable to type: " + v);
+    }
+
+    public static boolean not(Object v) {
+        if (v instanceof Boolean b) return !b;
+        if (v instanceof Number n) return n.doubleValue() == 0.0;
+        return v == null || v.toString().isEmpty();
+    }
+
+    public static Object bitwiseNot(Object v) {
+        if (v instanceof Number n) return ~n.longValue();
+        throw new RuntimeException("Unary '~' not applicable to type: " + v);
+    }
+
+    // ========== ヘルパーメソッド ==========
+
+    /**
+     * 数値型または数値変換可能な文字列かどうかを判定
+     */
+    public static boolean isNumericType(Object v) {
+        if (v instanceof Number) return true;
+        if (v instanceof String s) {
+            try {
+                Double.parseDouble(s.trim());
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * オブジェクトをdoubleに変換
+     */
+    public static double toDouble(Object v) {
+        if (v instanceof Number n) return n.doubleValue();
+        if (v instanceof String s) {
+            try {
+                return Double.parseDouble(s.trim());
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * normalizeNumber(val).doubleValue() と同じ値（-0.0 は Long 0 を経由して 0.0 になる）
+     */
+    public static double normalizeDouble(double val) {
+        return val == 0.0 ? 0.0 : val;
+    }
+
+    /**
+     * double値を整数化可能ならLong、そうでなければDoubleで返す
+     */
+    public static Object normalizeNumber(double val) {
+        if (val % 1 == 0 && val >= Long.MIN_VALUE && val <= Long.MAX_VALUE) {
+            return Long.valueOf((long) val);
+        }
+        return val;
+    }
+}
@@ -0,0 +1,54 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+
+/**
+ * StrictEqualityNode
+ * 厳密等価演算ノード（===, !==）。両辺が静的に数値なら double で比較する。
+ */
+public final class StrictEqualityNode extends BinaryExpressionNode {
+
+    private final boolean negated;
+    private final boolean numericOperands;
+
+    public StrictEqualityNode(ExpressionNode left, boolean negated, ExpressionNode right) {
+        super(left, negated ? "!==" : "===", right);
+        this.negated = negated;
+        this.numericOperands = hasNumericOperands();
+    }
+
+    @Override
+    protected Object compute(EvaluationContext ctx, TypeResolver resolver, TypeCoercion coercion) {
+        return test(ctx, resolver, coercion);
+    }
+
+    @Override
+    public TypeKind staticType() {
+        return TypeKind.BOOLEAN;
+    }
+
+    @Override
+    protected boolean computeBoolean(EvaluationContext ctx) {
+        return test(ctx, null, null);
+    }
+
+    private boolean test(EvaluationContext ctx, TypeResolver resolver, TypeCoercion coercion) {
+        if (numericOperands) {
+            return Operators.strictEquals(left.evalDouble(ctx), right.evalDouble(ctx)) != negated;
+        }
+        Object l = left.evaluate(ctx, resolver, coercion);
+        Object r = right.evaluate(ctx, resolver, coercion);
+        return Operators.strictEquals(l, r) != negated;
+    }
+
+    /** !== の場合 true */
+    public boolean isNegated() { return negated; }
+
+    @Override
+    public StrictEqualityNode withOperands(ExpressionNode left, ExpressionNode right) {
+        return new StrictEqualityNode(left, negated, right);
+    }
+}
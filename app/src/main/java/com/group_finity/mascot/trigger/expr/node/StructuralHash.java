@@ -0,0 +1,50 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+/**
+ * StructuralHash
+ * ノードの64bit構造ハッシュを作るための関数群。
+ *
+ * - 文字列は FNV-1a（64bit）、組み合わせは SplitMix64 の最終化関数で混ぜる
+ * - identityHashCode や Class.hashCode を使わないので、実行ごと・プロセスごとに同じ値になる
+ */
+public final class StructuralHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private StructuralHash() {}
+
+    public static long of(String s) {
+        if (s == null) return 0L;
+        long h = FNV_OFFSET;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    public static long combine(long a, long b) {
+        return mix(a * 31 + b);
+    }
+
+    public static long combine(long a, long b, long c) {
+        return combine(combine(a, b), c);
+    }
+
+    /** 型クラスのハッシュ（クラス名で計算する。null は 0） */
+    public static long of(Class<?> type) {
+        return type != null ? of(type.getName()) : 0L;
+    }
+
+    /** long を int の hashCode に畳む */
+    public static int fold(long h) {
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
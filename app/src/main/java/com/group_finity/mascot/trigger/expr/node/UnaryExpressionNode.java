@@ -2,21 +2,34 @@ package com.group_finity.mascot.trigger.expr.node;
 
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
 import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
 import com.group_finity.mascot.trigger.expr.type.TypeResolver;
 
 /**
  * UnaryExpressionNode
  * 単項演算ノード。
- * 対応: +, -, !, ~
+ * 対応: +, -, !, ~（演算子は生成時に解決する）
+ * +, - は数値、! は真偽値を返すので、オペランドが静的に数値・真偽値なら箱詰めせずに計算する。
+ * 演算子とオペランドが同じなら同じノードとみなす。
  */
 public class UnaryExpressionNode implements ExpressionNode {
 
-    private final String operator;
+    private final Operator operator;
     private final ExpressionNode operand;
+    private final long structuralHash;
 
+    /**
+     * @throws IllegalArgumentException 未知の演算子の場合
+     */
     public UnaryExpressionNode(String operator, ExpressionNode operand) {
+        this(resolve(operator), operand);
+    }
+
+    public UnaryExpressionNode(Operator operator, ExpressionNode operand) {
         this.operator = operator;
         this.operand = operand;
+        this.structuralHash = StructuralHash.combine(StructuralHash.of("unary"), StructuralHash.of(operator.symbol()),
+            operand.structuralHash());
     }
 
     @Override
@@ -26,63 +39,126 @@ public class UnaryExpressionNode implements ExpressionNode {
 
     @Override
     public Object evaluate(EvaluationContext context, TypeResolver resolver, TypeCoercion coercion) {
+        TypeKind operandType = operand.staticType();
+        if (operator == Operator.NOT && (operandType == TypeKind.BOOLEAN || operandType == TypeKind.NUMBER)) {
+            return evalBoolean(context);
+        }
+        if ((operator == Operator.PLUS || operator == Operator.MINUS) && operandType == TypeKind.NUMBER) {
+            return Operators.normalizeNumber(evalDouble(context));
+        }
         Object value = operand.evaluate(context, resolver, coercion);
+        return operator.apply(value);
+    }
 
+    @Override
+    public TypeKind staticType() {
+        return operator == Operator.NOT ? TypeKind.BOOLEAN : TypeKind.NUMBER;
+    }
+
+    @Override
+    public double evalDouble(EvaluationContext context) {
         switch (operator) {
-            case "+":
-                return applyPlus(value);
-            case "-":
-                return applyMinus(value);
-            case "!":
-                return applyNot(value);
-            case "~":
-                return applyBitwiseNot(value);
-            default:
-                throw new RuntimeException("Unsupported unary operator: " + operator);
+            case PLUS, MINUS -> {
+                double d;
+                if (operand.staticType() == TypeKind.NUMBER) {
+                    d = operand.evalDouble(context);
+                } else {
+                    Object value = operand.evaluate(context);
+                    if (!(value instanceof Number n)) return ((Number) operator.apply(value)).doubleValue(); // 例外
+                    d = n.doubleValue();
+                }
+                return Operators.normalizeDouble(operator == Operator.MINUS ? -d : d);
+            }
+            case BITWISE_NOT -> {
+                // long 精度が必要なため double 経由にはしない
+                Object value = operand.evaluate(context);
+                if (value instanceof Number n) return ~n.longValue();
+                return ((Number) operator.apply(value)).doubleValue(); // 例外
+            }
+            default -> {
+                return ((Number) evaluate(context)).doubleValue();
+            }
         }
     }
 
-    // ---------- 各単項演算の実装 ----------
+    @Override
+    public boolean evalBoolean(EvaluationContext context) {
+        if (operator != Operator.NOT) return Operators.toBool(evaluate(context));
+        // Operators.not と同じ規則
+        return switch (operand.staticType()) {
+            case BOOLEAN -> !operand.evalBoolean(context);
+            case NUMBER -> operand.evalDouble(context) == 0.0;
+            default -> Operators.not(operand.evaluate(context));
+        };
+    }
 
-    private static Object applyPlus(Object v) {
-        if (v instanceof Number n) {
-            double d = n.doubleValue();
-            return normalizeNumber(d);
-        }
-        throw new RuntimeException("Unary '+' not applicable to type: " + v);
+    private static Operator resolve(String symbol) {
+        Operator op = Operator.fromSymbol(symbol);
+        if (op == null) throw new IllegalArgumentException("Unsupported unary operator: " + symbol);
+        return op;
     }
 
-    private static Object applyMinus(Object v) {
-        if (v instanceof Number n) {
-            double d = -n.doubleValue();
-            return normalizeNumber(d);
-        }
-        throw new RuntimeException("Unary '-' not applicable to type: " + v);
+    public String getOperator() { return operator.symbol(); }
+    public Operator getUnaryOperator() { return operator; }
+    public ExpressionNode getOperand() { return operand; }
+
+    @Override
+    public String toString() {
+        return "(" + operator.symbol() + operand + ")";
     }
 
-    private static Object applyNot(Object v) {
-        if (v instanceof Boolean b) return !b;
-        if (v instanceof Number n) return n.doubleValue() == 0.0;
-        return v == null || v.toString().isEmpty();
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || o.getClass() != getClass()) return false;
+        UnaryExpressionNode other = (UnaryExpressionNode) o;
+        return structuralHash == other.structuralHash && operator == other.operator && operand.equals(other.operand);
     }
 
-    private static Object applyBitwiseNot(Object v) {
-        if (v instanceof Number n) return ~n.longValue();
-        throw new RuntimeException("Unary '~' not applicable to type: " + v);
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash);
     }
 
-    /**
-     * 整数化可能ならLong、そうでなければDoubleで返す
-     */
-    private static Object normalizeNumber(double val) {
-        if (val % 1 == 0 && val >= Long.MIN_VALUE && val <= Long.MAX_VALUE) {
-            return Long.valueOf((long) val);
-        }
-        return val;
+    @Override
+    public long structuralHash() {
+        return structuralHash;
     }
 
     @Override
-    public String toString() {
-        return "(" + operator + operand + ")";
+    public String toCanonicalString() {
+        return "(" + operator.symbol() + operand.toCanonicalString() + ")";
+    }
+
+    /** 単項演算子。各定数が演算の実装を持つ。 */
+    public enum Operator {
+        PLUS("+") {
+            @Override public Object apply(Object v) { return Operators.plus(v); }
+        },
+        MINUS("-") {
+            @Override public Object apply(Object v) { return Operators.negate(v); }
+        },
+        NOT("!") {
+            @Override public Object apply(Object v) { return Operators.not(v); }
+        },
+        BITWISE_NOT("~") {
+            @Override public Object apply(Object v) { return Operators.bitwiseNot(v); }
+        };
+
+        private final String symbol;
+
+        Operator(String symbol) { this.symbol = symbol; }
+
+        public String symbol() { return symbol; }
+
+        public abstract Object apply(Object v);
+
+        /** 記号に対応する演算子。該当しなければ null。 */
+        public static Operator fromSymbol(String symbol) {
+            for (Operator op : values()) {
+                if (op.symbol.equals(symbol)) return op;
+            }
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
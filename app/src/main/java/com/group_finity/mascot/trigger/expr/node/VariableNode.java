@@ -1,40 +1,133 @@
 package com.group_finity.mascot.trigger.expr.node;
 
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.SymbolTable;
+import com.group_finity.mascot.trigger.expr.type.CoercionException;
 import com.group_finity.mascot.trigger.expr.type.TypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
 import com.group_finity.mascot.trigger.expr.type.TypeResolver;
 
 /**
  * VariableNode
  * EvaluationContextから変数値を取得するASTノード。
+ * 変数名は生成時に SymbolTable のスロットへ解決し、評価時はスロットで読む。
+ * 宣言型（VariableSchema）付きで生成された場合は staticType() がその型になり、
+ * 型付き経路（evalDouble / evalBoolean）では値が宣言型でなければ CoercionException を投げる。
+ * 名前と宣言型が同じなら同じノードとみなす。
  */
 public class VariableNode implements ExpressionNode {
 
     private final String name;
+    private final int slot;
+    private final Class<?> declaredType;
+    private final TypeKind kind;
+    private final long structuralHash;
 
     public VariableNode(String name) {
+        this(name, null);
+    }
+
+    /** declaredType が null の場合は動的型 */
+    public VariableNode(String name, Class<?> declaredType) {
         this.name = name;
+        this.slot = SymbolTable.slotOf(name);
+        this.declaredType = declaredType;
+        this.kind = declaredType != null ? TypeKind.of(declaredType) : TypeKind.OBJECT;
+        this.structuralHash = StructuralHash.combine(StructuralHash.of("variable"), StructuralHash.of(name),
+            StructuralHash.of(declaredType));
     }
 
     @Override
     public Object evaluate(EvaluationContext context) {
         if (context == null) return null;
-        return context.getVariable(name);
+        return context.getVariable(slot);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    /** 宣言型。動的型なら null */
+    public Class<?> getDeclaredType() {
+        return declaredType;
+    }
+
+    @Override
+    public TypeKind staticType() {
+        return kind;
+    }
+
+    /** 型付きアクセサで読む（基本型の列なら箱詰めしない） */
+    @Override
+    public double evalDouble(EvaluationContext context) {
+        if (context != null) {
+            try {
+                return context.getDouble(slot);
+            } catch (CoercionException e) {
+                throw mismatch(context);
+            }
+        }
+        throw mismatch(null);
+    }
+
+    @Override
+    public boolean evalBoolean(EvaluationContext context) {
+        if (kind != TypeKind.BOOLEAN) return Operators.toBool(evaluate(context));
+        if (context != null) {
+            try {
+                return context.getBoolean(slot);
+            } catch (CoercionException e) {
+                throw mismatch(context);
+            }
+        }
+        throw mismatch(null);
+    }
+
+    private CoercionException mismatch(EvaluationContext context) {
+        Object value = evaluate(context);
+        String declared = declaredType != null ? declaredType.getSimpleName() : "dynamic";
+        return new CoercionException("Variable '" + name + "' declared as " + declared + " but was " + value);
     }
 
     @Override
     public String toString() {
         return name;
     }
+
+    /** 宣言型付きの変数は "name:Type"（動的型の同名変数と区別する） */
+    @Override
+    public String toCanonicalString() {
+        return declaredType != null ? name + ":" + declaredType.getSimpleName() : name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || o.getClass() != getClass()) return false;
+        VariableNode other = (VariableNode) o;
+        return structuralHash == other.structuralHash && name.equals(other.name) && declaredType == other.declaredType;
+    }
+
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash);
+    }
+
+    @Override
+    public long structuralHash() {
+        return structuralHash;
+    }
+
     @Override
     public Object evaluate(EvaluationContext context,
                            TypeResolver resolver,
                            TypeCoercion coercion) {
-        // 変数取得時にアクセス記録
-        if (context != null) {
-            context.markAccess(name);  // ← 新規メソッド呼び出し
-        }
-        return context != null ? context.getVariable(name) : null;
+        // 変数取得時にアクセス記録（getVariable(int) 内で行う）
+        return context != null ? context.getVariable(slot) : null;
     }
 
 }
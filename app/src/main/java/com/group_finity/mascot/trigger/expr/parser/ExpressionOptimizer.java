@@ -0,0 +1,128 @@
+package com.group_finity.mascot.trigger.expr.parser;
+
+import com.group_finity.mascot.trigger.expr.node.ArithmeticNode;
+import com.group_finity.mascot.trigger.expr.node.BinaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.ComparisonNode;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.LiteralNode;
+import com.group_finity.mascot.trigger.expr.node.LogicalNode;
+import com.group_finity.mascot.trigger.expr.node.StrictEqualityNode;
+import com.group_finity.mascot.trigger.expr.node.UnaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+
+/**
+ * ExpressionOptimizer
+ * パース直後の AST を評価結果を変えずに簡約する。
+ *
+ * - 定数畳み込み：リテラルのみの部分木を評価して LiteralNode に置き換える（評価で例外になる部分木はそのまま残す）
+ * - 二重否定の除去：!!x → x（x が真偽値を返すノードの場合のみ）
+ * - 論理演算の簡約：true && x / false || x → x（同上）、false && x → false、true || x → true
+ * - 可換演算の正規化：*, ===, !== はリテラルを右辺に、それ以外は文字列表現の順に並べる。
+ *   順序比較は演算子を反転してリテラルを右辺に寄せる（1 < x → x > 1）
+ *
+ * == / != は null を左辺に持つ場合と右辺に持つ場合で結果が異なるため入れ替えない。
+ */
+public final class ExpressionOptimizer {
+
+    private ExpressionOptimizer() {}
+
+    public static ExpressionNode optimize(ExpressionNode node) {
+        if (node instanceof BinaryExpressionNode bin) return optimizeBinary(bin);
+        if (node instanceof UnaryExpressionNode un) return optimizeUnary(un);
+        return node;
+    }
+
+    private static ExpressionNode optimizeUnary(UnaryExpressionNode un) {
+        ExpressionNode operand = optimize(un.getOperand());
+
+        if (operand instanceof LiteralNode) {
+            ExpressionNode folded = fold(new UnaryExpressionNode(un.getUnaryOperator(), operand));
+            if (folded != null) return folded;
+        }
+        // !!x → x
+        if (un.getUnaryOperator() == UnaryExpressionNode.Operator.NOT
+                && operand instanceof UnaryExpressionNode inner
+                && inner.getUnaryOperator() == UnaryExpressionNode.Operator.NOT
+                && isBooleanValued(inner.getOperand())) {
+            return inner.getOperand();
+        }
+        return operand == un.getOperand() ? un : new UnaryExpressionNode(un.getUnaryOperator(), operand);
+    }
+
+    private static ExpressionNode optimizeBinary(BinaryExpressionNode bin) {
+        ExpressionNode left = optimize(bin.getLeft());
+        ExpressionNode right = optimize(bin.getRight());
+
+        if (left instanceof LiteralNode && right instanceof LiteralNode) {
+            ExpressionNode folded = fold(rebuild(bin, left, right));
+            if (folded != null) return folded;
+        }
+
+        if (bin instanceof LogicalNode logical) {
+            ExpressionNode simplified = simplifyLogical(logical.getLogicalOperator(), left, right);
+            if (simplified != null) return simplified;
+        }
+
+        if (isCommutative(bin) && shouldSwap(left, right)) {
+            return rebuild(bin, right, left);
+        }
+        if (bin instanceof ComparisonNode cmp && cmp.getComparisonOperator().mirrored() != cmp.getComparisonOperator()
+                && left instanceof LiteralNode && !(right instanceof LiteralNode)) {
+            return new ComparisonNode(right, cmp.getComparisonOperator().mirrored(), left);
+        }
+
+        if (left == bin.getLeft() && right == bin.getRight()) return bin;
+        return rebuild(bin, left, right);
+    }
+
+    /** 片側が真偽値リテラルの論理演算を簡約する。簡約できなければ null */
+    private static ExpressionNode simplifyLogical(LogicalNode.Operator op, ExpressionNode left, ExpressionNode right) {
+        // 吸収元：false && x → false / true || x → true（右辺は評価されない）
+        boolean absorbing = op.shortCircuitValue();
+        if (left instanceof LiteralNode lit && lit.getValue() instanceof Boolean b) {
+            if (b == absorbing) return left;
+            if (isBooleanValued(right)) return right;
+        }
+        // 単位元：x && true / x || false → x
+        if (right instanceof LiteralNode lit && lit.getValue() instanceof Boolean b
+                && b != absorbing && isBooleanValued(left)) {
+            return left;
+        }
+        return null;
+    }
+
+    private static boolean isCommutative(BinaryExpressionNode bin) {
+        if (bin instanceof StrictEqualityNode) return true;
+        return bin instanceof ArithmeticNode arith && arith.getArithmeticOperator() == ArithmeticNode.Operator.MUL;
+    }
+
+    private static boolean shouldSwap(ExpressionNode left, ExpressionNode right) {
+        boolean leftLiteral = left instanceof LiteralNode;
+        boolean rightLiteral = right instanceof LiteralNode;
+        if (leftLiteral != rightLiteral) return leftLiteral;
+        return left.toString().compareTo(right.toString()) > 0;
+    }
+
+    /** 同じ演算子で子ノードだけを差し替えたノードを作る */
+    private static BinaryExpressionNode rebuild(BinaryExpressionNode bin, ExpressionNode left, ExpressionNode right) {
+        if (bin instanceof ArithmeticNode n) return new ArithmeticNode(left, n.getArithmeticOperator(), right);
+        if (bin instanceof ComparisonNode n) return new ComparisonNode(left, n.getComparisonOperator(), right);
+        if (bin instanceof StrictEqualityNode n) return new StrictEqualityNode(left, n.isNegated(), right);
+        if (bin instanceof LogicalNode n) return new LogicalNode(left, n.getLogicalOperator(), right);
+        return BinaryExpressionNode.of(left, bin.getOperator(), right);
+    }
+
+    /** 変数を含まないノードを評価してリテラル化する。評価時に例外となる場合は null（実行時に同じ例外を出させる） */
+    private static ExpressionNode fold(ExpressionNode constant) {
+        try {
+            return new LiteralNode(constant.evaluate(null));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** 評価結果が必ず Boolean になるノードか */
+    private static boolean isBooleanValued(ExpressionNode node) {
+        return node.staticType() == TypeKind.BOOLEAN;
+    }
+}
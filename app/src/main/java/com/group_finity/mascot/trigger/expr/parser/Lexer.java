@@ -0,0 +1,143 @@
+package com.group_finity.mascot.trigger.expr.parser;
+
+/**
+ * Lexer
+ * CharSequence を直接走査する字句解析器。
+ * トークンは種別と開始・終了位置（[start, end)）だけで表し、Token オブジェクトや部分文字列を作らない。
+ * 文字列が必要な場合（識別子・数値・文字列リテラル）は呼び出し側が text() などで取り出す。
+ *
+ * 文字列リテラルの start/end は引用符の内側を指す（閉じ引用符がない場合は入力の末尾まで）。
+ */
+public final class Lexer {
+
+    public enum TokenType {
+        PLUS, MINUS, STAR, SLASH, PERCENT,
+        LT, LTE, GT, GTE,
+        EQEQ, BANGEQ, EQEQEQ, BANGEQEQ,
+        ANDAND, OROR,
+        BANG, TILDE,
+        LPAREN, RPAREN,
+        NUMBER, STRING, TRUE, FALSE, IDENT, EOF
+    }
+
+    private final CharSequence src;
+    private final int length;
+    private int pos;
+
+    private TokenType type;
+    private int start;
+    private int end;
+
+    public Lexer(CharSequence src) {
+        this.src = src;
+        this.length = src.length();
+        advance();
+    }
+
+    /** 現在のトークン種別 */
+    public TokenType type() { return type; }
+
+    /** 現在のトークンの開始位置 */
+    public int start() { return start; }
+
+    /** 現在のトークンの終了位置（排他） */
+    public int end() { return end; }
+
+    public CharSequence source() { return src; }
+
+    /** 現在のトークンの文字列（エラーメッセージ用。EOF は空文字） */
+    public String text() {
+        return src.subSequence(start, end).toString();
+    }
+
+    /** 次のトークンへ進む。EOF に達した後は EOF のまま */
+    public TokenType advance() {
+        while (pos < length && Character.isWhitespace(src.charAt(pos))) pos++;
+        start = pos;
+        if (pos >= length) {
+            end = pos;
+            return type = TokenType.EOF;
+        }
+        char c = src.charAt(pos);
+
+        // 数値
+        if (Character.isDigit(c)) {
+            while (pos < length && (Character.isDigit(src.charAt(pos)) || src.charAt(pos) == '.')) pos++;
+            return token(TokenType.NUMBER, pos);
+        }
+
+        // 文字列（ダブル/シングルクォート）
+        if (c == '"' || c == '\'') {
+            int contentStart = ++pos;
+            while (pos < length && src.charAt(pos) != c) pos++;
+            int contentEnd = pos;
+            if (pos < length) pos++;
+            start = contentStart;
+            end = contentEnd;
+            return type = TokenType.STRING;
+        }
+
+        // 識別子・キーワード
+        if (Character.isLetter(c) || c == '_') {
+            pos++;
+            while (pos < length && (Character.isLetterOrDigit(src.charAt(pos)) || src.charAt(pos) == '_')) pos++;
+            return token(keyword(start, pos), pos);
+        }
+
+        // 演算子（3→2→1 文字の順で貪欲に）
+        char c1 = (pos + 1 < length) ? src.charAt(pos + 1) : '\0';
+        char c2 = (pos + 2 < length) ? src.charAt(pos + 2) : '\0';
+        switch (c) {
+            case '=':
+                if (c1 == '=' && c2 == '=') return token(TokenType.EQEQEQ, pos + 3);
+                if (c1 == '=') return token(TokenType.EQEQ, pos + 2);
+                break;
+            case '!':
+                if (c1 == '=' && c2 == '=') return token(TokenType.BANGEQEQ, pos + 3);
+                if (c1 == '=') return token(TokenType.BANGEQ, pos + 2);
+                return token(TokenType.BANG, pos + 1);
+            case '<':
+                return (c1 == '=') ? token(TokenType.LTE, pos + 2) : token(TokenType.LT, pos + 1);
+            case '>':
+                return (c1 == '=') ? token(TokenType.GTE, pos + 2) : token(TokenType.GT, pos + 1);
+            case '&':
+                if (c1 == '&') return token(TokenType.ANDAND, pos + 2);
+                break;
+            case '|':
+                if (c1 == '|') return token(TokenType.OROR, pos + 2);
+                break;
+            case '+': return token(TokenType.PLUS, pos + 1);
+            case '-': return token(TokenType.MINUS, pos + 1);
+            case '*': return token(TokenType.STAR, pos + 1);
+            case '/': return token(TokenType.SLASH, pos + 1);
+            case '%': return token(TokenType.PERCENT, pos + 1);
+            case '~': return token(TokenType.TILDE, pos + 1);
+            case '(': return token(TokenType.LPAREN, pos + 1);
+            case ')': return token(TokenType.RPAREN, pos + 1);
+            default:
+                break;
+        }
+        throw new RuntimeException("Unexpected char: " + c);
+    }
+
+    private TokenType token(TokenType t, int tokenEnd) {
+        pos = tokenEnd;
+        end = tokenEnd;
+        return type = t;
+    }
+
+    /** true / false は部分文字列を作らずに判定する */
+    private TokenType keyword(int from, int to) {
+        int len = to - from;
+        if (len == 4 && regionEquals(from, "true")) return TokenType.TRUE;
+        if (len == 5 && regionEquals(from, "false")) return TokenType.FALSE;
+        return TokenType.IDENT;
+    }
+
+    private boolean regionEquals(int from, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (src.charAt(from + i) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+}
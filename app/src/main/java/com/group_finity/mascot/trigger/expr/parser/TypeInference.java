@@ -0,0 +1,94 @@
+package com.group_finity.mascot.trigger.expr.parser;
+
+import com.group_finity.mascot.trigger.expr.node.ArithmeticNode;
+import com.group_finity.mascot.trigger.expr.node.BinaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.ComparisonNode;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.LogicalNode;
+import com.group_finity.mascot.trigger.expr.node.NodeInterner;
+import com.group_finity.mascot.trigger.expr.node.StrictEqualityNode;
+import com.group_finity.mascot.trigger.expr.node.UnaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.VariableNode;
+import com.group_finity.mascot.trigger.expr.type.CoercionPlan;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
+
+/**
+ * TypeInference
+ * 変数の宣言型（VariableSchema）から各ノードの型を推論し、TypeResolver の CoercionPlan をノードに埋め込む。
+ *
+ * - 宣言された変数は型付きの VariableNode に置き換える
+ * - 二項演算ノードごとに resolve を1回だけ呼び、得られた計画を持つノードを作り直す（ノードは不変）
+ * - 解決できない組み合わせ（動的型の変数を含む等）は計画なしのまま残し、評価時に型を判定する
+ * - 結果は NodeInterner に登録する（同じスキーマで推論した部分木は式をまたいで共有される）
+ *
+ * ノードの演算規則（Operators）は変換不能な値で例外を投げる STRICT 相当なので、計画も STRICT で解決する。
+ * LOOSE の計画（文字列・真偽値を数値として扱う）を使うと評価結果が変わってしまう。
+ */
+public final class TypeInference {
+
+    private final VariableSchema schema;
+    private final TypeResolver resolver;
+
+    public TypeInference(VariableSchema schema, TypeResolver resolver) {
+        this.schema = schema;
+        this.resolver = resolver;
+    }
+
+    public ExpressionNode apply(ExpressionNode node) {
+        return NodeInterner.intern(infer(node));
+    }
+
+    private ExpressionNode infer(ExpressionNode node) {
+        if (node instanceof VariableNode var) {
+            Class<?> declared = schema.typeOf(var.getName());
+            if (declared == null || declared == var.getDeclaredType()) return var;
+            return new VariableNode(var.getName(), declared);
+        }
+        if (node instanceof UnaryExpressionNode un) {
+            ExpressionNode operand = infer(un.getOperand());
+            return operand == un.getOperand() ? un : new UnaryExpressionNode(un.getUnaryOperator(), operand);
+        }
+        if (node instanceof BinaryExpressionNode bin) {
+            ExpressionNode left = infer(bin.getLeft());
+            ExpressionNode right = infer(bin.getRight());
+            return rebuild(bin, left, right, resolvePlan(bin, left, right));
+        }
+        return node;
+    }
+
+    /** 計画を解決する。解決できない場合は null */
+    private CoercionPlan resolvePlan(BinaryExpressionNode bin, ExpressionNode left, ExpressionNode right) {
+        // === / !== は TypeResolver の対象外
+        if (bin instanceof StrictEqualityNode) return null;
+        Class<?> l = classOf(left.staticType());
+        Class<?> r = classOf(right.staticType());
+        if (l == null || r == null) return null;
+        try {
+            return resolver.resolve(bin.getOperator(), l, r, Mode.STRICT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** 静的型の代表クラス。型が決まらない場合は null */
+    private static Class<?> classOf(TypeKind kind) {
+        return switch (kind) {
+            case NUMBER -> Double.class;
+            case BOOLEAN -> Boolean.class;
+            case STRING -> String.class;
+            default -> null;
+        };
+    }
+
+    private static ExpressionNode rebuild(BinaryExpressionNode bin, ExpressionNode left, ExpressionNode right, CoercionPlan plan) {
+        if (plan == null && left == bin.getLeft() && right == bin.getRight()) return bin;
+        if (bin instanceof ArithmeticNode n) return new ArithmeticNode(left, n.getArithmeticOperator(), right, plan);
+        if (bin instanceof ComparisonNode n) return new ComparisonNode(left, n.getComparisonOperator(), right, plan);
+        if (bin instanceof LogicalNode n) return new LogicalNode(left, n.getLogicalOperator(), right, plan);
+        if (bin instanceof StrictEqualityNode n) return new StrictEqualityNode(left, n.isNegated(), right);
+        return BinaryExpressionNode.of(left, bin.getOperator(), right);
+    }
+}
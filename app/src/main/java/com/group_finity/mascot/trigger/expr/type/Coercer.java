@@ -0,0 +1,136 @@
+package com.group_finity.mascot.trigger.expr.type;
+
+/**
+ * Coercer
+ * 変換先の型ごとに前もって選んでおく変換処理（DefaultTypeCoercion.coerceTo と同じ規則）。
+ *
+ * - 変換先ごとのインスタンスは ClassValue で1つだけ作る（coerceTo は呼ばれるたびに isInstance や型の比較を順に試さない）
+ * - 真偽値・文字列への変換は渡された TypeCoercion の toBoolean / toString を使う
+ */
+public final class Coercer {
+
+    private enum Kind { IDENTITY, INTEGER, LONG, DOUBLE, FLOAT, BOOLEAN, STRING, OTHER }
+
+    private static final Coercer IDENTITY = new Coercer(Kind.IDENTITY, Object.class);
+
+    private static final ClassValue<Coercer> BY_TARGET = new ClassValue<>() {
+        @Override
+        protected Coercer computeValue(Class<?> type) {
+            Class<?> target = wrap(type);
+            return new Coercer(kindOf(target), target);
+        }
+    };
+
+    private final Kind kind;
+    private final Class<?> target;
+
+    private Coercer(Kind kind, Class<?> target) {
+        this.kind = kind;
+        this.target = target;
+    }
+
+    /** 変換先の型の Coercer（null なら値をそのまま返す） */
+    public static Coercer to(Class<?> targetType) {
+        return targetType != null ? BY_TARGET.get(targetType) : IDENTITY;
+    }
+
+    /** 変換先の型（プリミティブ型はラッパー型） */
+    public Class<?> target() {
+        return target;
+    }
+
+    /**
+     * 値を変換先の型にする。null と変換先の型の値はそのまま返す。
+     * STRICT では変換できない値に CoercionException、それ以外のモードでは 0 などの既定値になる。
+     */
+    public Object apply(Object value, TypeCoercion coercion, Mode mode) {
+        if (kind == Kind.IDENTITY || value == null || target.isInstance(value)) return value;
+        return switch (kind) {
+            case INTEGER -> Integer.valueOf(parseInt(value, mode));
+            case LONG -> Long.valueOf(parseLong(value, mode));
+            case DOUBLE -> Double.valueOf(parseDouble(value, mode, "Double"));
+            case FLOAT -> Float.valueOf((float) parseDouble(value, mode, "Float"));
+            case BOOLEAN -> Boolean.valueOf(coercion.toBoolean(value));
+            case STRING -> coercion.toString(value);
+            default -> {
+                if (mode == Mode.STRICT) {
+                    throw new CoercionException("Cannot coerce " + value + " to " + target.getSimpleName());
+                }
+                yield value;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Coercer[" + target.getSimpleName() + "]";
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == boolean.class) return Boolean.class;
+        return type;
+    }
+
+    private static Kind kindOf(Class<?> target) {
+        if (target == Integer.class) return Kind.INTEGER;
+        if (target == Long.class) return Kind.LONG;
+        if (target == Double.class) return Kind.DOUBLE;
+        if (target == Float.class) return Kind.FLOAT;
+        if (target == Boolean.class) return Kind.BOOLEAN;
+        if (target == String.class) return Kind.STRING;
+        return Kind.OTHER;
+    }
+
+    private static int parseInt(Object v, Mode mode) {
+        if (v instanceof Number n) return n.intValue();
+        if (v instanceof Boolean b) return b ? 1 : 0;
+        if (v instanceof String s) {
+            try { return Integer.parseInt(s.trim()); }
+            catch (NumberFormatException e) {
+                if (mode == Mode.STRICT)
+                    throw new CoercionException("Cannot coerce \"" + v + "\" to Integer", e);
+                return 0;
+            }
+        }
+        if (mode == Mode.STRICT)
+            throw new CoercionException("Cannot coerce " + v + " to Integer");
+        return 0;
+    }
+
+    private static long parseLong(Object v, Mode mode) {
+        if (v instanceof Number n) return n.longValue();
+        if (v instanceof Boolean b) return b ? 1L : 0L;
+        if (v instanceof String s) {
+            try { return Long.parseLong(s.trim()); }
+            catch (NumberFormatException e) {
+                if (mode == Mode.STRICT)
+                    throw new CoercionException("Cannot coerce \"" + v + "\" to Long", e);
+                return 0L;
+            }
+        }
+        if (mode == Mode.STRICT)
+            throw new CoercionException("Cannot coerce " + v + " to Long");
+        return 0L;
+    }
+
+    private static double parseDouble(Object v, Mode mode, String targetName) {
+        if (v instanceof Number n) return n.doubleValue();
+        if (v instanceof Boolean b) return b ? 1.0 : 0.0;
+        if (v instanceof String s) {
+            try { return Double.parseDouble(s.trim()); }
+            catch (NumberFormatException e) {
+                if (mode == Mode.STRICT)
+                    throw new CoercionException("Cannot coerce \"" + v + "\" to " + targetName, e);
+                return 0.0;
+            }
+        }
+        if (mode == Mode.STRICT)
+            throw new CoercionException("Cannot coerce " + v + " to " + targetName);
+        return 0.0;
+    }
+}
@@ -1,122 +1,153 @@
 package com.group_finity.mascot.trigger.expr.type;
 
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Default implementation: rules as discussed earlier.
+ * Plans are shared constants and, except for equality, are looked up in a table indexed by
+ * operator and TypeKind ordinals, so resolve() does not allocate.
  */
 public final class DefaultTypeResolver implements TypeResolver {
 
-    private final ConcurrentMap<Key, CoercionPlan> cache = new ConcurrentHashMap<>();
+    /** 状態を持たないので共有してよい */
+    public static final DefaultTypeResolver INSTANCE = new DefaultTypeResolver();
+
+    // 計画は共有の定数（解決のたびに生成しない）
+    private static final CoercionPlan BOOLEAN_PLAN = new CoercionPlan(Boolean.class, Boolean.class, Boolean.class);
+    private static final CoercionPlan NUMERIC_PLAN = new CoercionPlan(Double.class, Double.class, Double.class);
+    private static final CoercionPlan CONCAT_PLAN = new CoercionPlan(String.class, String.class, String.class);
+    private static final CoercionPlan NUMERIC_COMPARISON_PLAN = new CoercionPlan(Double.class, Double.class, Boolean.class);
+    private static final CoercionPlan OBJECT_EQUALITY_PLAN = new CoercionPlan(Object.class, Object.class, Boolean.class);
+    private static final CoercionPlan STRING_EQUALITY_PLAN = new CoercionPlan(String.class, String.class, Boolean.class);
+
+    // 表で引く演算子（添字は operatorIndex と一致させる）
+    private static final String[] OPERATORS = { "!", "&&", "||", "+", "-", "*", "/", "%", "<", ">", "<=", ">=" };
+    private static final int KINDS = TypeKind.values().length;
+
+    // [演算子][左辺の種別][右辺の種別][STRICT か] の計画。null は適用できない組み合わせ
+    private static final CoercionPlan[] TABLE = buildTable();
 
     @Override
     public CoercionPlan resolve(String operator, Class<?> leftType, Class<?> rightType, Mode mode) {
-        Key key = new Key(operator, leftType, rightType, mode);
-        return cache.computeIfAbsent(key, k -> computePlan(operator, leftType, rightType, mode));
+        if ("==".equals(operator) || "!=".equals(operator)) return equalityPlan(leftType, rightType, mode);
+        int op = operatorIndex(operator);
+        if (op < 0) throw new IllegalArgumentException("Unknown operator: " + operator);
+        TypeKind l = TypeKind.of(leftType);
+        TypeKind r = TypeKind.of(rightType);
+        boolean strict = mode == Mode.STRICT;
+        CoercionPlan plan = TABLE[index(op, l, r, strict)];
+        // 表に無い組み合わせは planFor で改めて例外を投げる
+        return plan != null ? plan : planFor(operator, l, r, strict);
     }
 
-    private CoercionPlan computePlan(String op, Class<?> lType, Class<?> rType, Mode mode) {
-        TypeKind l = kindOf(lType);
-        TypeKind r = kindOf(rType);
-
-        if (isUnary(op)) {
-            if ("!".equals(op)) {
-                return new CoercionPlan(Boolean.class, Boolean.class, Boolean.class);
+    private static CoercionPlan[] buildTable() {
+        CoercionPlan[] table = new CoercionPlan[OPERATORS.length * KINDS * KINDS * 2];
+        for (int op = 0; op < OPERATORS.length; op++) {
+            for (TypeKind l : TypeKind.values()) {
+                for (TypeKind r : TypeKind.values()) {
+                    for (boolean strict : new boolean[] { true, false }) {
+                        try {
+                            table[index(op, l, r, strict)] = planFor(OPERATORS[op], l, r, strict);
+                        } catch (IllegalArgumentException e) {
+                            // 適用できない組み合わせは null のまま
+                        }
+                    }
+                }
             }
         }
+        return table;
+    }
+
+    private static int index(int op, TypeKind l, TypeKind r, boolean strict) {
+        return ((op * KINDS + l.ordinal()) * KINDS + r.ordinal()) * 2 + (strict ? 0 : 1);
+    }
+
+    private static int operatorIndex(String op) {
+        return switch (op) {
+            case "!" -> 0;
+            case "&&" -> 1;
+            case "||" -> 2;
+            case "+" -> 3;
+            case "-" -> 4;
+            case "*" -> 5;
+            case "/" -> 6;
+            case "%" -> 7;
+            case "<" -> 8;
+            case ">" -> 9;
+            case "<=" -> 10;
+            case ">=" -> 11;
+            default -> -1;
+        };
+    }
+
+    /** 等価以外の演算子の計画（両辺の種別だけで決まる） */
+    private static CoercionPlan planFor(String op, TypeKind l, TypeKind r, boolean strict) {
+        if (isUnary(op) || isLogical(op)) {
+            return BOOLEAN_PLAN;
+        }
 
         if (isArithmetic(op)) {
             if (l == TypeKind.NUMBER && r == TypeKind.NUMBER) {
-                return new CoercionPlan(Double.class, Double.class, Double.class);
+                return NUMERIC_PLAN;
             }
             if ("+".equals(op) && (l == TypeKind.STRING || r == TypeKind.STRING)) {
-                return new CoercionPlan(String.class, String.class, String.class);
+                return CONCAT_PLAN;
             }
-            if (mode != Mode.STRICT && (canBeNumber(lType) && canBeNumber(rType))) {
-                return new CoercionPlan(Double.class, Double.class, Double.class);
+            if (!strict && canBeNumber(l) && canBeNumber(r)) {
+                return NUMERIC_PLAN;
             }
             throw new IllegalArgumentException("Operator " + op + " not applicable to " + l + " and " + r);
         }
 
         if (isComparison(op)) {
             if (l == TypeKind.NUMBER && r == TypeKind.NUMBER) {
-                return new CoercionPlan(Double.class, Double.class, Boolean.class);
+                return NUMERIC_COMPARISON_PLAN;
             }
-            if (mode != Mode.STRICT && (canBeNumber(lType) && canBeNumber(rType))) {
-                return new CoercionPlan(Double.class, Double.class, Boolean.class);
+            if (!strict && canBeNumber(l) && canBeNumber(r)) {
+                return NUMERIC_COMPARISON_PLAN;
             }
             throw new IllegalArgumentException("Comparison requires numeric operands");
         }
 
-        if ("==".equals(op) || "!=".equals(op)) {
-            if (Objects.equals(lType, rType)) {
-                return new CoercionPlan(Object.class, Object.class, Boolean.class);
-            }
-            if (bothAreNumbers(lType, rType)) {
-                return new CoercionPlan(Double.class, Double.class, Boolean.class);
-            }
-            if (mode != Mode.STRICT) {
-                return new CoercionPlan(String.class, String.class, Boolean.class);
-            }
-            return new CoercionPlan(Object.class, Object.class, Boolean.class);
-        }
+        throw new IllegalArgumentException("Unknown operator: " + op);
+    }
 
-        if (isLogical(op)) {
-            return new CoercionPlan(Boolean.class, Boolean.class, Boolean.class);
+    private static CoercionPlan equalityPlan(Class<?> lType, Class<?> rType, Mode mode) {
+        // 数値同士は同じ型でも double で比較する（Operators.eq と同じ規則）
+        if (bothAreNumbers(lType, rType)) {
+            return NUMERIC_COMPARISON_PLAN;
         }
-
-        throw new IllegalArgumentException("Unknown operator: " + op);
+        if (Objects.equals(lType, rType)) {
+            return OBJECT_EQUALITY_PLAN;
+        }
+        if (mode != Mode.STRICT) {
+            return STRING_EQUALITY_PLAN;
+        }
+        return OBJECT_EQUALITY_PLAN;
     }
 
-    private boolean isArithmetic(String op) {
+    private static boolean isArithmetic(String op) {
         return "+".equals(op) || "-".equals(op) || "*".equals(op) || "/".equals(op) || "%".equals(op);
     }
 
-    private boolean isComparison(String op) {
+    private static boolean isComparison(String op) {
         return "<".equals(op) || ">".equals(op) || "<=".equals(op) || ">=".equals(op);
     }
 
-    private boolean isLogical(String op) {
+    private static boolean isLogical(String op) {
         return "&&".equals(op) || "||".equals(op);
     }
 
-    private boolean isUnary(String op) {
+    private static boolean isUnary(String op) {
         return "!".equals(op);
     }
 
-    private boolean bothAreNumbers(Class<?> a, Class<?> b) {
+    private static boolean bothAreNumbers(Class<?> a, Class<?> b) {
         return (a != null && Number.class.isAssignableFrom(a)) && (b != null && Number.class.isAssignableFrom(b));
     }
 
-    private boolean canBeNumber(Class<?> cls) {
-        if (cls == null) return true;
-        if (Number.class.isAssignableFrom(cls)) return true;
-        if (cls == String.class) return true;
-        if (cls == Boolean.class || cls == boolean.class) return true;
-        return false;
-    }
-
-    private TypeKind kindOf(Class<?> cls) {
-        if (cls == null) return TypeKind.NULL;
-        if (Number.class.isAssignableFrom(cls) || (cls.isPrimitive() && cls != boolean.class && cls != char.class)) return TypeKind.NUMBER;
-        if (Boolean.class == cls || boolean.class == cls) return TypeKind.BOOLEAN;
-        if (String.class == cls) return TypeKind.STRING;
-        return TypeKind.OBJECT;
-    }
-
-    private static final class Key {
-        private final String op;
-        private final Class<?> l;
-        private final Class<?> r;
-        private final Mode m;
-        Key(String op, Class<?> l, Class<?> r, Mode m) { this.op = op; this.l = l; this.r = r; this.m = m; }
-        @Override public int hashCode() { return (op.hashCode()*31 + (l != null ? l.hashCode():0))*31 + (r != null ? r.hashCode():0); }
-        @Override public boolean equals(Object o) {
-            if (!(o instanceof Key)) return false;
-            Key k = (Key)o;
-            return op.equals(k.op) && java.util.Objects.equals(l,k.l) && java.util.Objects.equals(r,k.r) && m == k.m;
-        }
+    /** 未知の型（NULL）・数値・文字列・真偽値は数値に変換できる */
+    private static boolean canBeNumber(TypeKind kind) {
+        return kind != TypeKind.OBJECT;
     }
 }
@@ -1,5 +1,14 @@
 package com.group_finity.mascot.trigger.expr.type;
 
 public enum TypeKind {
-    NUMBER, BOOLEAN, STRING, NULL, OBJECT
+    NUMBER, BOOLEAN, STRING, NULL, OBJECT;
+
+    /** クラスに対応する種別（null は NULL、プリミティブ数値型は NUMBER） */
+    public static TypeKind of(Class<?> cls) {
+        if (cls == null) return NULL;
+        if (Number.class.isAssignableFrom(cls) || (cls.isPrimitive() && cls != boolean.class && cls != char.class)) return NUMBER;
+        if (Boolean.class == cls || boolean.class == cls) return BOOLEAN;
+        if (String.class == cls) return STRING;
+        return OBJECT;
+    }
 }
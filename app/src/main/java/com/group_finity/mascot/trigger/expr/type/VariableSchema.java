@@ -0,0 +1,55 @@
+package com.group_finity.mascot.trigger.expr.type;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * VariableSchema
+ * 変数名ごとの宣言型（Double.class, Boolean.class など）。
+ *
+ * - 宣言された変数は常に宣言型の値を持つことを前提に、型推論パスが評価方法を事前に決める
+ *   （前提が崩れた場合、型付き経路では CoercionException になる）
+ * - 宣言されていない変数は動的型として扱い、従来どおり評価時に型を判定する
+ */
+public final class VariableSchema {
+
+    public static final VariableSchema EMPTY = new VariableSchema(Map.of());
+
+    private final Map<String, Class<?>> types;
+
+    public VariableSchema(Map<String, Class<?>> types) {
+        this.types = Map.copyOf(types);
+    }
+
+    /** 宣言型。未宣言なら null（動的型） */
+    public Class<?> typeOf(String name) {
+        return types.get(name);
+    }
+
+    public TypeKind kindOf(String name) {
+        Class<?> type = types.get(name);
+        return type != null ? TypeKind.of(type) : TypeKind.OBJECT;
+    }
+
+    /** 宣言を1つ追加したスキーマを返す */
+    public VariableSchema with(String name, Class<?> type) {
+        Map<String, Class<?>> copy = new LinkedHashMap<>(types);
+        copy.put(name, type);
+        return new VariableSchema(copy);
+    }
+
+    /** 宣言された変数名 */
+    public Set<String> names() {
+        return types.keySet();
+    }
+
+    public boolean isEmpty() {
+        return types.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "VariableSchema" + types;
+    }
+}
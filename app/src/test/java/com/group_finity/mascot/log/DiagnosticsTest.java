@@ -0,0 +1,107 @@
+package com.group_finity.mascot.log;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.log.Diagnostics.Level;
+import com.group_finity.mascot.trigger.expr.cache.EvaluationResult;
+
+/**
+ * Diagnostics のレベル判定と設定の取り込みを確認する。
+ */
+public class DiagnosticsTest {
+
+    @AfterEach
+    void restore() {
+        Diagnostics.resetLevels();
+    }
+
+    @Test
+    void defaultLevelIsInfo() {
+        Diagnostics d = Diagnostics.of("test.default");
+        assertSame(d, Diagnostics.of("test.default"));
+        assertEquals(Level.INFO, d.getLevel());
+        assertTrue(d.isEnabled(Level.WARN));
+        assertFalse(d.isDebugEnabled());
+        assertFalse(d.isEnabled(Level.OFF));
+    }
+
+    @Test
+    void longestPrefixWins() {
+        Diagnostics worker = Diagnostics.of("test.prefix.worker");
+        Diagnostics pool = Diagnostics.of("test.prefix.pool");
+        Diagnostics.setLevel("test.prefix", Level.DEBUG);
+        Diagnostics.setLevel("test.prefix.worker", Level.ERROR);
+
+        assertEquals(Level.ERROR, worker.getLevel());
+        assertEquals(Level.DEBUG, pool.getLevel());
+        // 設定後に作ったチャネルにも効く
+        assertEquals(Level.DEBUG, Diagnostics.of("test.prefix.later").getLevel());
+        assertEquals(Level.INFO, Diagnostics.of("test.prefixless").getLevel());
+
+        Diagnostics.resetLevels();
+        assertEquals(Level.INFO, worker.getLevel());
+    }
+
+    @Test
+    void restoreLevelFallsBackToTheEnclosingPrefix() {
+        Diagnostics.setLevel("test.restore", Level.WARN);
+        Diagnostics d = Diagnostics.of("test.restore.cache");
+        Diagnostics.setLevel(d.getComponent(), Level.DEBUG);
+        assertTrue(d.isDebugEnabled());
+
+        Diagnostics.restoreLevel(d.getComponent());
+        assertEquals(Level.WARN, d.getLevel());
+    }
+
+    @Test
+    void evaluationResultDebugSwitchKeepsTheConfiguredLevel() {
+        Diagnostics.setLevel("trigger.expr", Level.ERROR);
+        Diagnostics cache = Diagnostics.of("trigger.expr.cache");
+        EvaluationResult.setDebug(true);
+        assertEquals(Level.DEBUG, cache.getLevel());
+        // 無効にすると INFO ではなく、設定されていたレベルに戻る
+        EvaluationResult.setDebug(false);
+        assertEquals(Level.ERROR, cache.getLevel());
+    }
+
+    @Test
+    void configureParsesSpecAndIgnoresBadItems() {
+        Diagnostics.configure("test.cfg=trace, test.cfg.quiet = off ,test.cfg.bad=loud");
+        assertTrue(Diagnostics.of("test.cfg.a").isTraceEnabled());
+        assertEquals(Level.OFF, Diagnostics.of("test.cfg.quiet").getLevel());
+        assertEquals(Level.TRACE, Diagnostics.of("test.cfg.bad").getLevel());
+
+        Diagnostics.configure("warn");
+        assertEquals(Level.WARN, Diagnostics.of("test.other").getLevel());
+    }
+
+    @Test
+    void disabledCallsDoNotBuildMessages() {
+        Diagnostics d = Diagnostics.of("test.lazy");
+        AtomicInteger built = new AtomicInteger();
+        d.debug(() -> "dump " + built.incrementAndGet());
+        assertEquals(0, built.get());
+
+        Diagnostics.setLevel("test.lazy", Level.DEBUG);
+        d.debug(() -> "dump " + built.incrementAndGet());
+        assertEquals(1, built.get());
+    }
+
+    @Test
+    void disabledErrorsDoNotFormatTheirArguments() {
+        Diagnostics d = Diagnostics.of("test.lazy.error");
+        AtomicInteger formatted = new AtomicInteger();
+        Object task = new Object() {
+            @Override public String toString() { return "task " + formatted.incrementAndGet(); }
+        };
+        Diagnostics.setLevel("test.lazy.error", Level.OFF);
+        d.error("[{}] Error executing task {}", "worker", task, new IllegalStateException("boom"));
+        d.error("Evaluation error: {}", task, new IllegalStateException("boom"));
+        assertEquals(0, formatted.get());
+    }
+}
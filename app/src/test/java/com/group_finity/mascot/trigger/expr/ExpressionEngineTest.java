@@ -2,12 +2,17 @@ package com.group_finity.mascot.trigger.expr;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.SlotVariables;
 import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
 import com.group_finity.mascot.trigger.expr.type.Mode;
 
@@ -70,4 +75,45 @@ public class ExpressionEngineTest {
         Object result = engine.evaluate("1 + * 2", context);
         assertEquals(Boolean.FALSE, result);
     }
+
+    @Test
+    void testConcurrentEvaluationOnSharedContext() throws Exception {
+        // 同じエンジン・同じコンテキストを複数スレッドから評価する（ティック中はメモのミスごとに部分木の依存を集める）
+        SlotVariables vars = new SlotVariables();
+        vars.put("time", 1500L);
+        vars.put("hp", 3L);
+        EvaluationContext shared = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT, true);
+        ExpressionEngine compiling = new ExpressionEngine();
+        compiling.setCompileThreshold(4);
+
+        shared.beginTick();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger errors = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int n = 0; n < 3_000; n++) {
+                        Object expected = (1500 > n) && (n % 7 < 5);
+                        if (!expected.equals(compiling.evaluate("time > " + n + " && (hp + " + (n % 7) + ") - hp < 5", shared))) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.incrementAndGet();
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        start.countDown();
+        for (Thread w : workers) w.join();
+        shared.endTick();
+
+        assertEquals(0, errors.get());
+        assertTrue(compiling.getFailureCache().isEmpty());
+        // 読んだ変数は評価ごとの子に記録され、共有コンテキストの記録には触れない
+        assertTrue(shared.snapshotDependencies().isEmpty());
+    }
 }
@@ -0,0 +1,115 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * 評価コスト・ヒット頻度・依存の変わりやすさによる保持判定を確認する。
+ */
+public class CachePolicyTest {
+
+    private static ExprCacheKey key(String s) {
+        return new ExprCacheKey(s, Mode.LOOSE);
+    }
+
+    private static EvaluationResult costing(long nanos) {
+        return new EvaluationResult(true, Map.of("x", 0), 0L, nanos, Mode.LOOSE);
+    }
+
+    @Test
+    void admitAllKeepsEverything() {
+        ExprCacheManager cache = new ExprCacheManager(4);
+        assertSame(CachePolicy.ADMIT_ALL, cache.policy());
+        cache.put(key("1 === 1"), costing(0L));
+        assertTrue(cache.get(key("1 === 1")).isPresent());
+    }
+
+    @Test
+    void cheapResultsBypassTheCache() {
+        ExprCacheManager cache = new ExprCacheManager(4, CachePolicy.costAware(10_000L, 0, 0.0));
+        cache.put(key("cheap"), costing(100L));
+        cache.put(key("expensive"), costing(50_000L));
+
+        assertTrue(cache.get(key("cheap")).isEmpty());
+        assertTrue(cache.get(key("expensive")).isPresent());
+        // 素通りしたキーも統計のために追跡はしている
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void bypassedKeyIsAdmittedOnceItBecomesExpensive() {
+        ExprCacheManager cache = new ExprCacheManager(4, CachePolicy.costAware(10_000L, 0, 0.0));
+        cache.put(key("k"), costing(100L));
+        assertTrue(cache.get(key("k")).isEmpty());
+        // 平均コストが閾値を超えるまで数回かかる
+        for (int i = 0; i < 8; i++) cache.put(key("k"), costing(100_000L));
+        assertTrue(cache.get(key("k")).isPresent());
+    }
+
+    @Test
+    void volatileKeysStopBeingCached() {
+        ExprCacheManager cache = new ExprCacheManager(4, CachePolicy.costAware(0L, 8, 1.0));
+        ExprCacheKey k = key("x > 1");
+        cache.put(k, costing(1_000L));
+        // 読まれる前に毎回無効化→再計算される
+        for (int i = 0; i < 10; i++) {
+            cache.invalidate("x");
+            cache.put(k, costing(1_000L));
+        }
+        assertTrue(cache.get(k).isEmpty());
+    }
+
+    @Test
+    void frequentlyReadKeysStayCached() {
+        ExprCacheManager cache = new ExprCacheManager(4, CachePolicy.costAware(0L, 8, 1.0));
+        ExprCacheKey k = key("x > 1");
+        cache.put(k, costing(1_000L));
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 3; j++) assertTrue(cache.get(k).isPresent());
+            cache.invalidate("x");
+            cache.put(k, costing(1_000L));
+        }
+        assertTrue(cache.get(k).isPresent());
+    }
+
+    @Test
+    void hitCountsSaturateSoHotKeysCanStillTurnVolatile() {
+        ExprCacheManager cache = new ExprCacheManager(4, CachePolicy.costAware(0L, 8, 1.0));
+        ExprCacheKey k = key("x > 1");
+        cache.put(k, costing(1_000L));
+        // ヒット数は decayAt() で頭打ちになるので、大量に読まれた後でも数十回の再計算で素通りに変わる
+        for (int i = 0; i < 100_000; i++) assertTrue(cache.get(k).isPresent());
+        for (int i = 0; i < 20; i++) {
+            cache.invalidate("x");
+            cache.put(k, costing(1_000L));
+        }
+        assertTrue(cache.get(k).isEmpty());
+    }
+
+    @Test
+    void expensiveEntriesOutliveCheapOnesOnEviction() {
+        ExprCacheManager cache = new ExprCacheManager(2, CachePolicy.costAware(1_000L, 0, 0.0));
+        cache.put(key("costly"), costing(1_000_000L));
+        cache.put(key("plain"), costing(1_000L));
+        cache.get(key("costly"));
+        cache.get(key("plain"));
+
+        cache.put(key("a"), costing(1_000L));
+        cache.put(key("b"), costing(1_000L));
+
+        assertTrue(cache.get(key("costly")).isPresent());
+        assertTrue(cache.get(key("plain")).isEmpty());
+    }
+
+    @Test
+    void rejectsNegativeParameters() {
+        assertThrows(IllegalArgumentException.class, () -> CachePolicy.costAware(-1L, 0, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> CachePolicy.costAware(0L, -1, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> new ExprCacheManager(4, null));
+    }
+}
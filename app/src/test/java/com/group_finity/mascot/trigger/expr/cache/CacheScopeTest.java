@@ -0,0 +1,134 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.TriggerCondition;
+import com.group_finity.mascot.trigger.expr.eval.SlotVariables;
+
+/**
+ * 区画ごとのキャッシュ分割と統計を確認する。
+ */
+public class CacheScopeTest {
+
+    @BeforeEach
+    void setup() {
+        CacheStatsTracker.INSTANCE.reset();
+    }
+
+    private static TriggerCondition mascot(int x, CacheScope scope) {
+        SlotVariables vars = new SlotVariables();
+        vars.put("x", x);
+        return new TriggerCondition("x > 50", vars, scope);
+    }
+
+    @Test
+    void privateScopesDoNotOverwriteEachOther() {
+        List<TriggerCondition> mascots = new ArrayList<>();
+        for (int i = 0; i < 20; i++) mascots.add(mascot(i * 10, CacheScope.newPrivate("m" + i)));
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < mascots.size(); i++) {
+                assertEquals(i * 10 > 50, mascots.get(i).evaluate());
+            }
+        }
+        // 1巡目だけミス、以降は各マスコットの区画でヒットする
+        assertEquals(20, CacheStatsTracker.INSTANCE.getMissCount());
+        assertEquals(40, CacheStatsTracker.INSTANCE.getHitCount());
+        assertEquals(2.0 / 3, CacheStatsTracker.INSTANCE.getScopeHitRate("private:m3"), 1e-9);
+    }
+
+    @Test
+    void sharedGlobalScopeThrashes() {
+        TriggerCondition a = mascot(10, CacheScope.global());
+        TriggerCondition b = mascot(90, CacheScope.global());
+        for (int round = 0; round < 3; round++) {
+            assertFalse(a.evaluate());
+            assertTrue(b.evaluate());
+        }
+        // 同じキーを別の変数表の結果で上書きし合うので毎回ミスする
+        assertEquals(0, CacheStatsTracker.INSTANCE.getHitCount());
+        assertEquals(6L, (long) CacheStatsTracker.INSTANCE.getPerScopeMisses().get("global"));
+    }
+
+    @Test
+    void countersBelongToTheScopeInstance() {
+        CacheScope first = CacheScope.newPrivate("dup");
+        CacheScope second = CacheScope.newPrivate("dup");
+        assertNotSame(CacheStatsTracker.INSTANCE.scopeCounters(first), CacheStatsTracker.INSTANCE.scopeCounters(second));
+
+        mascot(10, first).evaluate();
+        TriggerCondition other = mascot(90, second);
+        other.evaluate();
+        other.evaluate();
+        // 同名の区画は報告ではまとめて数える
+        assertEquals(2L, (long) CacheStatsTracker.INSTANCE.getPerScopeMisses().get("private:dup"));
+        assertEquals(1L, (long) CacheStatsTracker.INSTANCE.getPerScopeHits().get("private:dup"));
+    }
+
+    @Test
+    void groupScopesAreSharedByName() {
+        assertSame(CacheScope.group("cats"), CacheScope.group("cats"));
+        assertNotSame(CacheScope.group("cats"), CacheScope.group("dogs"));
+        assertEquals(CacheScope.Kind.GROUP, CacheScope.group("cats").kind());
+        assertThrows(IllegalArgumentException.class, () -> CacheScope.group(""));
+    }
+
+    @Test
+    void invalidationStaysWithTheWrittenMascot() {
+        TriggerCondition a = mascot(10, CacheScope.newPrivate("a"));
+        TriggerCondition b = mascot(20, CacheScope.group("invalidation"));
+        TriggerCondition c = mascot(30, CacheScope.group("invalidation-shared"));
+        TriggerCondition d = new TriggerCondition("x < 50", new SlotVariables(Map.of("x", 30)),
+            CacheScope.group("invalidation-shared"));
+        a.evaluate();
+        b.evaluate();
+        c.evaluate();
+        d.evaluate();
+        long hits = CacheStatsTracker.INSTANCE.getHitCount();
+
+        a.setVariable("x", 99);
+        assertEquals(0, a.getCacheScope().cache().invalidate("x"), "a の結果は setValue で無効化済み");
+        assertTrue(a.evaluate());
+
+        // 他のマスコットの区画の結果はそのまま
+        assertFalse(b.evaluate());
+        assertEquals(hits + 1, CacheStatsTracker.INSTANCE.getHitCount());
+
+        // 同じ区画でも、書き込んだ変数表から計算した結果だけが無効になる
+        c.setVariable("x", 60);
+        assertTrue(d.evaluate());
+        assertEquals(hits + 2, CacheStatsTracker.INSTANCE.getHitCount());
+        assertTrue(c.evaluate());
+        assertEquals(hits + 2, CacheStatsTracker.INSTANCE.getHitCount());
+    }
+
+    @Test
+    void switchingScopesDetachesThePreviousOne() {
+        SlotVariables vars = new SlotVariables(Map.of("x", 10));
+        CacheScope shared = CacheScope.group("switch");
+        TriggerCondition first = new TriggerCondition("x > 50", vars, shared);
+        TriggerCondition second = new TriggerCondition("x < 50", vars, shared);
+        first.evaluate();
+        second.evaluate();
+
+        // second がまだ同じ区画で同じ変数表を使っているので、書き込みは区画の結果を無効化し続ける
+        first.setCacheScope(CacheScope.newPrivate("switched"));
+        first.setVariable("x", 20);
+        assertEquals(0, shared.cache().invalidate("x"));
+
+        // 最後の利用者が抜けると、変数表は区画を参照しなくなる
+        second.evaluate();
+        second.setCacheScope(CacheScope.newPrivate("switched-too"));
+        second.setVariable("x", 30);
+        assertEquals(1, shared.cache().invalidate("x"));
+        assertFalse(first.evaluate());
+        assertTrue(second.evaluate());
+    }
+}
@@ -0,0 +1,102 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * LongAdder カウンタ・レイテンシヒストグラム・スナップショットを確認する。
+ */
+public class CacheStatsTrackerTest {
+
+    @Test
+    void histogramBucketsAreContiguous() {
+        for (long v = 0; v < 100_000; v++) {
+            int i = LatencyHistogram.indexOf(v);
+            assertTrue(v <= LatencyHistogram.highestValueOf(i), "v=" + v);
+            if (i > 0) assertTrue(v > LatencyHistogram.highestValueOf(i - 1), "v=" + v);
+        }
+        assertTrue(LatencyHistogram.indexOf(Long.MAX_VALUE) < LatencyHistogram.BUCKETS);
+    }
+
+    @Test
+    void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) h.record(i * 1000L);
+        LatencyHistogram.Snapshot s = h.snapshot();
+
+        assertEquals(1000, s.getCount());
+        assertEquals(1_000_000L, s.getMax());
+        assertEquals(500_500.0, s.getMean(), 1e-6);
+        long p50 = s.getValueAtPercentile(50);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, "p50=" + p50);
+        long p99 = s.getValueAtPercentile(99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99=" + p99);
+        assertEquals(0L, new LatencyHistogram().snapshot().getValueAtPercentile(99));
+    }
+
+    @Test
+    void handlesCountPerTriggerAndScopeAndSurviveReset() {
+        CacheStatsTracker stats = new CacheStatsTracker();
+        CacheStatsTracker.Counters trigger = stats.counters("x > 1");
+        CacheStatsTracker.Counters scope = stats.scopeCounters(CacheScope.group("stats"));
+        assertSame(trigger, stats.counters("x > 1"));
+
+        stats.recordHit(trigger, scope, 100L);
+        stats.recordHit(trigger, scope, 200L);
+        stats.recordMiss(trigger, scope, 5_000L);
+
+        CacheStatsSnapshot snap = stats.snapshot();
+        assertEquals(2, snap.getHitCount());
+        assertEquals(1, snap.getMissCount());
+        assertEquals(2L, (long) snap.getPerTriggerHits().get("x > 1"));
+        assertEquals(1L, (long) snap.getPerScopeMisses().get("group:stats"));
+        assertEquals(2, snap.getHitLatency().getCount());
+        assertEquals(5_000L, snap.getMissLatency().getMax());
+
+        stats.reset();
+        assertEquals(0, stats.getHitCount());
+        stats.recordHit(trigger, scope, 100L);
+        assertEquals(1L, (long) stats.getPerTriggerHits().get("x > 1"));
+        // 取得済みのスナップショットは変わらない
+        assertEquals(2, snap.getHitCount());
+    }
+
+    @Test
+    void hitLatencyIsSampled() {
+        CacheStatsTracker stats = new CacheStatsTracker();
+        CacheStatsTracker.Counters trigger = stats.counters("sampled");
+        int lookups = 100 * CacheStatsTracker.HIT_LATENCY_SAMPLE_INTERVAL;
+        int sampled = 0;
+        for (int i = 0; i < lookups; i++) {
+            if (CacheStatsTracker.sampleLookup()) {
+                sampled++;
+                stats.recordHit(trigger, null, 100L);
+            } else {
+                stats.recordHit(trigger, null);
+            }
+        }
+        // 平均で 1/HIT_LATENCY_SAMPLE_INTERVAL（期待値 100 回）
+        assertTrue(sampled > 0 && sampled < lookups / 8, "sampled " + sampled);
+        assertEquals(lookups, stats.getHitCount());
+        assertEquals(sampled, stats.getHitLatency().snapshot().getCount());
+    }
+
+    @Test
+    void periodicSnapshotsAreDelivered() throws Exception {
+        CacheStatsTracker stats = new CacheStatsTracker();
+        stats.recordHit("t");
+        BlockingQueue<CacheStatsSnapshot> out = new ArrayBlockingQueue<>(16);
+        try (AutoCloseable handle = stats.startPeriodicSnapshots(Duration.ofMillis(10), out::offer)) {
+            CacheStatsSnapshot first = out.poll(5, TimeUnit.SECONDS);
+            assertNotNull(first);
+            assertEquals(1, first.getHitCount());
+        }
+        assertThrows(IllegalArgumentException.class, () -> stats.startPeriodicSnapshots(Duration.ZERO, s -> {}));
+    }
+}
@@ -0,0 +1,101 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.TriggerCondition;
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.SlotVariables;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * 変数→キャッシュキーの逆引き索引による無効化を確認する。
+ */
+public class DependencyInvalidationTest {
+
+    private static EvaluationResult dependsOn(Object value, String... names) {
+        Map<String, Object> deps = new LinkedHashMap<>();
+        for (String n : names) deps.put(n, 0);
+        return new EvaluationResult(value, deps, 0L, 0L, Mode.LOOSE);
+    }
+
+    @Test
+    void invalidateMarksOnlyDependentEntries() {
+        ExprCacheManager cache = new ExprCacheManager(8);
+        ExprCacheKey time = new ExprCacheKey("(time > 1000)", Mode.LOOSE);
+        ExprCacheKey both = new ExprCacheKey("((time > 1) && awake)", Mode.LOOSE);
+        ExprCacheKey mood = new ExprCacheKey("(mood === \"idle\")", Mode.LOOSE);
+        cache.put(time, dependsOn(true, "time"));
+        cache.put(both, dependsOn(false, "time", "awake"));
+        cache.put(mood, dependsOn(true, "mood"));
+
+        assertEquals(2, cache.dependentCount("time"));
+        assertEquals(2, cache.invalidate("time"));
+        assertTrue(cache.get(time).isEmpty());
+        assertTrue(cache.get(both).isEmpty());
+        assertTrue(cache.get(mood).isPresent());
+        assertEquals(0, cache.invalidate("time"), "already dirty");
+
+        // 再登録で dirty が解除され、依存の変化も索引に反映される
+        cache.put(both, dependsOn(true, "awake"));
+        assertTrue(cache.get(both).isPresent());
+        assertEquals(1, cache.dependentCount("time"));
+        assertEquals(0, cache.invalidate("unknown"));
+    }
+
+    private static EvaluationResult readX(SlotVariables vars) {
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.LOOSE, true);
+        ctx.getVariable("x");
+        return new EvaluationResult(true, ctx.snapshotDependencies(), ctx.stampDependencies(), 0L, 0L, Mode.LOOSE);
+    }
+
+    @Test
+    void invalidationIsLimitedToTheWrittenTable() {
+        ExprCacheManager cache = new ExprCacheManager(8);
+        SlotVariables a = new SlotVariables(Map.of("x", 1));
+        SlotVariables b = new SlotVariables(Map.of("x", 2));
+        ExprCacheKey fromA = new ExprCacheKey("(x > 0) /* a */", Mode.LOOSE);
+        ExprCacheKey fromB = new ExprCacheKey("(x > 0) /* b */", Mode.LOOSE);
+        cache.put(fromA, readX(a));
+        cache.put(fromB, readX(b));
+
+        assertEquals(1, cache.invalidate(a.id(), "x"));
+        assertTrue(cache.get(fromA).isEmpty());
+        assertTrue(cache.get(fromB).isPresent(), "別の変数表の結果はそのまま");
+        assertEquals(0, cache.invalidate(a.id(), "y"));
+
+        // 同じキーを別の変数表で計算し直すと索引も移る
+        cache.put(fromA, readX(b));
+        assertEquals(0, cache.invalidate(a.id(), "x"));
+        assertEquals(2, cache.invalidate(b.id(), "x"));
+    }
+
+    @Test
+    void evictionRemovesIndexEntries() {
+        ExprCacheManager cache = new ExprCacheManager(1);
+        cache.put(new ExprCacheKey("a", Mode.LOOSE), dependsOn(1, "x"));
+        cache.put(new ExprCacheKey("b", Mode.LOOSE), dependsOn(2, "y"));
+        assertEquals(0, cache.dependentCount("x"));
+        assertEquals(1, cache.dependentCount("y"));
+    }
+
+    @Test
+    void setValueInvalidatesTriggerConditionResults() {
+        CacheStatsTracker.INSTANCE.reset();
+        SlotVariables vars = new SlotVariables(Map.of("hunger", 10L));
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.LOOSE, true);
+        TriggerCondition condition = new TriggerCondition("hunger >= 10", vars);
+
+        assertTrue(condition.evaluate(ctx));
+        assertTrue(condition.evaluate(ctx));
+        ctx.setValue("hunger", 3L);
+        assertFalse(condition.evaluate(ctx));
+        assertEquals(1, CacheStatsTracker.INSTANCE.getHitCount());
+        assertEquals(2, CacheStatsTracker.INSTANCE.getMissCount());
+    }
+}
@@ -0,0 +1,56 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.node.BinaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.LiteralNode;
+import com.group_finity.mascot.trigger.expr.node.UnaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.VariableNode;
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * 構造ハッシュによるキャッシュキーの同値判定と正規形を確認する。
+ */
+public class ExprCacheKeyTest {
+
+    /** インターンを通さずに同じ構造の木を作る */
+    private static ExpressionNode tree() {
+        return BinaryExpressionNode.of(
+            new UnaryExpressionNode("-", new VariableNode("x")), "<", new LiteralNode(2.5));
+    }
+
+    @Test
+    void structurallyEqualTreesGiveEqualKeys() {
+        ExpressionNode a = tree();
+        ExpressionNode b = tree();
+        assertNotSame(a, b);
+        assertEquals(a.structuralHash(), b.structuralHash());
+
+        ExprCacheKey ka = ExprCacheKey.ofAst(a, Mode.STRICT);
+        assertEquals(ka, ExprCacheKey.ofAst(b, Mode.STRICT));
+        assertEquals(ka.hashCode(), ExprCacheKey.ofAst(b, Mode.STRICT).hashCode());
+        assertNotEquals(ka, ExprCacheKey.ofAst(b, Mode.LOOSE));
+        assertEquals("((-x) < 2.5)", ka.getCanonicalAst());
+    }
+
+    @Test
+    void hashSeparatesSimilarTrees() {
+        long base = ExpressionParser.parse("x < 1").structuralHash();
+        assertNotEquals(base, ExpressionParser.parse("x <= 1").structuralHash());
+        assertNotEquals(base, ExpressionParser.parse("x < 1.0").structuralHash());
+        assertNotEquals(base, ExpressionParser.parse("y < 1").structuralHash());
+        assertNotEquals(base, ExpressionParser.parse("x < '1'").structuralHash());
+        assertNotEquals(new VariableNode("x").structuralHash(), new VariableNode("x", Double.class).structuralHash());
+        assertEquals("x:Double", new VariableNode("x", Double.class).toCanonicalString());
+    }
+
+    @Test
+    void stringKeysCompareByCanonicalForm() {
+        assertEquals(new ExprCacheKey("(x < 1)", Mode.STRICT), new ExprCacheKey("(x < 1)", Mode.STRICT));
+        assertNotEquals(new ExprCacheKey("(x < 1)", Mode.STRICT), new ExprCacheKey("(x < 2)", Mode.STRICT));
+    }
+}
@@ -0,0 +1,111 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * 容量制限・CLOCK による追い出し・並行アクセスを確認する。
+ */
+public class ExprCacheManagerTest {
+
+    private static ExprCacheKey key(int i) {
+        return new ExprCacheKey("k" + i, Mode.STRICT);
+    }
+
+    private static EvaluationResult result(Object value) {
+        return new EvaluationResult(value, Map.of(), 0L, 0L, Mode.STRICT);
+    }
+
+    @Test
+    void putGetAndUpdate() {
+        ExprCacheManager cache = new ExprCacheManager(4);
+        assertTrue(cache.get(key(1)).isEmpty());
+        cache.put(key(1), result(1));
+        cache.put(key(1), result(2));
+        assertEquals(2, cache.get(key(1)).orElseThrow().getValue());
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new ExprCacheManager(0));
+    }
+
+    @Test
+    void evictsUnreferencedEntriesFirst() {
+        ExprCacheManager cache = new ExprCacheManager(3);
+        cache.put(key(1), result(1));
+        cache.put(key(2), result(2));
+        cache.put(key(3), result(3));
+
+        // 1 と 3 を読むと、次の追加では読まれていない 2 が追い出される
+        cache.get(key(1));
+        cache.get(key(3));
+        cache.put(key(4), result(4));
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.get(key(2)).isEmpty());
+        assertTrue(cache.get(key(1)).isPresent());
+        assertTrue(cache.get(key(3)).isPresent());
+        assertTrue(cache.get(key(4)).isPresent());
+    }
+
+    @Test
+    void byteBudgetBoundsEntriesWithManyDependencies() {
+        Map<String, Object> deps = new java.util.HashMap<>();
+        for (int i = 0; i < 10; i++) deps.put("v" + i, i);
+        int weight = ExprCacheManager.weightOf(deps.size());
+        ExprCacheManager cache = new ExprCacheManager(16, CachePolicy.ADMIT_ALL, 2L * weight + 10);
+
+        for (int i = 0; i < 5; i++) {
+            cache.put(key(i), new EvaluationResult(i, deps, 0L, 0L, Mode.STRICT));
+            assertTrue(cache.bytes() <= cache.maxBytes(), "bytes=" + cache.bytes());
+        }
+        // 容量には余裕があっても、見積もりの上限で2件までに抑えられる
+        assertEquals(2, cache.size());
+        assertTrue(cache.get(key(4)).isPresent());
+
+        // 依存の少ない結果は同じ上限により多く入る
+        cache.clear();
+        assertEquals(0, cache.bytes());
+        for (int i = 0; i < 5; i++) cache.put(key(i), result(i));
+        assertEquals(5, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new ExprCacheManager(4, CachePolicy.ADMIT_ALL, 0));
+    }
+
+    @Test
+    void staysWithinCapacityUnderConcurrentAccess() throws Exception {
+        ExprCacheManager cache = new ExprCacheManager(64);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger mismatches = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread w = new Thread(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                for (int i = 0; i < 20_000; i++) {
+                    int k = (i * 31 + seed) % 200;
+                    cache.put(key(k), result(k));
+                    cache.get(key(k)).ifPresent(r -> {
+                        if (!r.getValue().equals(k)) mismatches.incrementAndGet();
+                    });
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        start.countDown();
+        for (Thread w : workers) w.join();
+
+        assertEquals(0, mismatches.get());
+        assertTrue(cache.size() <= 64, "size=" + cache.size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.ExpressionEngine;
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.SlotVariables;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * 解析・評価に失敗した式を入力が変わるまで再試行しないことを確認する。
+ */
+public class FailureCacheTest {
+
+    private static EvaluationContext shared(Map<String, Object> vars) {
+        return new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT, true);
+    }
+
+    @Test
+    void parseFailureIsNotRetried() {
+        ExpressionEngine engine = new ExpressionEngine();
+        FailureCache failures = engine.getFailureCache();
+        EvaluationContext ctx = shared(new SlotVariables());
+
+        for (int i = 0; i < 5; i++) assertEquals(Boolean.FALSE, engine.evaluate("1 +", ctx));
+
+        FailureCache.Failure f = failures.parseFailure("1 +");
+        assertNotNull(f);
+        assertEquals(FailureCache.Phase.PARSE, f.getPhase());
+        assertEquals(1, f.getFailureCount());
+        assertEquals(5, f.getSuppressedCount()); // 4回の評価 + 上の parseFailure 呼び出し
+
+        engine.clearCache();
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    void evaluationFailureIsRetriedOnlyWhenDependencyChanges() {
+        ExpressionEngine engine = new ExpressionEngine();
+        FailureCache failures = engine.getFailureCache();
+        SlotVariables vars = new SlotVariables();
+        vars.put("x", "abc");
+        vars.put("unrelated", 1);
+        EvaluationContext ctx = shared(vars);
+
+        assertEquals(Boolean.FALSE, engine.evaluate("x - 1 > 0", ctx));
+        assertEquals(Boolean.FALSE, engine.evaluate("x - 1 > 0", ctx));
+        ctx.setValue("unrelated", 2);
+        assertEquals(Boolean.FALSE, engine.evaluate("x - 1 > 0", ctx));
+
+        FailureCache.Failure f = failures.failures().get(0);
+        assertEquals(FailureCache.Phase.EVALUATION, f.getPhase());
+        assertEquals(1, f.getFailureCount());
+        assertEquals(2, f.getSuppressedCount());
+        assertEquals(Map.of("x", "abc"), f.getDependencies());
+
+        ctx.setValue("x", 5);
+        assertEquals(Boolean.TRUE, engine.evaluate("x - 1 > 0", ctx));
+        assertNull(failures.evaluationFailure("x - 1 > 0", ctx));
+    }
+
+    @Test
+    void variablesReadByEarlierExpressionsAreNotPartOfTheFailure() {
+        ExpressionEngine engine = new ExpressionEngine();
+        FailureCache failures = engine.getFailureCache();
+        SlotVariables vars = new SlotVariables();
+        vars.put("x", "abc");
+        vars.put("unrelated", 1);
+        EvaluationContext ctx = shared(vars);
+
+        // 同じコンテキストで別の式が unrelated を読んだ後に失敗しても、unrelated の書き込みでは再試行しない
+        assertEquals(Boolean.TRUE, engine.evaluate("unrelated > 0", ctx));
+        assertEquals(Boolean.FALSE, engine.evaluate("x - 1 > 0", ctx));
+        ctx.setValue("unrelated", 2);
+        assertEquals(Boolean.FALSE, engine.evaluate("x - 1 > 0", ctx));
+
+        FailureCache.Failure f = failures.failures().get(0);
+        assertEquals(1, f.getFailureCount());
+        assertEquals(Map.of("x", "abc"), f.getDependencies());
+    }
+
+    @Test
+    void plainMapsAreComparedByValue() {
+        FailureCache failures = new FailureCache();
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("x", "abc");
+        EvaluationContext ctx = shared(vars);
+        ctx.getVariable("x");
+        failures.recordEvaluationFailure("x - 1", new RuntimeException("boom"), ctx);
+
+        assertNotNull(failures.evaluationFailure("x - 1", ctx));
+        assertNull(failures.evaluationFailure("x - 1",
+            new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.LOOSE, true)), "mode が違えば再試行");
+        vars.put("x", "def");
+        assertNull(failures.evaluationFailure("x - 1", ctx));
+        vars.put("x", "abc");
+        assertNotNull(failures.evaluationFailure("x - 1", ctx));
+    }
+
+    @Test
+    void repeatsAreCountedUntilReported() {
+        FailureCache failures = new FailureCache();
+        failures.setReportInterval(Duration.ofHours(1));
+        for (int i = 0; i < 3; i++) failures.recordParseFailure("(", new RuntimeException("Unexpected token"));
+        assertEquals(3, failures.parseFailure("(").getFailureCount());
+        assertEquals(1, failures.size());
+
+        failures.forget("(");
+        assertNull(failures.parseFailure("("));
+        assertThrows(IllegalArgumentException.class, () -> failures.setReportInterval(Duration.ofSeconds(-1)));
+    }
+}
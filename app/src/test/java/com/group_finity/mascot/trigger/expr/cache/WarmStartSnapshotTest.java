@@ -0,0 +1,157 @@
+package com.group_finity.mascot.trigger.expr.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.TriggerCondition;
+import com.group_finity.mascot.trigger.expr.eval.SlotVariables;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.NodeCodec;
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.parser.TypeInference;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
+
+/**
+ * ウォームスタート用スナップショットの保存・復元を確認する。
+ */
+public class WarmStartSnapshotTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("warmstart");
+        TriggerCondition.setVariableSchema(VariableSchema.EMPTY);
+        CacheStatsTracker.INSTANCE.reset();
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        try (var files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) Files.delete(f);
+        }
+        Files.delete(dir);
+        TriggerCondition.setVariableSchema(VariableSchema.EMPTY);
+        CacheStatsTracker.INSTANCE.reset();
+    }
+
+    private static TriggerCondition condition(String expr, int x) {
+        SlotVariables vars = new SlotVariables();
+        vars.put("x", x);
+        return new TriggerCondition(expr, vars);
+    }
+
+    @Test
+    void codecRoundTripsTypedTrees() throws Exception {
+        VariableSchema schema = VariableSchema.EMPTY.with("hp", Double.class).with("awake", Boolean.class);
+        ExpressionNode node = new TypeInference(schema, new DefaultTypeResolver())
+            .apply(ExpressionParser.parse("(hp * 2 > 10.5 && awake) || name === \"neko\\\"\" || !flag"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NodeCodec.write(node, new DataOutputStream(bytes));
+        ExpressionNode read = NodeCodec.read(ByteBuffer.wrap(bytes.toByteArray()));
+
+        assertEquals(node, read);
+        assertEquals(node.structuralHash(), read.structuralHash());
+        assertEquals(node.toCanonicalString(), read.toCanonicalString());
+    }
+
+    @Test
+    void restoredResultIsReusedWhileDependenciesMatch() throws Exception {
+        assertTrue(condition("x + 1 === 2", 1).evaluate());
+        Path file = dir.resolve("warm.bin");
+        assertEquals(2, TriggerCondition.saveWarmStart(file));
+
+        // 再起動相当：AST と結果のキャッシュを空にする
+        TriggerCondition.setVariableSchema(VariableSchema.EMPTY);
+        CacheStatsTracker.INSTANCE.reset();
+        assertEquals(2, TriggerCondition.loadWarmStart(file));
+
+        assertTrue(condition("x + 1 === 2", 1).evaluate());
+        assertEquals(1, CacheStatsTracker.INSTANCE.getHitCount());
+
+        // 依存変数の値が違えば使わない
+        assertFalse(condition("x + 1 === 2", 5).evaluate());
+        assertEquals(1, CacheStatsTracker.INSTANCE.getMissCount());
+    }
+
+    @Test
+    void primitiveSchemaRoundTripsAndRestoredResultsHitInStrictMode() throws Exception {
+        VariableSchema schema = VariableSchema.EMPTY
+            .with("wsTick", long.class).with("wsSpeed", double.class).with("wsAwake", boolean.class);
+        ExpressionNode node = new TypeInference(schema, new DefaultTypeResolver())
+            .apply(ExpressionParser.parse("wsTick > 5 && wsSpeed < 2.0 && wsAwake"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NodeCodec.write(node, new DataOutputStream(bytes));
+        assertEquals(node, NodeCodec.read(ByteBuffer.wrap(bytes.toByteArray())));
+
+        TriggerCondition.setVariableSchema(schema);
+        String expr = "wsTick > 5 && wsSpeed < 2.0 && wsAwake";
+        assertTrue(new TriggerCondition(expr, typedVariables(schema, 10L, 1)).evaluate());
+        Path file = dir.resolve("warm.bin");
+        assertEquals(2, TriggerCondition.saveWarmStart(file));
+
+        TriggerCondition.setVariableSchema(schema);
+        CacheStatsTracker.INSTANCE.reset();
+        assertEquals(2, TriggerCondition.loadWarmStart(file));
+
+        // 依存していない変数の値が違っても、依存変数が同じなら STRICT でも使う
+        assertTrue(new TriggerCondition(expr, typedVariables(schema, 10L, 2)).evaluate());
+        assertEquals(1, CacheStatsTracker.INSTANCE.getHitCount());
+        assertFalse(new TriggerCondition(expr, typedVariables(schema, 3L, 2)).evaluate());
+        assertEquals(1, CacheStatsTracker.INSTANCE.getMissCount());
+    }
+
+    private static SlotVariables typedVariables(VariableSchema schema, long tick, int unrelated) {
+        SlotVariables vars = new SlotVariables(schema);
+        vars.put("wsTick", tick);
+        vars.put("wsSpeed", 1.5);
+        vars.put("wsAwake", true);
+        vars.put("wsUnrelated", unrelated);
+        return vars;
+    }
+
+    @Test
+    void fingerprintMismatchRestoresNothing() throws Exception {
+        Path file = dir.resolve("warm.bin");
+        WarmStartSnapshot.write(file, 1L,
+            List.of(new WarmStartSnapshot.Expression("x > 1", ExpressionParser.parse("x > 1"), false)), List.of());
+
+        assertEquals(1, WarmStartSnapshot.read(file, 1L).getExpressions().size());
+        assertTrue(WarmStartSnapshot.read(file, 2L).getExpressions().isEmpty());
+        assertTrue(WarmStartSnapshot.read(dir.resolve("missing.bin"), 1L).getExpressions().isEmpty());
+    }
+
+    @Test
+    void corruptRecordsAreSkipped() throws Exception {
+        Path file = dir.resolve("warm.bin");
+        WarmStartSnapshot.write(file, 7L, List.of(
+            new WarmStartSnapshot.Expression("a > 1", ExpressionParser.parse("a > 1"), false),
+            new WarmStartSnapshot.Expression("b > 2", ExpressionParser.parse("b > 2"), false)), List.of());
+
+        // 1件目のノードタグを壊す（ヘッダ16 + 件数4 + 長さ4 + 式文字列(4+5) + compiled 1 + hash 8）
+        byte[] data = Files.readAllBytes(file);
+        data[16 + 4 + 4 + 9 + 1 + 8] = 99;
+        Files.write(file, data);
+
+        WarmStartSnapshot snapshot = WarmStartSnapshot.read(file, 7L);
+        assertEquals(1, snapshot.getExpressions().size());
+        assertEquals("b > 2", snapshot.getExpressions().get(0).getSource());
+        assertEquals(1, snapshot.skippedCount());
+
+        Files.write(file, new byte[] {1, 2, 3});
+        assertTrue(WarmStartSnapshot.read(file, 7L).getExpressions().isEmpty());
+        assertEquals(0, WarmStartSnapshot.read(file, 7L).restoreResults());
+    }
+}
@@ -0,0 +1,177 @@
+package com.group_finity.mascot.trigger.expr.compile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.eval.TickMemo;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.parser.TypeInference;
+import com.group_finity.mascot.trigger.expr.type.CoercionException;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+import com.group_finity.mascot.trigger.expr.type.TypeResolver;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
+
+/**
+ * コンパイル済み式がインタプリタと同じ結果を返すことを確認する。
+ */
+public class ExpressionCompilerTest {
+
+    private EvaluationContext ctx;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("time", 1500);
+        vars.put("state", "falling");
+        vars.put("speed", 2.5);
+        vars.put("flag", false);
+        vars.put("name", "");
+        ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT);
+    }
+
+    private void assertSameAsInterpreter(String expr) {
+        ExpressionNode node = ExpressionParser.parse(expr);
+        CompiledExpression compiled = ExpressionCompiler.compile(node);
+
+        Object expected = node.evaluate(ctx);
+        assertEquals(expected, compiled.evaluate(ctx), "evaluate: " + expr);
+        assertEquals(TypeResolver.toBoolean(expected), compiled.test(ctx), "test: " + expr);
+    }
+
+    @Test
+    void arithmeticMatchesInterpreter() {
+        assertSameAsInterpreter("1 + 2 * 3");
+        assertSameAsInterpreter("time / 4 - 1");
+        assertSameAsInterpreter("time % 7");
+        assertSameAsInterpreter("speed * 2");
+        assertSameAsInterpreter("-speed + ~3");
+        assertSameAsInterpreter("\"abc\" + 123");
+    }
+
+    @Test
+    void comparisonAndLogicMatchesInterpreter() {
+        assertSameAsInterpreter("time > 1000");
+        assertSameAsInterpreter("time <= 1000 || speed >= 2.5");
+        assertSameAsInterpreter("state === \"falling\" && !flag");
+        assertSameAsInterpreter("state !== \"idle\"");
+        assertSameAsInterpreter("time == 1500 && speed != 1");
+        assertSameAsInterpreter("!name");
+        assertSameAsInterpreter("!(time < 0)");
+    }
+
+    @Test
+    void nonBooleanRootUsesTriggerTruthiness() {
+        assertSameAsInterpreter("state");
+        assertSameAsInterpreter("name");
+        assertSameAsInterpreter("missing");
+        assertSameAsInterpreter("true");
+    }
+
+    @Test
+    void declaredVariablesUseTheSameTypedPathAsTheInterpreter() {
+        VariableSchema schema = VariableSchema.EMPTY.with("hp", Double.class).with("awake", Boolean.class);
+        TypeInference inference = new TypeInference(schema, new DefaultTypeResolver());
+        String[] exprs = {
+            "hp + 1 != 5", "hp + 1", "hp * 2 > 1", "hp == 0", "hp === 0", "-hp", "!hp",
+            "awake && time > 0", "!awake", "time > 0 && hp"
+        };
+
+        // 未設定の宣言変数：インタプリタと同じく CoercionException
+        for (String expr : exprs) {
+            ExpressionNode node = inference.apply(ExpressionParser.parse(expr));
+            CompiledExpression compiled = ExpressionCompiler.compile(node);
+            assertThrows(CoercionException.class, () -> node.evaluate(ctx), expr);
+            assertThrows(CoercionException.class, () -> compiled.evaluate(ctx), "evaluate: " + expr);
+            assertThrows(CoercionException.class, () -> compiled.test(ctx), "test: " + expr);
+        }
+
+        ctx.getVariables().put("hp", 4.0);
+        ctx.getVariables().put("awake", true);
+        for (String expr : exprs) {
+            ExpressionNode node = inference.apply(ExpressionParser.parse(expr));
+            CompiledExpression compiled = ExpressionCompiler.compile(node);
+            Object expected = node.evaluate(ctx);
+            assertEquals(expected, compiled.evaluate(ctx), "evaluate: " + expr);
+            assertEquals(TypeResolver.toBoolean(expected), compiled.test(ctx), "test: " + expr);
+        }
+    }
+
+    @Test
+    void runtimeErrorsArePropagated() {
+        CompiledExpression compiled = ExpressionCompiler.compile(ExpressionParser.parse("state - 1"));
+        assertThrows(RuntimeException.class, () -> compiled.evaluate(ctx));
+    }
+
+    @Test
+    void logicalOperatorsShortCircuit() {
+        // 右辺を評価すると例外になる式
+        assertSameAsInterpreter("flag && state - 1 > 0");
+        assertSameAsInterpreter("time > 0 || state - 1 > 0");
+
+        CompiledExpression compiled = ExpressionCompiler.compile(ExpressionParser.parse("flag && time > 0"));
+        ctx.clearAccessLog();
+        assertFalse(compiled.test(ctx));
+        assertEquals(Map.of("flag", false), ctx.snapshotDependencies());
+    }
+
+    @Test
+    void tieredExpressionSwitchesAfterThreshold() {
+        TieredExpression tiered = new TieredExpression(ExpressionParser.parse("time > 1000"), 3);
+        DefaultTypeResolver resolver = new DefaultTypeResolver();
+        DefaultTypeCoercion coercion = new DefaultTypeCoercion();
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Boolean.TRUE, tiered.evaluate(ctx, resolver, coercion));
+            assertFalse(tiered.isCompiled());
+        }
+        assertEquals(Boolean.TRUE, tiered.evaluate(ctx, resolver, coercion));
+        assertTrue(tiered.isCompiled());
+        assertTrue(tiered.test(ctx, resolver, coercion));
+    }
+
+    @Test
+    void compiledTierSharesTheTickMemoWithTheInterpreter() {
+        ExpressionNode node = ExpressionParser.parse("flag && time > 0");
+        TieredExpression tiered = new TieredExpression(node, 1);
+        assertTrue(tiered.precompile());
+
+        ctx.beginTick();
+        assertFalse(tiered.test(ctx, null, null));
+        // 2回目はメモから返し、読んだ変数（短絡で time は読まない）だけを依存に記録する
+        ctx.clearAccessLog();
+        assertFalse(tiered.test(ctx, null, null));
+        assertEquals(Map.of("flag", false), ctx.snapshotDependencies());
+        // インタプリタも同じ記録を使う
+        ctx.clearAccessLog();
+        assertEquals(Boolean.FALSE, node.evaluate(ctx));
+        assertEquals(Map.of("flag", false), ctx.snapshotDependencies());
+
+        ctx.setValue("flag", true);
+        assertTrue(tiered.test(ctx, null, null));
+        TickMemo memo = ctx.endTick();
+        assertEquals(2, memo.hits());
+        assertEquals(2, memo.misses());
+
+        // ティック外はメモを使わない
+        assertNull(ctx.tickMemo());
+        assertEquals(Boolean.TRUE, tiered.evaluate(ctx, null, null));
+    }
+
+    @Test
+    void tieredExpressionDisabledByDefault() {
+        TieredExpression tiered = new TieredExpression(ExpressionParser.parse("time > 1000"), 0);
+        for (int i = 0; i < 100; i++) {
+            tiered.evaluate(ctx, null, null);
+        }
+        assertFalse(tiered.isCompiled());
+    }
+}
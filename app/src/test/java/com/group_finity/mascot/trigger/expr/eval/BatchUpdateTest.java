@@ -0,0 +1,121 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.TriggerCondition;
+import com.group_finity.mascot.trigger.expr.cache.CacheScope;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * update / applyDelta が1回の反映・1回の通知になることを確認する。
+ */
+public class BatchUpdateTest {
+
+    private final List<Set<String>> batches = new ArrayList<>();
+    private final List<String> singles = new ArrayList<>();
+    private final VariableChangeListener listener = new VariableChangeListener() {
+        @Override
+        public void variableChanged(String name) {
+            singles.add(name);
+        }
+
+        @Override
+        public void variablesChanged(Set<String> names) {
+            batches.add(names);
+        }
+    };
+
+    private static EvaluationContext shared(Map<String, Object> vars) {
+        return new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT, true);
+    }
+
+    @Test
+    void batchBumpsVersionOnceAndNotifiesOnce() {
+        SlotVariables vars = new SlotVariables(Map.of("bx", 1, "by", 2, "bz", 3));
+        EvaluationContext ctx = shared(vars);
+        ctx.addChangeListener(listener);
+        long before = vars.version();
+
+        Set<String> changed = ctx.update(w -> w.set("bx", 10).set("by", 2).set("bw", 4).remove("bz"));
+
+        assertEquals(Set.of("bx", "bw", "bz"), changed);
+        assertEquals(before + 1, vars.version());
+        assertEquals(vars.version(), vars.versionOf(SymbolTable.slotOf("bx")));
+        assertEquals(vars.version(), vars.versionOf(SymbolTable.slotOf("bz")));
+        assertTrue(vars.versionOf(SymbolTable.slotOf("by")) <= before, "値が同じ書き込みは数えない");
+        assertEquals(Map.of("bx", 10, "by", 2, "bw", 4), vars);
+        assertEquals(List.of(changed), batches);
+        assertTrue(singles.isEmpty());
+
+        // 何も変わらなければ version も通知もそのまま
+        assertTrue(ctx.applyDelta(Map.of("bx", 10)).isEmpty());
+        assertEquals(before + 1, vars.version());
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    void failedBatchAppliesNothing() {
+        SlotVariables vars = new SlotVariables(Map.of("fx", 1));
+        EvaluationContext ctx = shared(vars);
+        long before = vars.version();
+
+        assertThrows(IllegalStateException.class, () -> ctx.update(w -> {
+            w.set("fx", 2);
+            throw new IllegalStateException("frame aborted");
+        }));
+        assertEquals(1, vars.get("fx"));
+        assertEquals(before, vars.version());
+        assertThrows(IllegalArgumentException.class, () -> ctx.update(w -> w.set(null, 1)));
+    }
+
+    @Test
+    void plainMapsGetTheSameChangeSet() {
+        Map<String, Object> vars = new HashMap<>(Map.of("px", 1, "py", 2));
+        EvaluationContext ctx = shared(vars);
+
+        assertEquals(Set.of("py", "pz"), ctx.update(w -> w.set("px", 1).set("py", 3).set("pz", null)));
+        assertEquals(Set.of("px"), ctx.update(w -> w.set("px", 5).remove("px")));
+        assertFalse(vars.containsKey("px"));
+        assertTrue(vars.containsKey("pz"));
+    }
+
+    @Test
+    void listenersBelongToTheVariableTable() {
+        SlotVariables vars = new SlotVariables(Map.of("lx", 1));
+        EvaluationContext ctx = shared(vars);
+        ctx.addChangeListener(listener);
+        ctx.addChangeListener(listener);
+
+        // 同じ表を共有する別のコンテキストからの書き込みも届く（重複登録は1回分）
+        shared(vars).setValue("lx", 2);
+        assertEquals(List.of("lx"), singles);
+
+        // 別の表・スナップショットへの書き込みは届かない
+        shared(new SlotVariables(Map.of("lx", 1))).setValue("lx", 3);
+        shared(vars.snapshot()).setValue("lx", 4);
+        assertEquals(List.of("lx"), singles);
+
+        ctx.removeChangeListener(listener);
+        ctx.setValue("lx", 5);
+        assertEquals(List.of("lx"), singles);
+    }
+
+    @Test
+    void batchInvalidatesCachedResultsOnce() {
+        TriggerCondition cond = new TriggerCondition("hp > 5 && mp > 5", new SlotVariables(Map.of("hp", 10, "mp", 10)),
+            CacheScope.newPrivate("batch"));
+        assertTrue(cond.evaluate());
+        assertEquals(Set.of("hp", "mp"), cond.updateVariables(Map.of("hp", 1, "mp", 1)));
+        assertEquals(0, cond.getCacheScope().cache().invalidate("hp"), "updateVariables で無効化済み");
+        assertFalse(cond.evaluate());
+    }
+}
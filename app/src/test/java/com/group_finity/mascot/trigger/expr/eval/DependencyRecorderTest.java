@@ -0,0 +1,91 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * 評価ごとの依存記録（newEvaluation）が互いに混ざらないことを確認する。
+ */
+public class DependencyRecorderTest {
+
+    @Test
+    void nameAndSlotReadsAreOneSet() {
+        EvaluationContext ctx = new EvaluationContext(Map.of("hp", 1, "mp", 2), new DefaultTypeCoercion(), Mode.LOOSE);
+        ctx.getVariable("hp");
+        ctx.getVariable(SymbolTable.slotOf("hp"));
+        ctx.markAccess("mp");
+
+        assertEquals(Map.of("hp", 1, "mp", 2), ctx.snapshotDependencies());
+        assertEquals(2, ctx.stampDependencies().size());
+    }
+
+    @Test
+    void evaluationsRecordSeparately() {
+        SlotVariables vars = new SlotVariables(Map.of("a", 1, "b", 2));
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.LOOSE, true);
+        EvaluationContext first = ctx.newEvaluation();
+        EvaluationContext second = ctx.newEvaluation();
+
+        first.getVariable(SymbolTable.slotOf("a"));
+        second.getVariable("b");
+
+        assertEquals(Map.of("a", 1), first.snapshotDependencies());
+        assertEquals(Map.of("b", 2), second.snapshotDependencies());
+        assertTrue(ctx.snapshotDependencies().isEmpty());
+
+        // 変数表とティックは共有する
+        second.setValue("a", 5);
+        assertEquals(5, vars.get("a"));
+        ctx.beginTick();
+        assertSame(ctx.tickMemo(), first.tickMemo());
+        assertNotNull(first.endTick());
+        assertNull(ctx.tickMemo());
+    }
+
+    @Test
+    void parallelEvaluationsOnOneContextDoNotMix() throws Exception {
+        Map<String, Object> initial = new HashMap<>();
+        for (int i = 0; i < 8; i++) initial.put("dep" + i, i);
+        EvaluationContext ctx = new EvaluationContext(initial, new DefaultTypeCoercion(), Mode.LOOSE);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String name = "dep" + t;
+                ExpressionNode node = new ExpressionParser(name + " >= 0").parse();
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < 2_000; round++) {
+                        EvaluationContext eval = ctx.newEvaluation();
+                        node.evaluate(eval);
+                        if (!eval.snapshotDependencies().keySet().equals(Set.of(name))) return false;
+                    }
+                    return true;
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> f : results) assertTrue(f.get(30, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
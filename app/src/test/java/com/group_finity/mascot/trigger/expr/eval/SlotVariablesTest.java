@@ -0,0 +1,143 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * スロット参照の変数表と EvaluationContext の依存記録を確認する。
+ */
+public class SlotVariablesTest {
+
+    @Test
+    void behavesLikeMap() {
+        SlotVariables vars = new SlotVariables();
+        assertNull(vars.put("x", 1));
+        assertEquals(1, vars.put("x", 2));
+        vars.put("nothing", null);
+
+        assertEquals(2, vars.get("x"));
+        assertTrue(vars.containsKey("nothing"));
+        assertFalse(vars.containsKey("unknown-key"));
+        assertEquals(2, vars.size());
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("x", 2);
+        expected.put("nothing", null);
+        assertEquals(expected, vars);
+        assertEquals(expected.hashCode(), vars.hashCode());
+
+        Iterator<Map.Entry<String, Object>> it = vars.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getKey().equals("nothing")) it.remove();
+        }
+        assertEquals(Map.of("x", 2), vars);
+        assertEquals(2, vars.remove("x"));
+        assertTrue(vars.isEmpty());
+    }
+
+    @Test
+    void slotReadMatchesNameRead() {
+        EvaluationContext ctx = new EvaluationContext(Map.of("speed", 3.0), new DefaultTypeCoercion(), Mode.STRICT);
+        int slot = SymbolTable.slotOf("speed");
+
+        assertEquals(3.0, ctx.getVariable(slot));
+        assertEquals(3.0, ctx.getVariable("speed"));
+        assertNull(ctx.getVariable(SymbolTable.slotOf("notSetYet")));
+    }
+
+    @Test
+    void slotReadsAreRecordedAsDependencies() {
+        EvaluationContext ctx = new EvaluationContext(Map.of("a", 1, "b", 2), new DefaultTypeCoercion(), Mode.LOOSE);
+        ctx.getVariable(SymbolTable.slotOf("a"));
+        assertEquals(Map.of("a", 1), ctx.snapshotDependencies());
+
+        ctx.clearAccessLog();
+        assertTrue(ctx.snapshotDependencies().isEmpty());
+    }
+
+    @Test
+    void sharedPlainMapFallsBackToNameLookup() {
+        Map<String, Object> external = new HashMap<>();
+        EvaluationContext ctx = new EvaluationContext(external, new DefaultTypeCoercion(), Mode.STRICT, true);
+        external.put("hp", 10);
+
+        assertEquals(10, ctx.getVariable(SymbolTable.slotOf("hp")));
+        assertEquals(Map.of("hp", 10), ctx.snapshotDependencies());
+    }
+
+    @Test
+    void sharedSlotVariablesSeeExternalUpdates() {
+        SlotVariables external = new SlotVariables();
+        EvaluationContext ctx = new EvaluationContext(external, new DefaultTypeCoercion(), Mode.STRICT, true);
+        external.put("hp", 10);
+
+        assertSame(external, ctx.getVariables());
+        assertEquals(10, ctx.getVariable(SymbolTable.slotOf("hp")));
+    }
+
+    @Test
+    void snapshotsAreIsolatedInBothDirections() {
+        SlotVariables vars = new SlotVariables();
+        for (int i = 0; i < 100; i++) vars.put("cow" + i, i); // 複数チャンクにまたがる
+        long version = vars.version();
+
+        SlotVariables snap = vars.snapshot();
+        assertNotEquals(vars.id(), snap.id());
+        assertEquals(version, snap.version());
+        assertEquals(vars, snap);
+
+        vars.put("cow5", -5);
+        vars.remove("cow70");
+        vars.put("cowNew", 1);
+        snap.put("cow6", -6);
+
+        assertEquals(5, snap.get("cow5"));
+        assertEquals(70, snap.get("cow70"));
+        assertFalse(snap.containsKey("cowNew"));
+        assertEquals(100, snap.size());
+        assertEquals(6, vars.get("cow6"));
+        assertEquals(-6, snap.get("cow6"));
+        assertEquals(100, vars.size());
+
+        // 書き込まなかったスロットの version は共有したまま
+        int untouched = SymbolTable.slotOf("cow40");
+        assertEquals(vars.versionOf(untouched), snap.versionOf(untouched));
+        assertTrue(vars.versionOf(SymbolTable.slotOf("cow5")) > version);
+    }
+
+    @Test
+    void snapshotOfSnapshotAndClear() {
+        SlotVariables vars = new SlotVariables(Map.of("p", 1, "q", 2));
+        SlotVariables first = vars.snapshot();
+        SlotVariables second = first.snapshot();
+        vars.clear();
+        first.put("p", 10);
+
+        assertTrue(vars.isEmpty());
+        assertEquals(Map.of("p", 10, "q", 2), first);
+        assertEquals(Map.of("p", 1, "q", 2), second);
+    }
+
+    @Test
+    void contextSnapshotsShareSlotStorage() {
+        SlotVariables vars = new SlotVariables(Map.of("hp", 10));
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT, true);
+
+        Map<String, Object> logged = ctx.getVariablesSnapshot();
+        EvaluationContext worker = ctx.snapshotImmutable();
+        ctx.setValue("hp", 3);
+
+        assertInstanceOf(SlotVariables.class, logged);
+        assertEquals(10, logged.get("hp"));
+        assertEquals(10, worker.getVariable(SymbolTable.slotOf("hp")));
+        assertEquals(3, vars.get("hp"));
+    }
+}
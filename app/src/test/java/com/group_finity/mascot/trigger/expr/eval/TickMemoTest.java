@@ -0,0 +1,177 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.cache.CacheStatsTracker;
+import com.group_finity.mascot.trigger.expr.node.BinaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.LiteralNode;
+import com.group_finity.mascot.trigger.expr.node.VariableNode;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * ティック内メモで共有部分式が1回だけ評価されること、変数の書き換えと依存記録を確認する。
+ */
+public class TickMemoTest {
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    /** 評価回数を数える time 変数 */
+    private ExpressionNode countingTime() {
+        ExpressionNode time = new VariableNode("time");
+        return ctx -> {
+            reads.incrementAndGet();
+            return time.evaluate(ctx);
+        };
+    }
+
+    private static EvaluationContext context(Map<String, Object> vars) {
+        return new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.LOOSE);
+    }
+
+    @Test
+    void sharedSubtreeIsEvaluatedOncePerTick() {
+        ExpressionNode shared = BinaryExpressionNode.of(countingTime(), ">", new LiteralNode(1000L));
+        ExpressionNode first = BinaryExpressionNode.of(shared, "&&", new VariableNode("awake"));
+        ExpressionNode second = BinaryExpressionNode.of(shared, "||", new VariableNode("awake"));
+        EvaluationContext ctx = context(Map.of("time", 1500L, "awake", false));
+
+        ctx.beginTick();
+        assertEquals(false, first.evaluate(ctx));
+        assertEquals(true, second.evaluate(ctx));
+        assertTrue(second.evalBoolean(ctx));
+        TickMemo memo = ctx.endTick();
+
+        assertEquals(1, reads.get());
+        assertTrue(memo.hits() >= 2);
+
+        // ティック外ではメモしない
+        first.evaluate(ctx);
+        second.evaluate(ctx);
+        assertEquals(3, reads.get());
+        assertNull(ctx.tickMemo());
+    }
+
+    @Test
+    void writesDuringTickInvalidateTheMemo() {
+        ExpressionNode node = BinaryExpressionNode.of(countingTime(), ">", new LiteralNode(1000L));
+        EvaluationContext ctx = context(Map.of("time", 500L));
+
+        ctx.beginTick();
+        assertEquals(false, node.evaluate(ctx));
+        ctx.setValue("time", 2000L);
+        assertEquals(true, node.evaluate(ctx));
+        assertEquals(true, node.evaluate(ctx));
+        ctx.endTick();
+
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    void memoHitsStillRecordDependencies() {
+        ExpressionNode node = BinaryExpressionNode.of(new VariableNode("hp"), "<", new VariableNode("maxHp"));
+        EvaluationContext ctx = context(Map.of("hp", 3L, "maxHp", 10L, "other", 1L));
+
+        ctx.beginTick();
+        node.evaluate(ctx);
+        ctx.clearAccessLog();
+        assertEquals(true, node.evaluate(ctx));
+        assertEquals(Map.of("hp", 3L, "maxHp", 10L), ctx.snapshotDependencies());
+        ctx.endTick();
+    }
+
+    @Test
+    void memoHitsReplayOnlyTheVariablesActuallyRead() {
+        ExpressionNode hpLow = BinaryExpressionNode.of(new VariableNode("hp"), "<", new LiteralNode(5L));
+        ExpressionNode node = BinaryExpressionNode.of(new VariableNode("awake"), "&&", hpLow);
+        ExpressionNode outer = BinaryExpressionNode.of(node, "||", new VariableNode("other"));
+        EvaluationContext ctx = context(Map.of("awake", false, "hp", 3L, "other", true));
+
+        ctx.beginTick();
+        assertEquals(true, outer.evaluate(ctx));
+        ctx.clearAccessLog();
+        assertEquals(false, node.evaluate(ctx));
+        // 短絡で hp は読まれていないので、メモから返しても依存にしない
+        assertEquals(Map.of("awake", false), ctx.snapshotDependencies());
+
+        ctx.clearAccessLog();
+        assertEquals(true, outer.evalBoolean(ctx));
+        assertEquals(Map.of("awake", false, "other", true), ctx.snapshotDependencies());
+        ctx.endTick();
+    }
+
+    @Test
+    void concurrentEvaluationsShareOneTick() throws Exception {
+        ExpressionNode shared = BinaryExpressionNode.of(new VariableNode("time"), ">", new LiteralNode(1000L));
+        List<ExpressionNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            nodes.add(BinaryExpressionNode.of(shared, "&&",
+                BinaryExpressionNode.of(new VariableNode("v" + i), ">", new LiteralNode((long) i))));
+        }
+        Map<String, Object> vars = new HashMap<>(Map.of("time", 1500L));
+        for (int i = 0; i < 16; i++) vars.put("v" + i, 8L);
+        EvaluationContext ctx = context(vars);
+
+        ctx.beginTick();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger errors = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int round = 0; round < 2_000; round++) {
+                        int i = round % nodes.size();
+                        EvaluationContext eval = ctx.newEvaluation();
+                        eval.clearAccessLog();
+                        if (!Boolean.valueOf(8 > i).equals(nodes.get(i).evaluate(eval))
+                            || !eval.snapshotDependencies().keySet().equals(Set.of("time", "v" + i))) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.incrementAndGet();
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        start.countDown();
+        for (Thread w : workers) w.join();
+        TickMemo memo = ctx.endTick();
+
+        assertEquals(0, errors.get());
+        // 外側16・内側16・共有部分式1のノードだけが記録される
+        assertEquals(33, memo.size());
+        assertTrue(memo.hits() > 0);
+    }
+
+    @Test
+    void sharedPlainMapDisablesTheMemo() {
+        EvaluationContext ctx = new EvaluationContext(new HashMap<>(Map.of("time", 1L)),
+            new DefaultTypeCoercion(), Mode.STRICT, true);
+        ctx.beginTick();
+        assertNull(ctx.tickMemo());
+        assertNull(ctx.endTick());
+    }
+
+    @Test
+    void statsAreAggregated() {
+        CacheStatsTracker stats = new CacheStatsTracker();
+        stats.recordMemo(3, 1);
+        stats.recordMemo(2, 0);
+        assertEquals(5, stats.getMemoHitCount());
+        assertEquals(1, stats.getMemoMissCount());
+    }
+}
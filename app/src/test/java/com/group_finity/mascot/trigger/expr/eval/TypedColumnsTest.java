@@ -0,0 +1,156 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.compile.CompiledExpression;
+import com.group_finity.mascot.trigger.expr.compile.ExpressionCompiler;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.parser.TypeInference;
+import com.group_finity.mascot.trigger.expr.type.CoercionException;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
+
+/**
+ * 宣言型付きの変数表（基本型の列）と型付きアクセサを確認する。
+ */
+public class TypedColumnsTest {
+
+    private static final VariableSchema SCHEMA = new VariableSchema(Map.of(
+        "tcTick", long.class,
+        "tcSpeed", double.class,
+        "tcOnGround", boolean.class,
+        "tcName", String.class));
+
+    private static int slot(String name) {
+        return SymbolTable.slotOf(name);
+    }
+
+    @Test
+    void typedSettersRoundTripAndMapViewStaysCompatible() {
+        SlotVariables vars = new SlotVariables(SCHEMA);
+        vars.setLong(slot("tcTick"), 42L);
+        vars.setDouble(slot("tcSpeed"), 2.5);
+        vars.setBoolean(slot("tcOnGround"), true);
+        vars.put("tcName", "shimeji");
+
+        assertEquals(42L, vars.getLong(slot("tcTick")));
+        assertEquals(42.0, vars.getDouble(slot("tcTick")));
+        assertEquals(2.5, vars.getDouble(slot("tcSpeed")));
+        assertTrue(vars.getBoolean(slot("tcOnGround")));
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("tcTick", 42L);
+        expected.put("tcSpeed", 2.5);
+        expected.put("tcOnGround", true);
+        expected.put("tcName", "shimeji");
+        assertEquals(expected, vars);
+        assertEquals(expected.hashCode(), vars.hashCode());
+
+        // Map 経由の書き込みは列の型に変換して持つ
+        assertEquals(42L, vars.put("tcTick", 7));
+        assertEquals(7L, vars.get("tcTick"));
+        vars.put("tcSpeed", 3);
+        assertEquals(3.0, vars.get("tcSpeed"));
+        vars.put("tcSpeed", null);
+        assertTrue(vars.containsKey("tcSpeed"));
+        assertNull(vars.get("tcSpeed"));
+        assertEquals(true, vars.remove("tcOnGround"));
+        assertEquals(3, vars.size());
+    }
+
+    @Test
+    void columnMismatchesAreRejected() {
+        SlotVariables vars = new SlotVariables(SCHEMA);
+        long version = vars.version();
+
+        assertThrows(IllegalArgumentException.class, () -> vars.put("tcTick", 1.5));
+        assertThrows(IllegalArgumentException.class, () -> vars.put("tcOnGround", "yes"));
+        assertThrows(IllegalArgumentException.class, () -> vars.setDouble(slot("tcTick"), 1.5));
+        assertThrows(IllegalArgumentException.class,
+            () -> vars.applyDelta(Map.of("tcSpeed", 1.0, "tcTick", "x"), List.of()));
+        assertEquals(version, vars.version());
+        assertTrue(vars.isEmpty(), "失敗した書き込みは何も反映しない");
+
+        assertThrows(CoercionException.class, () -> vars.getDouble(slot("tcSpeed")));
+        vars.put("tcName", "x");
+        assertThrows(CoercionException.class, () -> vars.getLong(slot("tcName")));
+
+        // long を double の列に書くのは広げて受け付ける
+        vars.setLong(slot("tcSpeed"), 3);
+        assertEquals(3.0, vars.get("tcSpeed"));
+    }
+
+    @Test
+    void snapshotsIsolatePrimitiveColumns() {
+        SlotVariables vars = new SlotVariables(SCHEMA);
+        vars.setDouble(slot("tcSpeed"), 1.0);
+        SlotVariables snap = vars.snapshot();
+
+        vars.setDouble(slot("tcSpeed"), 9.0);
+        snap.setLong(slot("tcTick"), 5);
+
+        assertEquals(1.0, snap.getDouble(slot("tcSpeed")));
+        assertEquals(9.0, vars.getDouble(slot("tcSpeed")));
+        assertFalse(vars.containsKey("tcTick"));
+        assertSame(SCHEMA, snap.schema());
+    }
+
+    @Test
+    void batchSkipsUnchangedPrimitiveValues() {
+        SlotVariables vars = new SlotVariables(SCHEMA);
+        vars.applyDelta(Map.of("tcTick", 1L, "tcSpeed", 2.0), List.of());
+        long version = vars.version();
+
+        assertTrue(vars.applyDelta(Map.of("tcTick", 1, "tcSpeed", 2.0), List.of()).isEmpty());
+        assertEquals(version, vars.version());
+        assertEquals(Set.of("tcSpeed"), vars.applyDelta(Map.of("tcSpeed", 2.5), List.of()));
+    }
+
+    @Test
+    void contextTypedAccessorsRecordDependencies() {
+        EvaluationContext ctx = new EvaluationContext(SCHEMA, new DefaultTypeCoercion(), Mode.STRICT);
+        ctx.setDouble("tcSpeed", 4.0);
+        ctx.setBoolean("tcOnGround", false);
+
+        assertEquals(4.0, ctx.getDouble("tcSpeed"));
+        assertFalse(ctx.getBoolean("tcOnGround"));
+        assertEquals(Map.of("tcSpeed", 4.0, "tcOnGround", false), ctx.snapshotDependencies());
+        assertInstanceOf(SlotVariables.class, ctx.getVariables());
+
+        // 通常の Map を共有している場合も同じ規則で読む
+        Map<String, Object> plain = new HashMap<>(Map.of("tcSpeed", 1));
+        EvaluationContext shared = new EvaluationContext(plain, new DefaultTypeCoercion(), Mode.STRICT, true);
+        assertEquals(1.0, shared.getDouble("tcSpeed"));
+        assertThrows(CoercionException.class, () -> shared.getBoolean("tcSpeed"));
+    }
+
+    @Test
+    void compiledTypedComparisonsMatchInterpreter() {
+        EvaluationContext ctx = new EvaluationContext(SCHEMA, new DefaultTypeCoercion(), Mode.STRICT);
+        ctx.setDouble("tcSpeed", 2.5);
+        ctx.setLong("tcTick", 10);
+        TypeInference inference = new TypeInference(SCHEMA, new DefaultTypeResolver());
+
+        for (String expr : new String[] {
+                "tcSpeed > 2", "tcSpeed <= 2.5", "tcTick >= tcSpeed", "2 < tcTick", "tcSpeed < tcName" }) {
+            ExpressionNode node = inference.apply(ExpressionParser.parse(expr));
+            CompiledExpression compiled = ExpressionCompiler.compile(node);
+            assertEquals(node.evaluate(ctx), compiled.evaluate(ctx), expr);
+        }
+
+        ExpressionNode unset = inference.apply(ExpressionParser.parse("tcSpeed > 0"));
+        EvaluationContext empty = new EvaluationContext(SCHEMA, new DefaultTypeCoercion(), Mode.STRICT);
+        assertThrows(CoercionException.class, () -> unset.evaluate(empty));
+        assertThrows(CoercionException.class, () -> ExpressionCompiler.compile(unset).evaluate(empty));
+    }
+}
@@ -0,0 +1,119 @@
+package com.group_finity.mascot.trigger.expr.eval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.TriggerCondition;
+import com.group_finity.mascot.trigger.expr.cache.CacheStatsTracker;
+import com.group_finity.mascot.trigger.expr.cache.EvaluationResult;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * 変数ごとのバージョンと、それを使ったキャッシュの鮮度判定を確認する。
+ */
+public class VersionStampTest {
+
+    @Test
+    void writesStampTheSlotWithTheGlobalVersion() {
+        SlotVariables vars = new SlotVariables();
+        int a = SymbolTable.slotOf("a");
+        int b = SymbolTable.slotOf("b");
+        assertEquals(0, vars.versionOf(a));
+
+        vars.put("a", 1);
+        long afterA = vars.version();
+        vars.put("b", 2);
+        assertEquals(afterA, vars.versionOf(a));
+        assertEquals(vars.version(), vars.versionOf(b));
+        assertTrue(vars.versionOf(b) > vars.versionOf(a));
+
+        vars.remove("a");
+        assertEquals(vars.version(), vars.versionOf(a));
+        assertNotEquals(new SlotVariables().id(), vars.id());
+    }
+
+    @Test
+    void stampTracksOnlyDependenciesUnlessWholeTable() {
+        SlotVariables vars = new SlotVariables(Map.of("hp", 10L, "mood", "calm"));
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.LOOSE, true);
+        ctx.getVariable(SymbolTable.slotOf("hp"));
+        ctx.getVariable("unsetYet");
+        VersionStamp stamp = ctx.stampDependencies();
+        assertEquals(2, stamp.size());
+        assertTrue(stamp.isFrom(vars));
+
+        vars.put("mood", "angry");
+        assertTrue(stamp.isCurrent(vars, false));
+        assertFalse(stamp.isCurrent(vars, true));
+
+        vars.put("unsetYet", 1);
+        assertFalse(stamp.isCurrent(vars, false));
+    }
+
+    @Test
+    void stampIsNotUsedAcrossTables() {
+        SlotVariables vars = new SlotVariables(Map.of("x", 1));
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT, true);
+        ctx.getVariable(SymbolTable.slotOf("x"));
+        VersionStamp stamp = ctx.stampDependencies();
+
+        SlotVariables copy = new SlotVariables(vars);
+        assertFalse(stamp.isFrom(copy));
+        assertFalse(stamp.isFrom(new HashMap<>(vars)));
+        assertNull(new EvaluationContext(new HashMap<>(vars), null, Mode.STRICT, true).stampDependencies());
+
+        // 別の表では値の比較にフォールバックする
+        EvaluationResult result = new EvaluationResult(true, Map.of("x", 1), stamp, 0L, 0L, Mode.STRICT);
+        assertTrue(result.isCurrent(new EvaluationContext(copy, null, Mode.STRICT, true)));
+        copy.put("x", 2);
+        assertFalse(result.isCurrent(new EvaluationContext(copy, null, Mode.STRICT, true)));
+    }
+
+    @Test
+    void stampOnlyResultsReadValuesBackWhileCurrent() {
+        SlotVariables vars = new SlotVariables(Map.of("x", 1, "y", "a"));
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.LOOSE, true);
+        ctx.getVariable(SymbolTable.slotOf("x"));
+        EvaluationResult result = new EvaluationResult(true, ctx.stampDependencies(), 0L, 0L, Mode.LOOSE);
+
+        assertEquals(Set.of("x"), result.getDependencyNames());
+        assertEquals(Map.of("x", 1), result.getDependencies());
+
+        // 別の表では記録元の表から読み直した値と比べる
+        SlotVariables other = new SlotVariables(Map.of("x", 1));
+        assertTrue(result.isCurrent(new EvaluationContext(other, null, Mode.LOOSE, true)));
+        other.put("x", 2);
+        assertFalse(result.isCurrent(new EvaluationContext(other, null, Mode.LOOSE, true)));
+
+        // 依存変数が書き換わった後は評価時の値が分からないので、別の表では使わない
+        vars.put("y", "b");
+        assertEquals(Map.of("x", 1), result.getDependencies());
+        vars.put("x", 2);
+        assertNull(result.getDependencies());
+        assertFalse(result.isCurrent(new EvaluationContext(new SlotVariables(Map.of("x", 1)), null, Mode.LOOSE, true)));
+        assertFalse(result.isCurrent(ctx));
+    }
+
+    @Test
+    void triggerConditionHitsUntilADependencyIsWritten() {
+        CacheStatsTracker.INSTANCE.reset();
+        SlotVariables vars = new SlotVariables(Map.of("speed", 3L, "unrelated", 0L));
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.LOOSE, true);
+        TriggerCondition condition = new TriggerCondition("speed * 2 > 5", vars);
+
+        assertTrue(condition.evaluate(ctx));
+        vars.put("unrelated", 1L);
+        assertTrue(condition.evaluate(ctx));
+        assertEquals(1, CacheStatsTracker.INSTANCE.getHitCount());
+
+        vars.put("speed", 1L);
+        assertFalse(condition.evaluate(ctx));
+        assertEquals(2, CacheStatsTracker.INSTANCE.getMissCount());
+    }
+}
@@ -0,0 +1,66 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.parser.TypeInference;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
+
+/**
+ * 構造的に等しい部分木がパーサの入口をまたいで同じインスタンスになることを確認する。
+ */
+public class NodeInternerTest {
+
+    @Test
+    void sharedSubtreesAreTheSameInstance() {
+        BinaryExpressionNode a = (BinaryExpressionNode) ExpressionParser.parse("state === \"falling\" && hp > 10");
+        BinaryExpressionNode b = (BinaryExpressionNode) ExpressionParser.parse("state === 'falling' || hp > 10");
+
+        assertSame(a.getLeft(), b.getLeft());
+        assertSame(a.getRight(), b.getRight());
+        assertSame(a, ExpressionParser.parse("(state === \"falling\") && (hp > 10)"));
+    }
+
+    @Test
+    void structuralEqualityDistinguishesOperatorsValuesAndTypes() {
+        assertEquals(new LiteralNode(1L), new LiteralNode(1L));
+        assertNotEquals(new LiteralNode(1L), new LiteralNode(1.0));
+        assertNotEquals(new LiteralNode(0.0), new LiteralNode(-0.0));
+
+        assertEquals(new VariableNode("x"), new VariableNode("x"));
+        assertNotEquals(new VariableNode("x"), new VariableNode("x", Double.class));
+
+        ExpressionNode x = new VariableNode("x");
+        ExpressionNode one = new LiteralNode(1L);
+        assertEquals(BinaryExpressionNode.of(x, "===", one), BinaryExpressionNode.of(new VariableNode("x"), "===", new LiteralNode(1L)));
+        assertNotEquals(BinaryExpressionNode.of(x, "===", one), BinaryExpressionNode.of(x, "!==", one));
+        assertNotEquals(BinaryExpressionNode.of(x, "==", one), BinaryExpressionNode.of(x, "===", one));
+        assertNotEquals(new UnaryExpressionNode("-", x), new UnaryExpressionNode("~", x));
+    }
+
+    @Test
+    void typedTreesAreInternedSeparatelyFromDynamicOnes() {
+        ExpressionNode dynamic = ExpressionParser.parse("speed * 2 > 10");
+        VariableSchema schema = VariableSchema.EMPTY.with("speed", Double.class);
+        TypeInference inference = new TypeInference(schema, new DefaultTypeResolver());
+
+        ExpressionNode typed = inference.apply(dynamic);
+        assertNotEquals(dynamic, typed);
+        assertSame(typed, inference.apply(ExpressionParser.parse("speed * 2 > 10")));
+    }
+
+    @Test
+    void unreferencedNodesAreCollectable() throws InterruptedException {
+        WeakReference<ExpressionNode> ref = new WeakReference<>(ExpressionParser.parse("only_here_" + System.nanoTime() + " > 1"));
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get(), "interner must not keep nodes alive");
+    }
+}
@@ -0,0 +1,84 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * パーサが演算子ごとに特殊化したノードを生成することを確認する。
+ */
+public class OperatorNodeTest {
+
+    @Test
+    void parserProducesSpecializedNodes() {
+        ArithmeticNode add = assertInstanceOf(ArithmeticNode.class, ExpressionParser.parse("a + 1"));
+        assertEquals(ArithmeticNode.Operator.ADD, add.getArithmeticOperator());
+
+        ComparisonNode ge = assertInstanceOf(ComparisonNode.class, ExpressionParser.parse("a >= 1"));
+        assertEquals(ComparisonNode.Operator.GE, ge.getComparisonOperator());
+
+        StrictEqualityNode ne = assertInstanceOf(StrictEqualityNode.class, ExpressionParser.parse("a !== 1"));
+        assertTrue(ne.isNegated());
+
+        LogicalNode or = assertInstanceOf(LogicalNode.class, ExpressionParser.parse("a || b"));
+        assertEquals(LogicalNode.Operator.OR, or.getLogicalOperator());
+
+        UnaryExpressionNode not = assertInstanceOf(UnaryExpressionNode.class, ExpressionParser.parse("!a"));
+        assertEquals(UnaryExpressionNode.Operator.NOT, not.getUnaryOperator());
+    }
+
+    @Test
+    void operatorSymbolsAreKept() {
+        for (String op : new String[] { "+", "-", "*", "/", "%", "<", "<=", ">", ">=", "==", "!=", "===", "!==", "&&", "||" }) {
+            BinaryExpressionNode node = BinaryExpressionNode.of(new LiteralNode(1L), op, new LiteralNode(2L));
+            assertEquals(op, node.getOperator());
+        }
+    }
+
+    @Test
+    void unknownOperatorIsRejectedAtConstruction() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryExpressionNode.of(new LiteralNode(1L), "<=>", new LiteralNode(2L)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new UnaryExpressionNode("?", new LiteralNode(1L)));
+    }
+
+    @Test
+    void logicalOperatorsShortCircuit() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("flag", false);
+        vars.put("ready", true);
+        vars.put("state", "idle");
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT);
+
+        // 右辺は評価すると例外になるが、左辺で結果が決まるので評価されない
+        assertEquals(Boolean.FALSE, ExpressionParser.parse("flag && state - 1 > 0").evaluate(ctx));
+        assertEquals(Boolean.TRUE, ExpressionParser.parse("ready || state - 1 > 0").evaluate(ctx));
+        assertThrows(RuntimeException.class, () -> ExpressionParser.parse("ready && state - 1 > 0").evaluate(ctx));
+    }
+
+    @Test
+    void onlyVariablesActuallyReadAreRecorded() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("flag", false);
+        vars.put("time", 1500L);
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.LOOSE);
+
+        ExpressionParser.parse("flag && time > 1000").evaluate(ctx, new DefaultTypeResolver(), new DefaultTypeCoercion());
+        assertEquals(Map.of("flag", false), ctx.snapshotDependencies());
+
+        ctx.clearAccessLog();
+        ctx.setValue("flag", true);
+        ExpressionParser.parse("flag && time > 1000").evaluate(ctx, new DefaultTypeResolver(), new DefaultTypeCoercion());
+        assertEquals(Map.of("flag", true, "time", 1500L), ctx.snapshotDependencies());
+    }
+}
@@ -0,0 +1,123 @@
+package com.group_finity.mascot.trigger.expr.node;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.parser.ExpressionParser;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+
+/**
+ * 静的型を使った箱詰めなしの評価経路が、Object 経路と同じ結果を返すことを確認する。
+ */
+public class TypedEvaluationTest {
+
+    private EvaluationContext ctx;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("x", 7L);
+        vars.put("y", 2.5);
+        vars.put("z", 0L);
+        vars.put("big", Long.MAX_VALUE);
+        vars.put("s", "3");
+        vars.put("word", "abc");
+        vars.put("flag", true);
+        ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT);
+    }
+
+    /** 子ノードの静的型を隠して、すべて Object 経路で評価される木に組み直す */
+    private static ExpressionNode untyped(ExpressionNode node) {
+        if (node instanceof BinaryExpressionNode bin) {
+            return BinaryExpressionNode.of(opaque(untyped(bin.getLeft())), bin.getOperator(), opaque(untyped(bin.getRight())));
+        }
+        if (node instanceof UnaryExpressionNode un) {
+            return new UnaryExpressionNode(un.getUnaryOperator(), opaque(untyped(un.getOperand())));
+        }
+        return node;
+    }
+
+    private static ExpressionNode opaque(ExpressionNode node) {
+        return node::evaluate;
+    }
+
+    private void assertSameAsObjectPath(String expr) {
+        ExpressionNode typed = ExpressionParser.parse(expr);
+        ExpressionNode reference = untyped(typed);
+
+        Object expected;
+        try {
+            expected = reference.evaluate(ctx);
+        } catch (RuntimeException e) {
+            assertThrows(RuntimeException.class, () -> typed.evaluate(ctx), expr);
+            return;
+        }
+        assertEquals(expected, typed.evaluate(ctx), expr);
+        assertEquals(Operators.toBool(expected), typed.evalBoolean(ctx), expr);
+        if (typed.staticType() == TypeKind.NUMBER) {
+            assertEquals(((Number) expected).doubleValue(), typed.evalDouble(ctx), 0.0, expr);
+        }
+    }
+
+    @Test
+    void arithmeticMatchesObjectPath() {
+        assertSameAsObjectPath("x * 2 + 1");
+        assertSameAsObjectPath("(x - y) * (x + y)");
+        assertSameAsObjectPath("x / 2");
+        assertSameAsObjectPath("x % 4 + y % 1");
+        assertSameAsObjectPath("-(x * 2)");
+        assertSameAsObjectPath("+(y * 2)");
+        assertSameAsObjectPath("~x * 2");
+        assertSameAsObjectPath("~big - 1");
+        assertSameAsObjectPath("s * 2");
+        assertSameAsObjectPath("word * 2");
+        assertSameAsObjectPath("-word * 2");
+        assertSameAsObjectPath("x + word");
+    }
+
+    @Test
+    void negativeZeroIsNormalizedLikeObjectPath() {
+        // z * -1 は Object 経路では Long 0 になるので 1 / 0.0 = +Infinity
+        assertSameAsObjectPath("1 / (z * -1)");
+        assertSameAsObjectPath("1 / -(z * 1) > 0");
+        assertSameAsObjectPath("z * -1 === 0");
+    }
+
+    @Test
+    void comparisonsMatchObjectPath() {
+        assertSameAsObjectPath("x * 2 > 10");
+        assertSameAsObjectPath("x * 2 <= y * 4");
+        assertSameAsObjectPath("word * 1 < 3");
+        assertSameAsObjectPath("s < x * 1");
+        assertSameAsObjectPath("x * 1 == 7");
+        assertSameAsObjectPath("y * 2 != 5");
+        assertSameAsObjectPath("x / 2 === 3.5");
+        assertSameAsObjectPath("x * 1 === 7");
+        assertSameAsObjectPath("0 / (z * 1) === 0 / (z * 1)");
+    }
+
+    @Test
+    void logicMatchesObjectPath() {
+        assertSameAsObjectPath("x * 2 > 10 && y * 2 < 10");
+        assertSameAsObjectPath("!(x * 0) || flag");
+        assertSameAsObjectPath("!(x > 3) && z * 1");
+        assertSameAsObjectPath("(x - 7) || (y - 2.5)");
+    }
+
+    @Test
+    void staticTypesAreInferred() {
+        assertEquals(TypeKind.NUMBER, ExpressionParser.parse("x * 2").staticType());
+        assertEquals(TypeKind.OBJECT, ExpressionParser.parse("x + 2").staticType());
+        assertEquals(TypeKind.NUMBER, ExpressionParser.parse("x * 2 + 1").staticType());
+        assertEquals(TypeKind.BOOLEAN, ExpressionParser.parse("x > 1 || flag").staticType());
+        assertEquals(TypeKind.OBJECT, ExpressionParser.parse("x").staticType());
+    }
+}
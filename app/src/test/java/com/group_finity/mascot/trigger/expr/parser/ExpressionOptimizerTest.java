@@ -0,0 +1,84 @@
+package com.group_finity.mascot.trigger.expr.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.LiteralNode;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+
+/**
+ * パース後の簡約結果（木の形と評価結果）を確認する。
+ */
+public class ExpressionOptimizerTest {
+
+    private static String shape(String expr) {
+        return ExpressionParser.parse(expr).toString();
+    }
+
+    @Test
+    void foldsLiteralSubtrees() {
+        assertEquals("(time > 60000)", shape("time > 60 * 1000"));
+        assertEquals("\"ab1\"", shape("\"a\" + \"b\" + 1"));
+        assertEquals("true", shape("!(1 > 2)"));
+
+        ExpressionNode folded = ExpressionParser.parse("2 * 3 + 1");
+        assertEquals(7L, assertInstanceOf(LiteralNode.class, folded).getValue());
+    }
+
+    @Test
+    void keepsSubtreesThatFailAtRuntime() {
+        ExpressionNode node = ExpressionParser.parse("\"abc\" - 1");
+        assertFalse(node instanceof LiteralNode);
+        assertThrows(RuntimeException.class, () -> node.evaluate(null));
+    }
+
+    @Test
+    void removesDoubleNegationOfBooleans() {
+        assertEquals("(a > 1)", shape("!!(a > 1)"));
+        assertEquals("(!(a > 1))", shape("!!!(a > 1)"));
+        // 非真偽値の !!x は真偽値への変換なので残す
+        assertEquals("(!(!flag))", shape("!(!flag)"));
+    }
+
+    @Test
+    void simplifiesLogicalIdentities() {
+        assertEquals("(a > 1)", shape("true && a > 1"));
+        assertEquals("(a > 1)", shape("false || a > 1"));
+        assertEquals("(a > 1)", shape("a > 1 && true"));
+        assertEquals("false", shape("false && a > 1"));
+        assertEquals("true", shape("true || a"));
+        // 非真偽値は && で Boolean に変換されるので残す
+        assertEquals("(true && a)", shape("true && a"));
+    }
+
+    @Test
+    void normalizesCommutativeOperands() {
+        assertEquals(shape("state === \"idle\""), shape("\"idle\" === state"));
+        assertEquals(shape("a * b"), shape("b * a"));
+        assertEquals("(time > 1000)", shape("1000 < time"));
+        assertEquals("(time <= 5)", shape("5 >= time"));
+        // == は null の扱いが左右非対称なので入れ替えない
+        assertEquals("(1 == a)", shape("1 == a"));
+    }
+
+    @Test
+    void optimizedTreesEvaluateLikeOriginal() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("time", 1500L);
+        vars.put("state", "idle");
+        vars.put("flag", false);
+        EvaluationContext ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT);
+
+        assertEquals(Boolean.TRUE, ExpressionParser.parse("1000 < time && \"idle\" === state").evaluate(ctx));
+        assertEquals(Boolean.FALSE, ExpressionParser.parse("!!(time < 60 * 10)").evaluate(ctx));
+        assertEquals(Boolean.TRUE, ExpressionParser.parse("!(!flag) || true").evaluate(ctx));
+        assertEquals(3000L, ExpressionParser.parse("2 * time").evaluate(ctx));
+    }
+}
@@ -0,0 +1,84 @@
+package com.group_finity.mascot.trigger.expr.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.node.LiteralNode;
+import com.group_finity.mascot.trigger.expr.parser.Lexer.TokenType;
+
+/**
+ * Lexer のトークン種別・位置と、それを使う ExpressionParser のリテラル読み取りを確認する。
+ */
+public class LexerTest {
+
+    private static List<TokenType> types(String src) {
+        List<TokenType> out = new ArrayList<>();
+        Lexer lexer = new Lexer(src);
+        while (lexer.type() != TokenType.EOF) {
+            out.add(lexer.type());
+            lexer.advance();
+        }
+        return out;
+    }
+
+    @Test
+    void operatorsAreMatchedGreedily() {
+        assertEquals(List.of(TokenType.IDENT, TokenType.EQEQEQ, TokenType.IDENT,
+                TokenType.BANGEQEQ, TokenType.IDENT, TokenType.BANGEQ, TokenType.BANG, TokenType.IDENT),
+            types("a===b!==c!=!d"));
+        assertEquals(List.of(TokenType.LTE, TokenType.LT, TokenType.GTE, TokenType.GT,
+                TokenType.ANDAND, TokenType.OROR, TokenType.TILDE),
+            types("<= < >= > && || ~"));
+        // 末尾の2文字だけでも3文字演算子の判定で範囲外を読まない
+        assertEquals(List.of(TokenType.IDENT, TokenType.EQEQ), types("x =="));
+    }
+
+    @Test
+    void tokensExposeSpansWithoutCopying() {
+        String src = "  count >= 'ab' ";
+        Lexer lexer = new Lexer(src);
+        assertEquals(TokenType.IDENT, lexer.type());
+        assertEquals(2, lexer.start());
+        assertEquals(7, lexer.end());
+
+        assertEquals(TokenType.GTE, lexer.advance());
+        assertEquals(">=", lexer.text());
+
+        // 文字列リテラルは引用符の内側を指す
+        assertEquals(TokenType.STRING, lexer.advance());
+        assertEquals("ab", lexer.text());
+
+        assertEquals(TokenType.EOF, lexer.advance());
+        assertEquals(TokenType.EOF, lexer.advance());
+    }
+
+    @Test
+    void keywordsAreRecognizedOnlyAsWholeWords() {
+        assertEquals(List.of(TokenType.TRUE, TokenType.FALSE, TokenType.IDENT, TokenType.IDENT),
+            types("true false trueish _false"));
+    }
+
+    @Test
+    void parserReadsLiteralsFromSpans() {
+        assertEquals(42L, ((LiteralNode) ExpressionParser.parse("42")).getValue());
+        assertEquals(1.5, ((LiteralNode) ExpressionParser.parse("1.5")).getValue());
+        // Long に収まらない整数は Double
+        assertEquals(1e20, ((LiteralNode) ExpressionParser.parse("100000000000000000000")).getValue());
+        assertEquals("it's", ((LiteralNode) ExpressionParser.parse("\"it's\"")).getValue());
+        assertEquals("a\tb\nc\\", ((LiteralNode) ExpressionParser.parse("'a\\tb\\nc\\\\'")).getValue());
+        assertEquals("say \"hi\"", ((LiteralNode) ExpressionParser.parse("'say \\\"hi\\\"'")).getValue());
+    }
+
+    @Test
+    void unexpectedCharactersAreRejected() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> ExpressionParser.parse("a = 1"));
+        assertEquals("Unexpected char: =", e.getMessage());
+        // 解析されない末尾でも不正な文字は検出する
+        assertThrows(RuntimeException.class, () -> ExpressionParser.parse("a $"));
+        assertThrows(RuntimeException.class, () -> ExpressionParser.parse("(a"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.group_finity.mascot.trigger.expr.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.group_finity.mascot.trigger.expr.eval.EvaluationContext;
+import com.group_finity.mascot.trigger.expr.node.BinaryExpressionNode;
+import com.group_finity.mascot.trigger.expr.node.ExpressionNode;
+import com.group_finity.mascot.trigger.expr.type.CoercionException;
+import com.group_finity.mascot.trigger.expr.type.CoercionPlan;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeCoercion;
+import com.group_finity.mascot.trigger.expr.type.DefaultTypeResolver;
+import com.group_finity.mascot.trigger.expr.type.Mode;
+import com.group_finity.mascot.trigger.expr.type.TypeKind;
+import com.group_finity.mascot.trigger.expr.type.VariableSchema;
+
+/**
+ * 宣言型からの型推論と、ノードに埋め込まれた CoercionPlan を確認する。
+ */
+public class TypeInferenceTest {
+
+    private final VariableSchema schema = new VariableSchema(Map.of(
+            "posX", Double.class,
+            "count", Long.class,
+            "falling", Boolean.class,
+            "state", String.class));
+
+    private EvaluationContext ctx;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("posX", 120.5);
+        vars.put("count", 3L);
+        vars.put("falling", true);
+        vars.put("state", "idle");
+        vars.put("dynamic", 4L);
+        ctx = new EvaluationContext(vars, new DefaultTypeCoercion(), Mode.STRICT);
+    }
+
+    private ExpressionNode infer(String expr) {
+        return new TypeInference(schema, new DefaultTypeResolver()).apply(ExpressionParser.parse(expr));
+    }
+
+    @Test
+    void bakesPlansForDeclaredVariables() {
+        BinaryExpressionNode cmp = assertInstanceOf(BinaryExpressionNode.class, infer("posX * 2 > count"));
+        assertEquals(new CoercionPlan(Double.class, Double.class, Boolean.class), cmp.getCoercionPlan());
+
+        BinaryExpressionNode mul = assertInstanceOf(BinaryExpressionNode.class, cmp.getLeft());
+        assertEquals(new CoercionPlan(Double.class, Double.class, Double.class), mul.getCoercionPlan());
+        assertEquals(TypeKind.NUMBER, mul.getLeft().staticType());
+
+        BinaryExpressionNode eq = assertInstanceOf(BinaryExpressionNode.class, infer("count == 3"));
+        assertEquals(Double.class, eq.getCoercionPlan().leftTarget());
+
+        assertEquals(TypeKind.BOOLEAN, infer("falling").staticType());
+    }
+
+    @Test
+    void dynamicVariablesStayUnresolved() {
+        BinaryExpressionNode node = assertInstanceOf(BinaryExpressionNode.class, infer("dynamic * 2 > 1"));
+        BinaryExpressionNode mul = assertInstanceOf(BinaryExpressionNode.class, node.getLeft());
+        assertNull(mul.getCoercionPlan());
+        assertEquals(TypeKind.OBJECT, mul.getLeft().staticType());
+
+        // STRICT では文字列の順序比較は解決できないので評価時判定のまま
+        BinaryExpressionNode cmp = assertInstanceOf(BinaryExpressionNode.class, infer("state < 1"));
+        assertNull(cmp.getCoercionPlan());
+    }
+
+    @Test
+    void resultsMatchUntypedTree() {
+        String[] exprs = {
+            "posX * 2 > count",
+            "posX - count * 2",
+            "count == 3 && falling",
+            "!falling || posX / count > 40",
+            "state === \"idle\" && dynamic * count > 10",
+            "state + count",
+            "count % 2 != 0",
+        };
+        for (String expr : exprs) {
+            assertEquals(ExpressionParser.parse(expr).evaluate(ctx), infer(expr).evaluate(ctx), expr);
+        }
+    }
+
+    @Test
+    void schemaViolationFailsOnTypedPath() {
+        ctx.setValue("posX", "not a number");
+        assertThrows(CoercionException.class, () -> infer("posX * 2 > 1").evaluate(ctx));
+    }
+}
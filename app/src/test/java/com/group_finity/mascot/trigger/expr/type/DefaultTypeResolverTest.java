@@ -0,0 +1,55 @@
+package com.group_finity.mascot.trigger.expr.type;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 表引きの解決と、coerceTo が使う変換先ごとの Coercer を確認する。
+ */
+class DefaultTypeResolverTest {
+
+    private final DefaultTypeResolver resolver = new DefaultTypeResolver();
+
+    @Test
+    void plansAreSharedAcrossLookupsAndResolvers() {
+        CoercionPlan plan = resolver.resolve("+", Integer.class, Double.class, Mode.STRICT);
+        assertEquals(new CoercionPlan(Double.class, Double.class, Double.class), plan);
+        assertSame(plan, resolver.resolve("-", long.class, Long.class, Mode.STRICT));
+        assertSame(plan, DefaultTypeResolver.INSTANCE.resolve("*", Double.class, Integer.class, Mode.LOOSE));
+    }
+
+    @Test
+    void rulesMatchOperatorAndKinds() {
+        assertEquals(String.class, resolver.resolve("+", String.class, Integer.class, Mode.STRICT).resultType());
+        assertEquals(Boolean.class, resolver.resolve("<=", Integer.class, Double.class, Mode.STRICT).resultType());
+        assertEquals(Boolean.class, resolver.resolve("&&", Object.class, String.class, Mode.STRICT).leftTarget());
+        assertEquals(Double.class, resolver.resolve(">", String.class, null, Mode.LOOSE).leftTarget());
+        assertEquals(Object.class, resolver.resolve("==", String.class, String.class, Mode.STRICT).leftTarget());
+        assertEquals(String.class, resolver.resolve("!=", String.class, Boolean.class, Mode.LOOSE).leftTarget());
+        assertEquals(Double.class, resolver.resolve("==", Integer.class, Long.class, Mode.STRICT).leftTarget());
+
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve("-", String.class, Integer.class, Mode.STRICT));
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve("<", Object.class, Integer.class, Mode.LOOSE));
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve("^", Integer.class, Integer.class, Mode.STRICT));
+    }
+
+    @Test
+    void coercersAreCachedPerTarget() {
+        assertSame(Coercer.to(int.class), Coercer.to(int.class));
+        assertEquals(Integer.class, Coercer.to(int.class).target());
+        assertEquals(5, Coercer.to(int.class).apply("5", DefaultTypeCoercion.INSTANCE, Mode.STRICT));
+        assertEquals(42.5, Coercer.to(Double.class).apply(" 42.5 ", DefaultTypeCoercion.INSTANCE, Mode.LOOSE));
+        assertEquals(0.0, Coercer.to(Double.class).apply("abc", DefaultTypeCoercion.INSTANCE, Mode.LOOSE));
+        assertThrows(CoercionException.class,
+            () -> Coercer.to(Double.class).apply("abc", DefaultTypeCoercion.INSTANCE, Mode.STRICT));
+        assertEquals("7", Coercer.to(String.class).apply(7, DefaultTypeCoercion.INSTANCE, Mode.STRICT));
+        assertEquals(Double.valueOf(42.5), DefaultTypeCoercion.INSTANCE.coerceTo("42.5", Double.class, Mode.STRICT));
+
+        Object value = new Object();
+        assertSame(value, Coercer.to(null).apply(value, DefaultTypeCoercion.INSTANCE, Mode.STRICT));
+        assertSame(value, Coercer.to(StringBuilder.class).apply(value, DefaultTypeCoercion.INSTANCE, Mode.LOOSE));
+        assertThrows(CoercionException.class,
+            () -> Coercer.to(StringBuilder.class).apply(value, DefaultTypeCoercion.INSTANCE, Mode.STRICT));
+    }
+}